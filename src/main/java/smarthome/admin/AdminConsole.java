@@ -0,0 +1,61 @@
+package smarthome.admin;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import smarthome.commands.EventCommandFactory;
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeFleetBuilder;
+import smarthome.domain.observer.Subscription;
+import smarthome.load.CountingObserver;
+import smarthome.load.HouseholdEvent;
+import smarthome.load.HouseholdLoadGenerator;
+
+/**
+ * Runs simulated homes behind an {@link AdminServer} so operators can try the API.
+ * <p>
+ * Arguments (optional): {@code port homes eventsPerSecond}, defaulting to {@code 8080 100 20}.
+ * The household event stream is replayed at the given rate until the process is stopped.
+ * </p>
+ * <pre>
+ * curl localhost:8080/homes/7
+ * curl -N localhost:8080/events
+ * </pre>
+ */
+public class AdminConsole {
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int homeCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 20;
+
+        EventFeed feed = new EventFeed(4096);
+        CountingObserver observer = new CountingObserver();
+        HomeController[] homes = new HomeFleetBuilder(observer)
+                .subscribePerHome(feed::observer, Subscription.all())
+                .lazyDevices()
+                .build(0, homeCount);
+        EventCommandFactory[] factories = new EventCommandFactory[homeCount];
+        AdminServer server = new AdminServer(new InetSocketAddress(port), feed)
+                .metric("device_messages", observer::getCount);
+        for (HomeController home : homes) {
+            factories[home.getHomeId()] = new EventCommandFactory(home);
+            server.register(home);
+        }
+        server.start();
+        System.out.printf("admin API on http://localhost:%d/ (homes, metrics, events)%n", server.getPort());
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long pauseNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        for (long seed = 0; ; seed++) {
+            List<HouseholdEvent> events = new HouseholdLoadGenerator(homeCount, 1, seed).generate();
+            for (HouseholdEvent event : events) {
+                factories[event.homeId()].createEventCommand(event.type()).execute();
+                TimeUnit.NANOSECONDS.sleep(pauseNanos);
+            }
+        }
+    }
+}
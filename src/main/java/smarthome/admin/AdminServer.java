@@ -0,0 +1,215 @@
+package smarthome.admin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeState;
+
+/**
+ * Embedded admin and query API on the JDK {@link HttpServer}, one virtual thread per exchange.
+ * <ul>
+ *   <li>{@code GET /homes}: ids of the registered homes (JSON array),</li>
+ *   <li>{@code GET /homes/{id}}: the home's {@link HomeState} (JSON), {@code 404} if unknown,</li>
+ *   <li>{@code GET /metrics}: registered gauges and the server's own counters, one
+ *       {@code name value} line each,</li>
+ *   <li>{@code GET /events}: server-sent events from the {@link EventFeed}; a
+ *       {@code Last-Event-ID} header resumes after that event if it is still retained.</li>
+ * </ul>
+ * <p>
+ * Home states are read from the request thread while events may be executing, so a response
+ * is a best-effort view. Binding to port {@code 0} on the loopback address (see
+ * {@link #onLoopback(EventFeed)}) lets tests and local tools run without a fixed port.
+ * </p>
+ */
+public class AdminServer implements AutoCloseable {
+    private static final long KEEP_ALIVE_SECONDS = 15;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final EventFeed feed;
+    private final Map<Integer, HomeController> homes = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> metrics = new LinkedHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong framesSkipped = new AtomicLong();
+    private final AtomicInteger watchers = new AtomicInteger();
+
+    /**
+     * @param address address to bind; port {@code 0} picks a free port
+     * @param feed    source of the live event stream
+     */
+    public AdminServer(InetSocketAddress address, EventFeed feed) throws IOException {
+        this.feed = feed;
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/homes", this::handleHomes);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/events", this::handleEvents);
+    }
+
+    /** @return a server on a free port of the loopback address */
+    public static AdminServer onLoopback(EventFeed feed) throws IOException {
+        return new AdminServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), feed);
+    }
+
+    /** Make {@code home} queryable under its home id. */
+    public AdminServer register(HomeController home) {
+        synchronized (homes) {
+            homes.put(home.getHomeId(), home);
+        }
+        return this;
+    }
+
+    /** Report {@code gauge} under {@code name} in {@code /metrics}. */
+    public AdminServer metric(String name, LongSupplier gauge) {
+        synchronized (metrics) {
+            metrics.put(name, gauge);
+        }
+        return this;
+    }
+
+    /** Start accepting connections. */
+    public AdminServer start() {
+        server.start();
+        return this;
+    }
+
+    /** @return the bound port */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Close the feed, end all streams and stop the server. */
+    @Override
+    public void close() {
+        feed.close();
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handleHomes(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/homes") || path.equals("/homes/")) {
+            Integer[] ids;
+            synchronized (homes) {
+                ids = homes.keySet().toArray(new Integer[0]);
+            }
+            send(exchange, 200, "application/json", Arrays.toString(ids).replace(" ", ""));
+            return;
+        }
+        HomeController home;
+        try {
+            int homeId = Integer.parseInt(path.substring("/homes/".length()));
+            synchronized (homes) {
+                home = homes.get(homeId);
+            }
+        } catch (NumberFormatException e) {
+            home = null;
+        }
+        if (home == null) {
+            send(exchange, 404, "application/json", "{\"error\":\"unknown home\"}");
+            return;
+        }
+        HomeState state = home.snapshot();
+        send(exchange, 200, "application/json", "{\"homeId\":" + state.homeId()
+                + ",\"alarmOn\":" + state.alarmOn()
+                + ",\"heatingOn\":" + state.heatingOn()
+                + ",\"doorOpen\":" + state.doorOpen()
+                + ",\"lightOn\":" + state.lightOn()
+                + ",\"strongCoffee\":" + state.strongCoffee() + "}");
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        StringBuilder body = new StringBuilder();
+        synchronized (metrics) {
+            for (Map.Entry<String, LongSupplier> metric : metrics.entrySet()) {
+                body.append(metric.getKey()).append(' ').append(metric.getValue().getAsLong()).append('\n');
+            }
+        }
+        int homeCount;
+        synchronized (homes) {
+            homeCount = homes.size();
+        }
+        body.append("admin_homes ").append(homeCount).append('\n')
+                .append("admin_requests ").append(requests.get()).append('\n')
+                .append("admin_watchers ").append(watchers.get()).append('\n')
+                .append("feed_sequence ").append(feed.getSequence()).append('\n')
+                .append("feed_frames_sent ").append(framesSent.get()).append('\n')
+                .append("feed_frames_skipped ").append(framesSkipped.get()).append('\n');
+        send(exchange, 200, "text/plain; charset=utf-8", body.toString());
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        long cursor = feed.getSequence();
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if (lastEventId != null) {
+            try {
+                // clamped: a negative or overflowing id replays what the feed retains
+                cursor = Math.max(0, Math.min(cursor, Long.parseLong(lastEventId.trim()) + 1));
+            } catch (NumberFormatException e) {
+                // not one of ours: start with new events
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        watchers.incrementAndGet();
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (true) {
+                EventFeed.Batch batch = feed.read(cursor, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                framesSkipped.addAndGet(batch.from() - cursor);
+                if (batch.frames().isEmpty()) {
+                    if (batch.closed()) {
+                        break;
+                    }
+                    // also detects clients that went away
+                    out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                for (byte[] frame : batch.frames()) {
+                    out.write(frame);
+                }
+                out.flush();
+                framesSent.addAndGet(batch.frames().size());
+                cursor = batch.from() + batch.frames().size();
+            }
+        } catch (IOException e) {
+            // watcher disconnected
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watchers.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
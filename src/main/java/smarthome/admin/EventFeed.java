@@ -0,0 +1,229 @@
+package smarthome.admin;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.Observer;
+
+/**
+ * Live feed of device notifications for any number of watchers.
+ * <p>
+ * Each notification is serialized once into a server-sent-events frame and stored in a ring of
+ * the most recent frames, numbered by a global sequence. Publishers only take the lock to draw
+ * sequence numbers and to store the finished frames; serialization runs outside it, and frames
+ * become visible in sequence order. Watchers keep their own cursor and copy references to the
+ * frames they have not sent yet, so adding a watcher costs no extra serialization and never
+ * slows the devices down. A watcher that falls more than the ring capacity behind skips ahead
+ * to the oldest retained frame. A {@link
+ * smarthome.domain.observer.NotificationBatch batch} of notifications draws its numbers and
+ * stores its frames with one lock acquisition each, and a single wake-up.
+ * </p>
+ * <p>
+ * Thread-safe.
+ * </p>
+ */
+public class EventFeed implements AutoCloseable {
+    private final byte[][] frames;
+    /** Sequence of the frame in each slot of {@link #frames}; -1 while empty. */
+    private final long[] sequences;
+    private final Clock clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    /** Next sequence number to hand out; frames from {@link #next} on are being serialized. */
+    private long reserved;
+    /** End of the frames visible to watchers. */
+    private long next;
+    private boolean closed;
+
+    /**
+     * @param capacity number of recent frames kept for watchers that fall behind or reconnect
+     * @param clock    time source for the event timestamps
+     */
+    public EventFeed(int capacity, Clock clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.frames = new byte[capacity][];
+        this.sequences = new long[capacity];
+        Arrays.fill(sequences, -1);
+        this.clock = clock;
+    }
+
+    /**
+     * @param capacity number of recent frames kept for watchers that fall behind or reconnect
+     */
+    public EventFeed(int capacity) {
+        this(capacity, Clock.systemUTC());
+    }
+
+    /** @return observer that publishes the notifications of {@code homeId}'s devices */
+    public Observer observer(int homeId) {
+        return new Observer() {
+            @Override
+            public void update(String message) {
+                // untyped messages (e.g. from plugin devices) are not part of the feed
+            }
+
+            @Override
+            public void update(DeviceEvent event, String message) {
+                publish(homeId, event, message);
+            }
+
+            @Override
+            public void updateBatch(DeviceEvent[] events, String[] messages, int count) {
+                publish(homeId, events, messages, count);
+            }
+        };
+    }
+
+    /** Serialize one notification into a frame and wake the watchers. */
+    public void publish(int homeId, DeviceEvent event, String message) {
+        long time = clock.millis();
+        long sequence = reserve(1);
+        if (sequence < 0) {
+            return;
+        }
+        byte[] frame = frame(sequence, homeId, event, message, time);
+        lock.lock();
+        try {
+            commit(sequence, frame);
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Serialize {@code count} notifications of one home into frames and wake the watchers once. */
+    public void publish(int homeId, DeviceEvent[] events, String[] messages, int count) {
+        long time = clock.millis();
+        long first = reserve(count);
+        if (first < 0 || count == 0) {
+            return;
+        }
+        byte[][] batch = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            batch[i] = frame(first + i, homeId, events[i], messages[i], time);
+        }
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                commit(first + i, batch[i]);
+            }
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return the first of {@code count} consecutive sequence numbers, or -1 once closed */
+    private long reserve(int count) {
+        lock.lock();
+        try {
+            if (closed) {
+                return -1;
+            }
+            long first = reserved;
+            reserved += count;
+            return first;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Store a serialized frame and make every frame up to the first one still being serialized
+     * visible to watchers. Called holding the lock.
+     */
+    private void commit(long sequence, byte[] frame) {
+        int slot = (int) (sequence % frames.length);
+        if (sequence > sequences[slot]) {
+            frames[slot] = frame;
+            sequences[slot] = sequence;
+        }
+        // a slot holding a later sequence means the frame was overwritten a full ring later
+        // before it was committed (more concurrent publishers than capacity): skip it
+        while (next < reserved && sequences[(int) (next % frames.length)] >= next) {
+            next++;
+        }
+    }
+
+    private static byte[] frame(long sequence, int homeId, DeviceEvent event, String message,
+                                long time) {
+        StringBuilder frame = new StringBuilder(160)
+                .append("id: ").append(sequence)
+                .append("\nevent: ").append(event.name())
+                .append("\ndata: {\"sequence\":").append(sequence)
+                .append(",\"homeId\":").append(homeId)
+                .append(",\"device\":\"").append(event.getDeviceType().name())
+                .append("\",\"event\":\"").append(event.name())
+                .append("\",\"time\":").append(time)
+                .append(",\"message\":");
+        Json.string(frame, message).append("}\n\n");
+        return frame.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** @return sequence number the next published frame will get */
+    public long getSequence() {
+        lock.lock();
+        try {
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Collect the frames from {@code cursor} on, waiting up to {@code timeout} if there are none.
+     *
+     * @param cursor sequence of the first frame the watcher still needs; negative means 0
+     * @return the frames (possibly none), and the sequence they start at; later than
+     *         {@code cursor} if older frames were overwritten
+     */
+    Batch read(long cursor, long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (cursor >= next && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                published.awaitNanos(remaining);
+            }
+            long from = Math.max(Math.max(cursor, 0), next - frames.length);
+            List<byte[]> batch = new ArrayList<>((int) Math.max(0, next - from));
+            for (long sequence = from; sequence < next; sequence++) {
+                int slot = (int) (sequence % frames.length);
+                if (sequences[slot] == sequence) {
+                    batch.add(frames[slot]);
+                }
+            }
+            return new Batch(from, batch, closed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stop publishing and wake all watchers so they can end their streams. */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Frames handed to one watcher. */
+    record Batch(long from, List<byte[]> frames, boolean closed) {
+    }
+}
@@ -0,0 +1,33 @@
+package smarthome.admin;
+
+/**
+ * The few JSON helpers the admin API needs; not a general-purpose serializer.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /** Append {@code value} as a quoted, escaped JSON string. */
+    static StringBuilder string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        return out.append('"');
+    }
+}
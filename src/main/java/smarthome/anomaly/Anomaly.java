@@ -0,0 +1,11 @@
+package smarthome.anomaly;
+
+/**
+ * A match of an {@link AnomalyPattern} in one home's event stream.
+ *
+ * @param homeId     the home the pattern matched in
+ * @param pattern    name of the matched pattern
+ * @param timeMillis when the match completed
+ */
+public record Anomaly(int homeId, String pattern, long timeMillis) {
+}
@@ -0,0 +1,95 @@
+package smarthome.anomaly;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.DeviceEvent;
+
+/**
+ * Measures the per-event cost of the {@link AnomalyDetector} with the example patterns
+ * running in every home of a fleet.
+ * <p>
+ * Random device events and commands are fed for random homes, advancing a manual clock by
+ * {@code 10} ms per event. Arguments (optional): {@code homes events seed}, defaulting to
+ * {@code 10000 5000000 42}.
+ * </p>
+ */
+public class AnomalyBenchmark {
+
+    public static void main(String[] args) {
+        int homes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int events = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        ManualClock clock = new ManualClock();
+        List<AnomalyPattern> patterns = List.of(
+                AnomalyPattern.repeated("alarm triggered repeatedly", DeviceEvent.ALARM_TRIGGERED,
+                        3, Duration.ofMinutes(5)),
+                AnomalyPattern.heldFor("door open while heating", Duration.ofHours(2),
+                        AnomalyPattern.Condition.of(DeviceEvent.DOOR_OPEN, DeviceEvent.DOOR_CLOSE),
+                        AnomalyPattern.Condition.of(DeviceEvent.HEATING_TURN_ON, DeviceEvent.HEATING_TURN_OFF)),
+                AnomalyPattern.triggeredWhile("movement while away", EventCommandType.MOVEMENT,
+                        AnomalyPattern.Condition.of(EventCommandType.GOING_HOME, EventCommandType.ARRIVES_HOME)));
+        long[] matches = new long[1];
+        AnomalyDetector detector = new AnomalyDetector(patterns, anomaly -> matches[0]++, clock);
+
+        DeviceEvent[] deviceEvents = DeviceEvent.values();
+        EventCommandType[] commands = EventCommandType.values();
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] homeIds = new int[events];
+        int[] symbols = new int[events];
+        for (int i = 0; i < events; i++) {
+            homeIds[i] = random.nextInt(homes);
+            symbols[i] = random.nextInt(deviceEvents.length + commands.length);
+        }
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < events; i++) {
+                clock.millis += 10;
+                int symbol = symbols[i];
+                if (symbol < deviceEvents.length) {
+                    detector.onEvent(homeIds[i], deviceEvents[symbol]);
+                } else {
+                    detector.onCommand(homeIds[i], commands[symbol - deviceEvents.length]);
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%s: %,d events, %,d pattern instances, %.0f ns/event, "
+                            + "%.2f steps/event, %,d matches%n",
+                    round == 0 ? "warm-up" : "measured", events, detector.getInstances(),
+                    (double) nanos / events, (double) detector.getEvaluations() / events / (round + 1),
+                    matches[0]);
+        }
+    }
+
+    private static final class ManualClock extends Clock {
+        long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package smarthome.anomaly;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.List;
+
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.Observer;
+
+/**
+ * Lightweight complex-event-processing stage that runs {@link AnomalyPattern}s against every
+ * home's stream of device events and commands.
+ * <p>
+ * Each home gets one instance of every pattern; an instance is a byte of machine state plus a
+ * window start and a dwell deadline, stored in flat arrays indexed by
+ * {@code homeSlot * patterns + pattern}. An index from input symbol to the patterns that react
+ * to it means that an event only steps the few machines it can move; each step is one table
+ * lookup. Dwell matches ("open for hours") are driven by a heap of deadlines that is checked
+ * on every event and by {@link #tick()}, which a scheduler should call when events are sparse.
+ * </p>
+ * <p>
+ * Device events arrive through {@link #observer(int)}; commands such as
+ * {@link EventCommandType#MOVEMENT} have to be reported with {@link #onCommand(int,
+ * EventCommandType)} by whoever executes them. Thread-safe; matches are reported to the
+ * {@link AnomalyListener} while holding the detector's lock.
+ * </p>
+ */
+public class AnomalyDetector {
+    private static final int DEVICE_EVENTS = DeviceEvent.values().length;
+
+    private final AnomalyPattern[] patterns;
+    private final int[][] patternsBySymbol;
+    private final AnomalyListener listener;
+    private final Clock clock;
+    private final HomeSlots slots = new HomeSlots(1024);
+    private final TimerHeap timers = new TimerHeap();
+    private int[] homeIds = new int[64];
+    private int homes;
+    private byte[] states;
+    private long[] startedAt;
+    private long[] deadlines;
+    private long evaluations;
+    private long matches;
+
+    /**
+     * @param patterns patterns to run in every home
+     * @param listener receives the matches
+     * @param clock    time source for windows and dwell times
+     */
+    public AnomalyDetector(List<AnomalyPattern> patterns, AnomalyListener listener, Clock clock) {
+        this.patterns = patterns.toArray(new AnomalyPattern[0]);
+        this.listener = listener;
+        this.clock = clock;
+        this.patternsBySymbol = indexBySymbol(this.patterns);
+        int instances = homeIds.length * this.patterns.length;
+        this.states = new byte[instances];
+        this.startedAt = new long[instances];
+        this.deadlines = new long[instances];
+    }
+
+    /**
+     * @param patterns patterns to run in every home
+     * @param listener receives the matches
+     */
+    public AnomalyDetector(List<AnomalyPattern> patterns, AnomalyListener listener) {
+        this(patterns, listener, Clock.systemUTC());
+    }
+
+    /** @return observer that feeds the device events of {@code homeId} into the patterns */
+    public Observer observer(int homeId) {
+        return new Observer() {
+            @Override
+            public void update(String message) {
+                // untyped messages are not pattern symbols
+            }
+
+            @Override
+            public void update(DeviceEvent event, String message) {
+                onEvent(homeId, event);
+            }
+        };
+    }
+
+    /** Feed one device event of {@code homeId}. */
+    public synchronized void onEvent(int homeId, DeviceEvent event) {
+        process(homeId, event.ordinal());
+    }
+
+    /** Feed one command executed for {@code homeId}. */
+    public synchronized void onCommand(int homeId, EventCommandType type) {
+        process(homeId, DEVICE_EVENTS + type.ordinal());
+    }
+
+    /** Report the dwell matches that are due, even if no event has arrived since. */
+    public synchronized void tick() {
+        fireDue(clock.millis());
+    }
+
+    /** @return machine steps performed so far */
+    public synchronized long getEvaluations() {
+        return evaluations;
+    }
+
+    /** @return matches reported so far */
+    public synchronized long getMatches() {
+        return matches;
+    }
+
+    /** @return number of homes seen so far */
+    public synchronized int getHomes() {
+        return homes;
+    }
+
+    /** @return pattern instances across all homes seen so far */
+    public synchronized long getInstances() {
+        return (long) homes * patterns.length;
+    }
+
+    private void process(int homeId, int symbol) {
+        long now = clock.millis();
+        fireDue(now);
+        int[] candidates = patternsBySymbol[symbol];
+        if (candidates.length == 0) {
+            return;
+        }
+        int base = instanceBase(homeId, now);
+        for (int p : candidates) {
+            step(base + p, patterns[p], symbol, now);
+        }
+    }
+
+    private void step(int instance, AnomalyPattern pattern, int symbol, long now) {
+        evaluations++;
+        int state = states[instance];
+        if (state != 0 && pattern.windowMillis > 0 && now - startedAt[instance] > pattern.windowMillis) {
+            state = 0;
+            enter(instance, pattern, 0, now);
+        }
+        int to = pattern.next[state * AnomalyPattern.SYMBOLS + symbol];
+        if (to == state) {
+            return;
+        }
+        if (state == 0) {
+            startedAt[instance] = now;
+        }
+        byte then = pattern.matchThen[to];
+        if (then != AnomalyPattern.NO_MATCH) {
+            report(instance, pattern, now);
+            to = then;
+        }
+        enter(instance, pattern, to, now);
+    }
+
+    private void enter(int instance, AnomalyPattern pattern, int state, long now) {
+        states[instance] = (byte) state;
+        long dwell = pattern.dwellMillis[state];
+        if (dwell > 0) {
+            deadlines[instance] = now + dwell;
+            timers.push(now + dwell, instance);
+        } else {
+            deadlines[instance] = Long.MAX_VALUE;
+        }
+    }
+
+    private void fireDue(long now) {
+        while (timers.peekDeadline() <= now) {
+            long deadline = timers.peekDeadline();
+            int instance = timers.peekInstance();
+            timers.pop();
+            // the instance may have left the dwell state since the timer was set
+            if (deadlines[instance] == deadline) {
+                deadlines[instance] = Long.MAX_VALUE;
+                report(instance, patterns[instance % patterns.length], deadline);
+            }
+        }
+    }
+
+    private void report(int instance, AnomalyPattern pattern, long timeMillis) {
+        matches++;
+        listener.onAnomaly(new Anomaly(homeIds[instance / patterns.length], pattern.name, timeMillis));
+    }
+
+    private int instanceBase(int homeId, long now) {
+        int slot = slots.slotOf(homeId);
+        int base = slot * patterns.length;
+        if (slot < homes) {
+            return base;
+        }
+        if (slot == homeIds.length) {
+            int capacity = homeIds.length * 2;
+            homeIds = Arrays.copyOf(homeIds, capacity);
+            states = Arrays.copyOf(states, capacity * patterns.length);
+            startedAt = Arrays.copyOf(startedAt, capacity * patterns.length);
+            deadlines = Arrays.copyOf(deadlines, capacity * patterns.length);
+        }
+        // new home: every machine starts in state 0
+        homeIds[slot] = homeId;
+        homes++;
+        for (int p = 0; p < patterns.length; p++) {
+            enter(base + p, patterns[p], 0, now);
+        }
+        return base;
+    }
+
+    private static int[][] indexBySymbol(AnomalyPattern[] patterns) {
+        int[][] index = new int[AnomalyPattern.SYMBOLS][];
+        for (int symbol = 0; symbol < AnomalyPattern.SYMBOLS; symbol++) {
+            int[] reacting = new int[patterns.length];
+            int count = 0;
+            for (int p = 0; p < patterns.length; p++) {
+                if (reactsTo(patterns[p], symbol)) {
+                    reacting[count++] = p;
+                }
+            }
+            index[symbol] = Arrays.copyOf(reacting, count);
+        }
+        return index;
+    }
+
+    private static boolean reactsTo(AnomalyPattern pattern, int symbol) {
+        for (int state = 0; state < pattern.states; state++) {
+            if (pattern.next[state * AnomalyPattern.SYMBOLS + symbol] != state) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
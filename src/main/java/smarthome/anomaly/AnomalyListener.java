@@ -0,0 +1,11 @@
+package smarthome.anomaly;
+
+/**
+ * Receives the matches of an {@link AnomalyDetector}, on the thread that delivered the
+ * completing event (or called {@link AnomalyDetector#tick()}). Must not block.
+ */
+@FunctionalInterface
+public interface AnomalyListener {
+
+    void onAnomaly(Anomaly anomaly);
+}
@@ -0,0 +1,195 @@
+package smarthome.anomaly;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.DeviceEvent;
+
+/**
+ * A pattern over one home's event stream, compiled into a finite-state machine.
+ * <p>
+ * The input symbols are the {@link DeviceEvent}s plus the {@link EventCommandType}s. The
+ * machine is stored as primitive arrays: a transition table indexed by
+ * {@code state * SYMBOLS + symbol}, and per state whether entering it is a match (and where
+ * to continue afterwards) and how long dwelling in it takes to be a match. An optional window
+ * bounds how long a partial match may take; it is measured from the first event that left the
+ * initial state {@code 0}. Matching a symbol that has no transition leaves the state unchanged.
+ * </p>
+ * <p>
+ * Most patterns are covered by the factories:
+ * </p>
+ * <pre>
+ * AnomalyPattern.repeated("alarm storm", DeviceEvent.ALARM_TRIGGERED, 3, Duration.ofMinutes(5))
+ * AnomalyPattern.heldFor("door open while heating", Duration.ofHours(2),
+ *         Condition.of(DeviceEvent.DOOR_OPEN, DeviceEvent.DOOR_CLOSE),
+ *         Condition.of(DeviceEvent.HEATING_TURN_ON, DeviceEvent.HEATING_TURN_OFF))
+ * AnomalyPattern.triggeredWhile("movement while away", EventCommandType.MOVEMENT,
+ *         Condition.of(EventCommandType.GOING_HOME, EventCommandType.ARRIVES_HOME))
+ * </pre>
+ */
+public final class AnomalyPattern {
+    /** Number of input symbols: device events first, then command types. */
+    static final int SYMBOLS = DeviceEvent.values().length + EventCommandType.values().length;
+    static final int MAX_STATES = 127;
+    static final byte NO_MATCH = -1;
+
+    final String name;
+    final int states;
+    final byte[] next;
+    final byte[] matchThen;
+    final long[] dwellMillis;
+    final long windowMillis;
+
+    private AnomalyPattern(Builder builder) {
+        this.name = builder.name;
+        this.states = builder.states;
+        this.next = builder.next.clone();
+        this.matchThen = builder.matchThen.clone();
+        this.dwellMillis = builder.dwellMillis.clone();
+        this.windowMillis = builder.windowMillis;
+    }
+
+    /** @return the pattern name reported with its matches */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Two symbols that switch a condition on and off, e.g. door open and door close.
+     *
+     * @param set   a {@link DeviceEvent} or {@link EventCommandType} that makes it hold
+     * @param clear a {@link DeviceEvent} or {@link EventCommandType} that ends it
+     */
+    public record Condition(Enum<?> set, Enum<?> clear) {
+
+        public Condition {
+            symbol(set);
+            symbol(clear);
+        }
+
+        public static Condition of(Enum<?> set, Enum<?> clear) {
+            return new Condition(set, clear);
+        }
+    }
+
+    /**
+     * Matches {@code symbol} occurring {@code times} times within {@code within}, counted from
+     * the first occurrence; then starts counting again.
+     */
+    public static AnomalyPattern repeated(String name, Enum<?> symbol, int times, Duration within) {
+        if (times < 1 || times >= MAX_STATES) {
+            throw new IllegalArgumentException("times must be between 1 and " + (MAX_STATES - 1));
+        }
+        Builder builder = builder(name, times + 1).window(within).match(times, 0);
+        for (int state = 0; state < times; state++) {
+            builder.on(state, symbol, state + 1);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Matches once every time all {@code conditions} have held together for {@code dwell}.
+     * State {@code i} is the bit set of the conditions that currently hold.
+     */
+    public static AnomalyPattern heldFor(String name, Duration dwell, Condition... conditions) {
+        if (conditions.length < 1 || conditions.length > 6) {
+            throw new IllegalArgumentException("between 1 and 6 conditions are supported");
+        }
+        int states = 1 << conditions.length;
+        Builder builder = builder(name, states).dwell(states - 1, dwell);
+        for (int state = 0; state < states; state++) {
+            for (int c = 0; c < conditions.length; c++) {
+                builder.on(state, conditions[c].set(), state | (1 << c));
+                builder.on(state, conditions[c].clear(), state & ~(1 << c));
+            }
+        }
+        return builder.build();
+    }
+
+    /** Matches every occurrence of {@code trigger} while {@code condition} holds. */
+    public static AnomalyPattern triggeredWhile(String name, Enum<?> trigger, Condition condition) {
+        return builder(name, 3)
+                .on(0, condition.set(), 1)
+                .on(1, condition.clear(), 0)
+                .on(1, trigger, 2)
+                .match(2, 1)
+                .build();
+    }
+
+    /** @return a builder for a machine with {@code states} states; {@code 0} is the initial one */
+    public static Builder builder(String name, int states) {
+        return new Builder(name, states);
+    }
+
+    /** @return the input symbol of a {@link DeviceEvent} or {@link EventCommandType} */
+    static int symbol(Enum<?> value) {
+        if (value instanceof DeviceEvent event) {
+            return event.ordinal();
+        }
+        if (value instanceof EventCommandType type) {
+            return DeviceEvent.values().length + type.ordinal();
+        }
+        throw new IllegalArgumentException("Unsupported symbol: " + value);
+    }
+
+    /** Assembles the transition table of an {@link AnomalyPattern}. */
+    public static final class Builder {
+        private final String name;
+        private final int states;
+        private final byte[] next;
+        private final byte[] matchThen;
+        private final long[] dwellMillis;
+        private long windowMillis;
+
+        private Builder(String name, int states) {
+            if (states < 1 || states > MAX_STATES) {
+                throw new IllegalArgumentException("states must be between 1 and " + MAX_STATES);
+            }
+            this.name = name;
+            this.states = states;
+            this.next = new byte[states * SYMBOLS];
+            for (int state = 0; state < states; state++) {
+                Arrays.fill(next, state * SYMBOLS, (state + 1) * SYMBOLS, (byte) state);
+            }
+            this.matchThen = new byte[states];
+            Arrays.fill(matchThen, NO_MATCH);
+            this.dwellMillis = new long[states];
+        }
+
+        /** Move from state {@code from} to {@code to} on {@code symbol}. */
+        public Builder on(int from, Enum<?> symbol, int to) {
+            next[checkState(from) * SYMBOLS + symbol(symbol)] = (byte) checkState(to);
+            return this;
+        }
+
+        /** Entering {@code state} is a match; the machine then continues in {@code then}. */
+        public Builder match(int state, int then) {
+            matchThen[checkState(state)] = (byte) checkState(then);
+            return this;
+        }
+
+        /** Staying in {@code state} for {@code dwell} is a match, reported once per visit. */
+        public Builder dwell(int state, Duration dwell) {
+            dwellMillis[checkState(state)] = dwell.toMillis();
+            return this;
+        }
+
+        /** Abandon a partial match that has not completed within {@code window}. */
+        public Builder window(Duration window) {
+            this.windowMillis = window.toMillis();
+            return this;
+        }
+
+        public AnomalyPattern build() {
+            return new AnomalyPattern(this);
+        }
+
+        private int checkState(int state) {
+            if (state < 0 || state >= states) {
+                throw new IllegalArgumentException("Unknown state: " + state);
+            }
+            return state;
+        }
+    }
+}
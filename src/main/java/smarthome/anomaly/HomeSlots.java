@@ -0,0 +1,71 @@
+package smarthome.anomaly;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense slot numbers {@code 0, 1, 2, ...} to home ids, in order of first appearance.
+ * <p>
+ * Open addressing with linear probing over primitive {@code int}s, so a lookup on the
+ * notification path does not allocate. Not thread-safe.
+ * </p>
+ */
+final class HomeSlots {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] slots;
+    private int mask;
+    private int size;
+
+    HomeSlots(int expectedHomes) {
+        int capacity = Integer.highestOneBit(Math.max(expectedHomes, 8) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slots, EMPTY);
+    }
+
+    /** @return the slot of {@code homeId}, assigning the next free one on first use */
+    int slotOf(int homeId) {
+        int i = index(homeId);
+        for (; slots[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == homeId) {
+                return slots[i];
+            }
+        }
+        keys[i] = homeId;
+        slots[i] = size;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return size - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new int[oldKeys.length * 2];
+        slots = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        Arrays.fill(slots, EMPTY);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldSlots[j] != EMPTY) {
+                int i = index(oldKeys[j]);
+                while (slots[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                slots[i] = oldSlots[j];
+            }
+        }
+    }
+
+    private int index(int homeId) {
+        int h = homeId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,72 @@
+package smarthome.anomaly;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of {@code (deadline, instance)} pairs in parallel primitive arrays.
+ * <p>
+ * Used for dwell timers; an entry whose instance has moved on since it was pushed is simply
+ * ignored by the caller when it is popped. Not thread-safe.
+ * </p>
+ */
+final class TimerHeap {
+    private long[] deadlines = new long[64];
+    private int[] instances = new int[64];
+    private int size;
+
+    void push(long deadline, int instance) {
+        if (size == deadlines.length) {
+            deadlines = Arrays.copyOf(deadlines, size * 2);
+            instances = Arrays.copyOf(instances, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (deadlines[parent] <= deadline) {
+                break;
+            }
+            deadlines[i] = deadlines[parent];
+            instances[i] = instances[parent];
+            i = parent;
+        }
+        deadlines[i] = deadline;
+        instances[i] = instance;
+    }
+
+    /** @return the earliest deadline, or {@link Long#MAX_VALUE} if the heap is empty */
+    long peekDeadline() {
+        return size == 0 ? Long.MAX_VALUE : deadlines[0];
+    }
+
+    /** @return the instance of the earliest deadline; call only when not empty */
+    int peekInstance() {
+        return instances[0];
+    }
+
+    void pop() {
+        long deadline = deadlines[--size];
+        int instance = instances[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && deadlines[child + 1] < deadlines[child]) {
+                child++;
+            }
+            if (deadline <= deadlines[child]) {
+                break;
+            }
+            deadlines[i] = deadlines[child];
+            instances[i] = instances[child];
+            i = child;
+        }
+        deadlines[i] = deadline;
+        instances[i] = instance;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,187 @@
+package smarthome.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.DeviceType;
+import smarthome.domain.observer.Observer;
+
+/**
+ * Fleet-wide read-through cache of boolean device states (armed, on, open).
+ * <p>
+ * Entries are keyed by home id and {@link DeviceType}. A cached value is served while it is
+ * younger than the configured time-to-live, which bounds how stale a controller decision can
+ * be; it is dropped earlier when the device itself notifies a change (see
+ * {@link #invalidator(int)}). An invalidation only voids reads of the same device that are
+ * in progress, so busy homes do not keep the rest of the fleet from filling. When the cache
+ * holds more than {@code maxEntries} states, the least recently used one is evicted.
+ * </p>
+ * <p>
+ * Thread-safe; a single instance is meant to be shared by all controllers of a node.
+ * </p>
+ */
+public class DeviceStateCache {
+    private final long ttlMillis;
+    private final Clock clock;
+    private final Map<Long, Entry> entries;
+    /** Reads in progress, by key; an invalidation removes the key's token to void its read. */
+    private final Map<Long, Object> loads = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long expirations;
+    private long invalidations;
+    private long evictions;
+
+    /**
+     * @param ttl        maximum age of a cached state
+     * @param maxEntries maximum number of cached states across all homes
+     * @param clock      time source for entry ages
+     */
+    public DeviceStateCache(Duration ttl, int maxEntries, Clock clock) {
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param ttl        maximum age of a cached state
+     * @param maxEntries maximum number of cached states across all homes
+     */
+    public DeviceStateCache(Duration ttl, int maxEntries) {
+        this(ttl, maxEntries, Clock.systemUTC());
+    }
+
+    /**
+     * Return the cached state, or read it from the device and cache it.
+     *
+     * @param homeId     the home the device belongs to
+     * @param deviceType the device
+     * @param loader     the (potentially remote) state read
+     * @return the device state, at most the time-to-live old
+     */
+    public boolean get(int homeId, DeviceType deviceType, BooleanSupplier loader) {
+        long key = key(homeId, deviceType);
+        long now = clock.millis();
+        Object load = new Object();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.loadedAt <= ttlMillis) {
+                    hits++;
+                    return entry.value;
+                }
+                expirations++;
+            }
+            misses++;
+            loads.put(key, load);
+        }
+        // read outside the lock so a slow device does not block other homes
+        boolean value = false;
+        boolean loaded = false;
+        try {
+            value = loader.getAsBoolean();
+            loaded = true;
+        } finally {
+            synchronized (this) {
+                // an invalidation of this device during the read may mean the value is already
+                // outdated; so may a later read of it, which then caches its own value
+                if (loads.remove(key, load) && loaded) {
+                    entries.put(key, new Entry(value, now));
+                }
+            }
+        }
+        return value;
+    }
+
+    /** Drop the cached state of one device. */
+    public synchronized void invalidate(int homeId, DeviceType deviceType) {
+        long key = key(homeId, deviceType);
+        loads.remove(key);
+        if (entries.remove(key) != null) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Observer that invalidates the cached state of whichever device of {@code homeId} it hears
+     * from. Register it on the devices of that home. It is not
+     * {@link Observer#isDeferrable() deferrable}: inside a
+     * {@link smarthome.domain.observer.NotificationBatch} that spans several commands, a later
+     * command must not read the state an earlier one just changed from the cache.
+     */
+    public Observer invalidator(int homeId) {
+        return new Observer() {
+            @Override
+            public void update(String message) {
+                // untyped messages carry no device type; nothing to invalidate precisely
+            }
+
+            @Override
+            public void update(DeviceEvent event, String message) {
+                invalidate(homeId, event.getDeviceType());
+            }
+
+            @Override
+            public boolean isDeferrable() {
+                return false;
+            }
+        };
+    }
+
+    /** @return reads served from memory; each one is a saved device round trip */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** @return reads that went to the device */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** @return misses caused by entries older than the time-to-live */
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    /** @return entries dropped because the device notified a change */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /** @return entries evicted to respect the size bound */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** @return share of reads served from memory, in {@code [0, 1]} */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /** @return number of cached states */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static long key(int homeId, DeviceType deviceType) {
+        return ((long) homeId << 8) | deviceType.ordinal();
+    }
+
+    private record Entry(boolean value, long loadedAt) {
+    }
+}
@@ -0,0 +1,202 @@
+package smarthome.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.MessageObserver;
+
+/**
+ * Spreads homes over several {@link HomeNode}s by consistent hashing on the home id.
+ * <p>
+ * Submissions route through a read lock; joining or leaving nodes take the write lock, so
+ * while homes are handed over no new event can be routed to either side. Each moving home is
+ * released by its old node (state snapshot plus not-yet-executed events) and adopted by its new
+ * one, which preserves both the events and their per-home order.
+ * </p>
+ */
+public class Cluster {
+    private static final int VIRTUAL_NODES = 128;
+
+    private final ConsistentHashRing ring = new ConsistentHashRing(VIRTUAL_NODES);
+    private final Map<String, HomeNode> nodes = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final MessageObserver observer;
+    private long retiredProcessed;
+    private long retiredOutOfOrder;
+    private long retiredFailed;
+
+    /**
+     * @param observer sink for device messages of every home in the cluster
+     */
+    public Cluster(MessageObserver observer) {
+        this.observer = observer;
+    }
+
+    /**
+     * Route an event to the node that owns {@code homeId}.
+     *
+     * @param eventId id assigned by the event source; retries of one event carry the same id;
+     *                {@link smarthome.load.HouseholdEvent#NO_ID} if it has none
+     * @return the queued event with its per-home sequence number
+     * @throws IllegalStateException if the cluster has no nodes
+     */
+    public ClusterEvent submit(int homeId, EventCommandType type, long eventId) {
+        lock.readLock().lock();
+        try {
+            return nodes.get(ring.nodeFor(homeId)).submit(homeId, type, eventId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Start a node and move to it the homes it now owns.
+     *
+     * @param name unique node name
+     * @return what was moved and how long submissions were paused
+     * @throws IllegalArgumentException if a node named {@code name} is already present
+     */
+    public RebalanceReport join(String name) {
+        lock.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            if (nodes.containsKey(name)) {
+                throw new IllegalArgumentException("Node already present: " + name);
+            }
+            // starts the node's thread: only once the name is known to be free
+            HomeNode joining = new HomeNode(name, observer);
+            nodes.put(name, joining);
+            ring.addNode(name);
+            int moved = 0;
+            long events = 0;
+            for (HomeNode node : nodes.values()) {
+                if (node == joining) {
+                    continue;
+                }
+                Set<Integer> leaving = new HashSet<>();
+                for (int homeId : node.homeIds()) {
+                    if (name.equals(ring.nodeFor(homeId))) {
+                        leaving.add(homeId);
+                    }
+                }
+                List<HomeHandoff> handoffs = node.release(leaving);
+                joining.adopt(handoffs);
+                moved += handoffs.size();
+                events += pendingEvents(handoffs);
+            }
+            return new RebalanceReport(moved, events, System.nanoTime() - start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Hand every home of {@code name} to its new owner and stop the node.
+     *
+     * @param name node to remove; must not be the last node
+     * @return what was moved and how long submissions were paused
+     */
+    public RebalanceReport leave(String name) throws InterruptedException {
+        HomeNode leaving;
+        RebalanceReport report;
+        lock.writeLock().lock();
+        long start = System.nanoTime();
+        try {
+            leaving = nodes.get(name);
+            if (leaving == null) {
+                throw new IllegalArgumentException("Unknown node: " + name);
+            }
+            if (nodes.size() == 1) {
+                throw new IllegalStateException("Cannot remove the last node");
+            }
+            ring.removeNode(name);
+            nodes.remove(name);
+            List<HomeHandoff> handoffs = leaving.release(leaving.homeIds());
+            Map<String, List<HomeHandoff>> byTarget = new HashMap<>();
+            for (HomeHandoff handoff : handoffs) {
+                byTarget.computeIfAbsent(ring.nodeFor(handoff.state().homeId()), n -> new ArrayList<>())
+                        .add(handoff);
+            }
+            for (Map.Entry<String, List<HomeHandoff>> entry : byTarget.entrySet()) {
+                nodes.get(entry.getKey()).adopt(entry.getValue());
+            }
+            report = new RebalanceReport(handoffs.size(), pendingEvents(handoffs),
+                    System.nanoTime() - start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        leaving.stop();
+        synchronized (this) {
+            retiredProcessed += leaving.getProcessed();
+            retiredOutOfOrder += leaving.getOutOfOrder();
+            retiredFailed += leaving.getFailed();
+        }
+        return report;
+    }
+
+    /** Wait until every node has executed all queued events. */
+    public void awaitIdle() throws InterruptedException {
+        for (HomeNode node : snapshotNodes()) {
+            node.awaitIdle();
+        }
+    }
+
+    /** @return events executed by all nodes, including nodes that have left */
+    public synchronized long getProcessed() {
+        long total = retiredProcessed;
+        for (HomeNode node : snapshotNodes()) {
+            total += node.getProcessed();
+        }
+        return total;
+    }
+
+    /** @return events executed out of per-home order, including on nodes that have left */
+    public synchronized long getOutOfOrder() {
+        long total = retiredOutOfOrder;
+        for (HomeNode node : snapshotNodes()) {
+            total += node.getOutOfOrder();
+        }
+        return total;
+    }
+
+    /** @return events whose command threw, including on nodes that have left */
+    public synchronized long getFailed() {
+        long total = retiredFailed;
+        for (HomeNode node : snapshotNodes()) {
+            total += node.getFailed();
+        }
+        return total;
+    }
+
+    /** @return the nodes currently in the cluster */
+    public List<HomeNode> snapshotNodes() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(nodes.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Stop all nodes. */
+    public void shutdown() throws InterruptedException {
+        for (HomeNode node : snapshotNodes()) {
+            node.stop();
+        }
+    }
+
+    private static long pendingEvents(List<HomeHandoff> handoffs) {
+        long events = 0;
+        for (HomeHandoff handoff : handoffs) {
+            events += handoff.pendingEvents().size();
+        }
+        return events;
+    }
+}
@@ -0,0 +1,15 @@
+package smarthome.cluster;
+
+import smarthome.commands.EventCommandType;
+
+/**
+ * An event queued on a {@link HomeNode}.
+ *
+ * @param homeId   the home the event is routed by
+ * @param sequence per-home submission order, starting at {@code 1}
+ * @param type     the event to execute
+ * @param eventId  id assigned by the event source; retries of one event carry the same id;
+ *                 {@link smarthome.load.HouseholdEvent#NO_ID} if it has none
+ */
+public record ClusterEvent(int homeId, long sequence, EventCommandType type, long eventId) {
+}
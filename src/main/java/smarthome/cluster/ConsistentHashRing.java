@@ -0,0 +1,71 @@
+package smarthome.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring mapping home ids to node names.
+ * <p>
+ * Every node is placed on the ring at {@code virtualNodes} pseudo-random points, which keeps
+ * the load even and means a joining or leaving node only moves roughly {@code 1/N} of the
+ * homes. Not thread-safe; {@link Cluster} guards it.
+ * </p>
+ */
+public class ConsistentHashRing {
+    private final int virtualNodes;
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param virtualNodes number of ring points per node (e.g. 128)
+     */
+    public ConsistentHashRing(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    /** Place {@code node} on the ring. */
+    public void addNode(String node) {
+        long base = hash(node);
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(base + i), node);
+        }
+    }
+
+    /** Remove {@code node} from the ring. */
+    public void removeNode(String node) {
+        long base = hash(node);
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.remove(hash(base + i), node);
+        }
+    }
+
+    /**
+     * @param homeId the home to place
+     * @return the node responsible for {@code homeId}
+     * @throws IllegalStateException if the ring is empty
+     */
+    public String nodeFor(int homeId) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("No nodes in the ring");
+        }
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(homeId));
+        return (owner != null ? owner : ring.firstEntry()).getValue();
+    }
+
+    /** Mix every byte of the name, so names with equal {@link String#hashCode()} do not collide. */
+    private static long hash(String node) {
+        long h = node.length();
+        for (byte b : node.getBytes(StandardCharsets.UTF_8)) {
+            h = hash(h ^ (b & 0xFF));
+        }
+        return h;
+    }
+
+    /** SplitMix64 finalizer: spreads consecutive ids uniformly over the ring. */
+    private static long hash(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,26 @@
+package smarthome.cluster;
+
+import java.util.List;
+import java.util.Map;
+
+import smarthome.controller.HomeState;
+
+/**
+ * Everything a node needs to take over a home from another node.
+ *
+ * @param state          device states at the moment of release
+ * @param submitted      number of events submitted for the home so far
+ * @param processed      number of events executed for the home so far
+ * @param recentEventIds ids of the home's recently executed events, oldest first, so their
+ *                       retries are still skipped after the move
+ * @param planJournal    plan steps completed for the home's recent events, by event id, so
+ *                       retries resume their plans after the move
+ * @param pendingEvents  events accepted by the old owner but not yet executed, in order
+ */
+public record HomeHandoff(HomeState state,
+                          long submitted,
+                          long processed,
+                          long[] recentEventIds,
+                          Map<Long, Long> planJournal,
+                          List<ClusterEvent> pendingEvents) {
+}
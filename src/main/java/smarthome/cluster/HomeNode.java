@@ -0,0 +1,273 @@
+package smarthome.cluster;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import smarthome.commands.EventCommand;
+import smarthome.commands.EventCommandFactory;
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.controller.HomeState;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.execution.PlanExecutor;
+import smarthome.execution.RetryPolicy;
+import smarthome.load.HouseholdEvent;
+
+/**
+ * In-process node hosting the {@link HomeController}s of the homes assigned to it.
+ * <p>
+ * A node owns one FIFO event queue and one worker thread, so events of the same home are
+ * executed in submission order. Queue access and event execution share a lock: a
+ * {@link #release(Set)} therefore always observes the node between two events and can take
+ * the pending events of the released homes out of the queue without losing or reordering any.
+ * </p>
+ * <p>
+ * Homes are created with default devices on their first event. Multi-device use cases run as
+ * step plans (see {@link PlanExecutor}), so a failing door re-arms the alarm it disarmed.
+ * Events whose id was among a home's recent ids are skipped as retries; the recent ids and
+ * the plan journal of a home move with it to the node that adopts it.
+ * </p>
+ * <p>
+ * An event whose command throws (for example a use case that was rolled back) counts as
+ * processed and as failed; the worker goes on with the next event.
+ * </p>
+ */
+public class HomeNode {
+    private static final int PLAN_JOURNAL_ENTRIES = 4096;
+    private static final int DEDUPLICATION_WINDOW = 32;
+
+    private final String name;
+    private final MessageObserver observer;
+    private final Map<Integer, Slot> homes = new HashMap<>();
+    private final ArrayDeque<ClusterEvent> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PlanExecutor planExecutor = new PlanExecutor(RetryPolicy.none(), PLAN_JOURNAL_ENTRIES);
+    private final Thread worker;
+    private boolean running = true;
+    private long processed;
+    private long outOfOrder;
+    private long failed;
+
+    /**
+     * Start a node.
+     *
+     * @param name     unique node name (used for placement on the ring)
+     * @param observer sink for device messages of all homes on this node
+     */
+    public HomeNode(String name, MessageObserver observer) {
+        this.name = name;
+        this.observer = observer;
+        this.worker = new Thread(this::work, "node-" + name);
+        this.worker.start();
+    }
+
+    /** @return the node name */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Queue an event for one of this node's homes.
+     *
+     * @param homeId  home to deliver to; created with default devices if unknown
+     * @param type    event to execute
+     * @param eventId id assigned by the event source; retries of one event carry the same id;
+     *                {@link HouseholdEvent#NO_ID} if it has none
+     * @return the queued event, carrying its per-home sequence number
+     */
+    public ClusterEvent submit(int homeId, EventCommandType type, long eventId) {
+        lock.lock();
+        try {
+            Slot slot = homes.computeIfAbsent(homeId,
+                    id -> new Slot(new HomeControllerBuilder(observer).homeId(id).build(),
+                            planExecutor, 0, 0));
+            ClusterEvent event = new ClusterEvent(homeId, ++slot.submitted, type, eventId);
+            queue.addLast(event);
+            changed.signalAll();
+            return event;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give up the given homes: capture their state and remove their not-yet-executed events.
+     *
+     * @param homeIds homes to release; ids not hosted here are ignored
+     * @return one handoff per released home
+     */
+    public List<HomeHandoff> release(Set<Integer> homeIds) {
+        lock.lock();
+        try {
+            Map<Integer, List<ClusterEvent>> pending = new HashMap<>();
+            Iterator<ClusterEvent> it = queue.iterator();
+            while (it.hasNext()) {
+                ClusterEvent event = it.next();
+                if (homeIds.contains(event.homeId())) {
+                    pending.computeIfAbsent(event.homeId(), id -> new ArrayList<>()).add(event);
+                    it.remove();
+                }
+            }
+            List<HomeHandoff> handoffs = new ArrayList<>();
+            for (Integer homeId : homeIds) {
+                Slot slot = homes.remove(homeId);
+                if (slot != null) {
+                    handoffs.add(new HomeHandoff(slot.controller.snapshot(), slot.submitted,
+                            slot.processed, slot.factory.recentEventIds(),
+                            slot.factory.planJournal(), pending.getOrDefault(homeId, List.of())));
+                }
+            }
+            return handoffs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take over homes released by another node. Their pending events are queued behind the
+     * events already queued here, which cannot belong to the adopted homes.
+     */
+    public void adopt(List<HomeHandoff> handoffs) {
+        lock.lock();
+        try {
+            for (HomeHandoff handoff : handoffs) {
+                HomeController controller = new HomeControllerBuilder(observer)
+                        .state(handoff.state())
+                        .build();
+                Slot slot = new Slot(controller, planExecutor, handoff.submitted(),
+                        handoff.processed());
+                slot.factory.restoreRecentEventIds(handoff.recentEventIds());
+                slot.factory.restorePlanJournal(handoff.planJournal());
+                homes.put(handoff.state().homeId(), slot);
+                queue.addAll(handoff.pendingEvents());
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return ids of the homes currently hosted on this node */
+    public Set<Integer> homeIds() {
+        lock.lock();
+        try {
+            return Set.copyOf(homes.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wait until the queue is empty and no event is executing. */
+    public void awaitIdle() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!queue.isEmpty()) {
+                changed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return events executed on this node */
+    public long getProcessed() {
+        lock.lock();
+        try {
+            return processed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return events executed with a sequence number other than the next expected one */
+    public long getOutOfOrder() {
+        lock.lock();
+        try {
+            return outOfOrder;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** @return events whose command threw instead of completing */
+    public long getFailed() {
+        lock.lock();
+        try {
+            return failed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stop the worker; queued events that were not released are discarded. */
+    public void stop() throws InterruptedException {
+        lock.lock();
+        try {
+            running = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        worker.join();
+    }
+
+    private void work() {
+        while (true) {
+            // the lock is released between events so submissions and releases can interleave
+            lock.lock();
+            try {
+                while (running && queue.isEmpty()) {
+                    changed.awaitUninterruptibly();
+                }
+                if (!running) {
+                    return;
+                }
+                ClusterEvent event = queue.pollFirst();
+                Slot slot = homes.get(event.homeId());
+                if (event.sequence() != slot.processed + 1) {
+                    outOfOrder++;
+                }
+                slot.processed = event.sequence();
+                EventCommand command = slot.factory.createEventCommand(event.type(),
+                        event.eventId());
+                try {
+                    command.execute();
+                } catch (RuntimeException e) {
+                    // the worker serves every home on the node: keep going
+                    failed++;
+                }
+                processed++;
+                if (queue.isEmpty()) {
+                    changed.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** Per-home bookkeeping, guarded by the node lock. */
+    private static final class Slot {
+        final HomeController controller;
+        final EventCommandFactory factory;
+        long submitted;
+        long processed;
+
+        Slot(HomeController controller, PlanExecutor planExecutor, long submitted, long processed) {
+            this.controller = controller;
+            this.factory = new EventCommandFactory(controller, DEDUPLICATION_WINDOW, false,
+                    planExecutor);
+            this.submitted = submitted;
+            this.processed = processed;
+        }
+    }
+}
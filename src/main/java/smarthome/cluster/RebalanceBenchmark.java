@@ -0,0 +1,84 @@
+package smarthome.cluster;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import smarthome.load.CountingObserver;
+import smarthome.load.HouseholdEvent;
+import smarthome.load.HouseholdLoadGenerator;
+
+/**
+ * Measures rebalance pauses and checks the no-loss / no-reorder guarantees of {@link Cluster}.
+ * <p>
+ * Starts three in-process nodes, replays a generated household stream from a background
+ * thread and, while it is running, adds a fourth node and then removes one of the originals.
+ * At the end every submitted event must have been executed exactly once and in per-home order;
+ * otherwise the benchmark fails with an {@link IllegalStateException}.
+ * </p>
+ * <p>
+ * Arguments (optional): {@code homes days seed}, defaulting to {@code 20000 7 42}.
+ * </p>
+ */
+public class RebalanceBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int homes = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        List<HouseholdEvent> events = new HouseholdLoadGenerator(homes, days, seed).generate();
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Cluster cluster = new Cluster(new CountingObserver());
+        cluster.join("node-1");
+        cluster.join("node-2");
+        cluster.join("node-3");
+
+        AtomicLong submitted = new AtomicLong();
+        Thread producer = new Thread(() -> {
+            for (HouseholdEvent event : events) {
+                cluster.submit(event.homeId(), event.type(), event.eventId());
+                submitted.incrementAndGet();
+            }
+        }, "producer");
+        producer.start();
+
+        while (submitted.get() < events.size() / 3) {
+            Thread.onSpinWait();
+        }
+        RebalanceReport joined = cluster.join("node-4");
+        while (submitted.get() < 2L * events.size() / 3) {
+            Thread.onSpinWait();
+        }
+        RebalanceReport left = cluster.leave("node-2");
+
+        producer.join();
+        cluster.awaitIdle();
+        System.setOut(stdout);
+
+        System.out.printf("events submitted: %,d%n", submitted.get());
+        System.out.printf("events executed:  %,d%n", cluster.getProcessed());
+        System.out.printf("out of order:     %,d%n", cluster.getOutOfOrder());
+        System.out.printf("failed:           %,d%n", cluster.getFailed());
+        print("join node-4", joined);
+        print("leave node-2", left);
+        cluster.shutdown();
+        if (cluster.getProcessed() != submitted.get()) {
+            throw new IllegalStateException((submitted.get() - cluster.getProcessed())
+                    + " events lost or duplicated during rebalancing");
+        }
+        if (cluster.getOutOfOrder() != 0) {
+            throw new IllegalStateException(cluster.getOutOfOrder()
+                    + " events executed out of per-home order");
+        }
+    }
+
+    private static void print(String label, RebalanceReport report) {
+        System.out.printf("%-13s %,d homes moved, %,d pending events handed off, paused %.2f ms%n",
+                label + ":", report.homesMoved(), report.eventsHandedOff(),
+                report.pauseNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,11 @@
+package smarthome.cluster;
+
+/**
+ * Outcome of one membership change in a {@link Cluster}.
+ *
+ * @param homesMoved      number of homes handed over to another node
+ * @param eventsHandedOff pending events moved together with those homes
+ * @param pauseNanos      time during which event submission was blocked
+ */
+public record RebalanceReport(int homesMoved, long eventsHandedOff, long pauseNanos) {
+}
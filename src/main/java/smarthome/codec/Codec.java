@@ -0,0 +1,32 @@
+package smarthome.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoder and decoder of one record type, reading and writing {@link ByteBuffer}s
+ * directly (heap or direct) at their current position.
+ *
+ * @param <T> the record type
+ */
+public interface Codec<T> {
+
+    /** @return the schema written in each record's header */
+    Schema schema();
+
+    /**
+     * Append {@code value} to {@code out}.
+     *
+     * @throws java.nio.BufferOverflowException if {@code out} has less than {@link #maxSize(Object)} bytes left
+     */
+    void encode(T value, ByteBuffer out);
+
+    /**
+     * Read one record from {@code in}.
+     *
+     * @throws IllegalArgumentException if the record is malformed or of an unsupported version
+     */
+    T decode(ByteBuffer in);
+
+    /** @return an upper bound of the encoded size of {@code value} */
+    int maxSize(T value);
+}
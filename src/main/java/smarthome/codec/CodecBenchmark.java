@@ -0,0 +1,152 @@
+package smarthome.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeState;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.load.HouseholdEvent;
+
+/**
+ * Compares the binary codecs with the plain-text lines used today: the notification message
+ * or command name prefixed with time and home id, and the home state as the admin API's JSON.
+ * <p>
+ * Each record kind is encoded into one direct buffer and decoded again, by both formats, and
+ * the bytes per record and nanoseconds per record are printed. Arguments (optional):
+ * {@code records seed}, defaulting to {@code 1000000 42}.
+ * </p>
+ */
+public class CodecBenchmark {
+    private static final long EPOCH_2024 = 1_704_067_200_000L;
+
+    public static void main(String[] args) {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        DeviceEvent[] deviceEvents = DeviceEvent.values();
+        EventCommandType[] commands = EventCommandType.values();
+        List<DeviceEventRecord> notifications = new ArrayList<>(records);
+        List<HouseholdEvent> householdEvents = new ArrayList<>(records);
+        List<HomeState> states = new ArrayList<>(records);
+        long time = EPOCH_2024;
+        for (int i = 0; i < records; i++) {
+            time += random.nextInt(1000);
+            int homeId = random.nextInt(100_000);
+            DeviceEvent event = deviceEvents[random.nextInt(deviceEvents.length)];
+            String message = event == DeviceEvent.COFFEE_CREATED
+                    ? "[CoffeeMaker] create coffee with " + (random.nextBoolean() ? 40 : 20) + "mg caffeine"
+                    : event.getMessage();
+            notifications.add(new DeviceEventRecord(time, homeId, event, message));
+            householdEvents.add(new HouseholdEvent(time - EPOCH_2024, homeId,
+                    commands[random.nextInt(commands.length)], i));
+            states.add(new HomeState(homeId, random.nextBoolean(), random.nextBoolean(),
+                    random.nextBoolean(), random.nextBoolean(), random.nextBoolean()));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(records * 128);
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? "warm-up" : "measured";
+            run(label, "device events", buffer, notifications, new DeviceEventCodec(),
+                    r -> r.timeMillis() + "," + r.homeId() + "," + r.event().name() + "," + r.message(),
+                    line -> {
+                        String[] fields = line.split(",", 4);
+                        return new DeviceEventRecord(Long.parseLong(fields[0]), Integer.parseInt(fields[1]),
+                                DeviceEvent.valueOf(fields[2]), fields[3]);
+                    });
+            run(label, "command events", buffer, householdEvents, new CommandEventCodec(),
+                    e -> e.timeMillis() + "," + e.homeId() + "," + e.type().name() + "," + e.eventId(),
+                    line -> {
+                        String[] fields = line.split(",", 4);
+                        return new HouseholdEvent(Long.parseLong(fields[0]), Integer.parseInt(fields[1]),
+                                EventCommandType.valueOf(fields[2]), Long.parseLong(fields[3]));
+                    });
+            run(label, "home states", buffer, states, new HomeStateCodec(),
+                    s -> "{\"homeId\":" + s.homeId()
+                            + ",\"alarmOn\":" + s.alarmOn()
+                            + ",\"heatingOn\":" + s.heatingOn()
+                            + ",\"doorOpen\":" + s.doorOpen()
+                            + ",\"lightOn\":" + s.lightOn()
+                            + ",\"strongCoffee\":" + s.strongCoffee() + "}",
+                    CodecBenchmark::parseState);
+        }
+    }
+
+    private static <T> void run(String label, String kind, ByteBuffer buffer, List<T> values, Codec<T> codec,
+                                Function<T, String> format, Function<String, T> parse) {
+        int records = values.size();
+
+        buffer.clear();
+        long start = System.nanoTime();
+        for (T value : values) {
+            codec.encode(value, buffer);
+        }
+        long binaryEncode = System.nanoTime() - start;
+        int binaryBytes = buffer.position();
+        buffer.flip();
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            checksum += codec.decode(buffer).hashCode();
+        }
+        long binaryDecode = System.nanoTime() - start;
+        verify(values, checksum, kind + " (binary)");
+
+        buffer.clear();
+        start = System.nanoTime();
+        for (T value : values) {
+            buffer.put(format.apply(value).getBytes(StandardCharsets.UTF_8)).put((byte) '\n');
+        }
+        long textEncode = System.nanoTime() - start;
+        int textBytes = buffer.position();
+        buffer.flip();
+        checksum = 0;
+        byte[] line = new byte[256];
+        start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            int length = 0;
+            for (byte b = buffer.get(); b != '\n'; b = buffer.get()) {
+                line[length++] = b;
+            }
+            checksum += parse.apply(new String(line, 0, length, StandardCharsets.UTF_8)).hashCode();
+        }
+        long textDecode = System.nanoTime() - start;
+        verify(values, checksum, kind + " (text)");
+
+        System.out.printf("%s %-15s binary %5.1f B, encode %5.1f ns, decode %5.1f ns | "
+                        + "text %5.1f B, encode %5.1f ns, decode %5.1f ns%n",
+                label, kind + ":",
+                (double) binaryBytes / records, (double) binaryEncode / records, (double) binaryDecode / records,
+                (double) textBytes / records, (double) textEncode / records, (double) textDecode / records);
+    }
+
+    private static <T> void verify(List<T> values, long checksum, String what) {
+        long expected = 0;
+        for (T value : values) {
+            expected += value.hashCode();
+        }
+        if (expected != checksum) {
+            throw new IllegalStateException(what + " did not round-trip");
+        }
+    }
+
+    private static HomeState parseState(String json) {
+        int homeStart = json.indexOf(':') + 1;
+        int homeEnd = json.indexOf(',', homeStart);
+        return new HomeState(Integer.parseInt(json, homeStart, homeEnd, 10),
+                flag(json, "\"alarmOn\":"),
+                flag(json, "\"heatingOn\":"),
+                flag(json, "\"doorOpen\":"),
+                flag(json, "\"lightOn\":"),
+                flag(json, "\"strongCoffee\":"));
+    }
+
+    private static boolean flag(String json, String key) {
+        return json.startsWith("true", json.indexOf(key) + key.length());
+    }
+}
@@ -0,0 +1,82 @@
+package smarthome.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import smarthome.commands.EventCommandType;
+import smarthome.load.HouseholdEvent;
+
+/**
+ * Binary codec of {@link EventCommandType} events ({@link HouseholdEvent}s).
+ * <p>
+ * Version 2 layout, after the {@link Schema#COMMAND_EVENT} header: time as a zigzag varint
+ * (run-relative times are small, epoch millis work too), home id as an unsigned varint, the
+ * command's wire code (see {@link #WIRE_CODES}) in one byte, and the event id as a zigzag
+ * varint ({@link HouseholdEvent#NO_ID} takes one byte). Version 1 records end after the wire
+ * code and decode without an id. Commands without a code and negative home ids cannot be
+ * encoded.
+ * </p>
+ */
+public final class CommandEventCodec implements Codec<HouseholdEvent> {
+
+    /** Version 1 and 2 wire codes: a command's index in this array. Append only. */
+    private static final EventCommandType[] WIRE_CODES = {
+            EventCommandType.GOING_HOME,
+            EventCommandType.ARRIVES_HOME,
+            EventCommandType.MOVEMENT,
+            EventCommandType.CHANGE_TO_HOLIDAY,
+            EventCommandType.CHANGE_TO_WORKING_DAY,
+    };
+    private static final int[] CODE_BY_ORDINAL = new int[EventCommandType.values().length];
+
+    static {
+        Arrays.fill(CODE_BY_ORDINAL, -1);
+        for (int code = 0; code < WIRE_CODES.length; code++) {
+            CODE_BY_ORDINAL[WIRE_CODES[code].ordinal()] = code;
+        }
+    }
+
+    @Override
+    public Schema schema() {
+        return Schema.COMMAND_EVENT;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the command has no wire code or the home id is
+     *                                  negative; nothing is written then
+     */
+    @Override
+    public void encode(HouseholdEvent value, ByteBuffer out) {
+        int code = CODE_BY_ORDINAL[value.type().ordinal()];
+        if (code < 0) {
+            throw new IllegalArgumentException("No wire code for command: " + value.type());
+        }
+        if (value.homeId() < 0) {
+            throw new IllegalArgumentException("Negative home id: " + value.homeId());
+        }
+        Schema.COMMAND_EVENT.writeHeader(out);
+        Varint.writeSigned(out, value.timeMillis());
+        Varint.writeUnsigned(out, value.homeId());
+        out.put((byte) code);
+        Varint.writeSigned(out, value.eventId());
+    }
+
+    @Override
+    public HouseholdEvent decode(ByteBuffer in) {
+        int version = Schema.COMMAND_EVENT.readHeader(in);
+        long timeMillis = Varint.readSigned(in);
+        int homeId = Varint.readUnsignedInt(in);
+        int code = in.get() & 0xFF;
+        if (code >= WIRE_CODES.length) {
+            throw new IllegalArgumentException("Unknown command code: " + code);
+        }
+        long eventId = version >= 2 ? Varint.readSigned(in) : HouseholdEvent.NO_ID;
+        return new HouseholdEvent(timeMillis, homeId, WIRE_CODES[code], eventId);
+    }
+
+    @Override
+    public int maxSize(HouseholdEvent value) {
+        // header, zigzag time, non-negative home id, code, zigzag event id
+        return 1 + 10 + 5 + 1 + 10;
+    }
+}
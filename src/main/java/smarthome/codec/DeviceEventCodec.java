@@ -0,0 +1,146 @@
+package smarthome.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import smarthome.domain.observer.DeviceEvent;
+
+/**
+ * Binary codec of {@link DeviceEventRecord}s.
+ * <p>
+ * Version 1 layout, after the {@link Schema#DEVICE_EVENT} header:
+ * </p>
+ * <ol>
+ *   <li>time: unsigned varint of epoch millis,</li>
+ *   <li>home id: unsigned varint,</li>
+ *   <li>event and message kind in one byte: wire code of the event (see {@link #WIRE_CODES}) in
+ *       the low five bits, message kind in the high three,</li>
+ *   <li>payload by message kind: nothing for the event's default message, an unsigned varint for
+ *       the coffee maker's caffeine message, otherwise a varint length and UTF-8 bytes.</li>
+ * </ol>
+ * <p>
+ * Wire codes are listed explicitly rather than taken from {@link Enum#ordinal()}, so
+ * reordering the enum cannot change the format; new events get new codes at the end. Events
+ * without a code, negative times and negative home ids cannot be encoded.
+ * </p>
+ */
+public final class DeviceEventCodec implements Codec<DeviceEventRecord> {
+
+    /** Version 1 wire codes: an event's index in this array. Append only. */
+    private static final DeviceEvent[] WIRE_CODES = {
+            DeviceEvent.ALARM_TURN_ON,
+            DeviceEvent.ALARM_TURN_OFF,
+            DeviceEvent.ALARM_TRIGGERED,
+            DeviceEvent.HEATING_TURN_ON,
+            DeviceEvent.HEATING_TURN_OFF,
+            DeviceEvent.DOOR_OPEN,
+            DeviceEvent.DOOR_CLOSE,
+            DeviceEvent.LIGHT_TURN_ON,
+            DeviceEvent.LIGHT_TURN_OFF,
+            DeviceEvent.COFFEE_CREATED,
+            DeviceEvent.COFFEE_TYPE_CHANGED,
+    };
+    private static final int[] CODE_BY_ORDINAL = new int[DeviceEvent.values().length];
+
+    private static final int MESSAGE_DEFAULT = 0;
+    private static final int MESSAGE_CAFFEINE = 1;
+    private static final int MESSAGE_TEXT = 2;
+
+    private static final String CAFFEINE_PREFIX = "[CoffeeMaker] create coffee with ";
+    private static final String CAFFEINE_SUFFIX = "mg caffeine";
+
+    static {
+        Arrays.fill(CODE_BY_ORDINAL, -1);
+        for (int code = 0; code < WIRE_CODES.length; code++) {
+            CODE_BY_ORDINAL[WIRE_CODES[code].ordinal()] = code;
+        }
+    }
+
+    @Override
+    public Schema schema() {
+        return Schema.DEVICE_EVENT;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the event has no wire code or the time or home id is
+     *                                  negative; nothing is written then
+     */
+    @Override
+    public void encode(DeviceEventRecord value, ByteBuffer out) {
+        int code = CODE_BY_ORDINAL[value.event().ordinal()];
+        if (code < 0) {
+            throw new IllegalArgumentException("No wire code for device event: " + value.event());
+        }
+        if (value.timeMillis() < 0 || value.homeId() < 0) {
+            throw new IllegalArgumentException("Negative time or home id: " + value);
+        }
+        Schema.DEVICE_EVENT.writeHeader(out);
+        Varint.writeUnsigned(out, value.timeMillis());
+        Varint.writeUnsigned(out, value.homeId());
+        String message = value.message();
+        if (message.equals(value.event().getMessage())) {
+            out.put((byte) (MESSAGE_DEFAULT << 5 | code));
+            return;
+        }
+        int caffeine = value.event() == DeviceEvent.COFFEE_CREATED ? caffeine(message) : -1;
+        if (caffeine >= 0) {
+            out.put((byte) (MESSAGE_CAFFEINE << 5 | code));
+            Varint.writeUnsigned(out, caffeine);
+            return;
+        }
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        out.put((byte) (MESSAGE_TEXT << 5 | code));
+        Varint.writeUnsigned(out, text.length);
+        out.put(text);
+    }
+
+    @Override
+    public DeviceEventRecord decode(ByteBuffer in) {
+        Schema.DEVICE_EVENT.readHeader(in);
+        long timeMillis = Varint.readUnsigned(in);
+        int homeId = Varint.readUnsignedInt(in);
+        int tag = in.get() & 0xFF;
+        int code = tag & 0x1F;
+        if (code >= WIRE_CODES.length) {
+            throw new IllegalArgumentException("Unknown device event code: " + code);
+        }
+        DeviceEvent event = WIRE_CODES[code];
+        String message = switch (tag >>> 5) {
+            case MESSAGE_DEFAULT -> event.getMessage();
+            case MESSAGE_CAFFEINE -> CAFFEINE_PREFIX + Varint.readUnsignedInt(in) + CAFFEINE_SUFFIX;
+            case MESSAGE_TEXT -> {
+                byte[] text = new byte[Varint.readUnsignedInt(in)];
+                in.get(text);
+                yield new String(text, StandardCharsets.UTF_8);
+            }
+            default -> throw new IllegalArgumentException("Unknown message kind: " + (tag >>> 5));
+        };
+        return new DeviceEventRecord(timeMillis, homeId, event, message);
+    }
+
+    @Override
+    public int maxSize(DeviceEventRecord value) {
+        // header, non-negative time and home id, tag, then the worst case of the payload
+        return 1 + 9 + 5 + 1 + 5 + value.message().length() * 3;
+    }
+
+    /** @return caffeine amount of a standard coffee message, or -1 for any other text */
+    private static int caffeine(String message) {
+        int end = message.length() - CAFFEINE_SUFFIX.length();
+        if (!message.startsWith(CAFFEINE_PREFIX) || !message.endsWith(CAFFEINE_SUFFIX)
+                || end <= CAFFEINE_PREFIX.length() || end - CAFFEINE_PREFIX.length() > 9) {
+            return -1;
+        }
+        int amount = 0;
+        for (int i = CAFFEINE_PREFIX.length(); i < end; i++) {
+            char c = message.charAt(i);
+            if (c < '0' || c > '9' || (amount == 0 && i > CAFFEINE_PREFIX.length())) {
+                // leading zeros would not survive the round trip
+                return -1;
+            }
+            amount = amount * 10 + (c - '0');
+        }
+        return amount;
+    }
+}
@@ -0,0 +1,14 @@
+package smarthome.codec;
+
+import smarthome.domain.observer.DeviceEvent;
+
+/**
+ * A device notification as stored or sent: what happened, where and when.
+ *
+ * @param timeMillis epoch millis of the notification
+ * @param homeId     the home of the device
+ * @param event      the typed event
+ * @param message    the human-readable message; usually {@link DeviceEvent#getMessage()}
+ */
+public record DeviceEventRecord(long timeMillis, int homeId, DeviceEvent event, String message) {
+}
@@ -0,0 +1,67 @@
+package smarthome.codec;
+
+import java.nio.ByteBuffer;
+
+import smarthome.controller.HomeState;
+
+/**
+ * Binary codec of {@link HomeState} snapshots.
+ * <p>
+ * Version 1 layout, after the {@link Schema#HOME_STATE} header: home id as an unsigned varint,
+ * then one byte of device flags (bit 0 alarm on, 1 heating on, 2 door open, 3 light on,
+ * 4 strong coffee). A whole home fits in two to six bytes; negative home ids cannot be
+ * encoded.
+ * </p>
+ */
+public final class HomeStateCodec implements Codec<HomeState> {
+    private static final int ALARM_ON = 1;
+    private static final int HEATING_ON = 1 << 1;
+    private static final int DOOR_OPEN = 1 << 2;
+    private static final int LIGHT_ON = 1 << 3;
+    private static final int STRONG_COFFEE = 1 << 4;
+    private static final int KNOWN_FLAGS = (1 << 5) - 1;
+
+    @Override
+    public Schema schema() {
+        return Schema.HOME_STATE;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the home id is negative; nothing is written then
+     */
+    @Override
+    public void encode(HomeState value, ByteBuffer out) {
+        if (value.homeId() < 0) {
+            throw new IllegalArgumentException("Negative home id: " + value.homeId());
+        }
+        Schema.HOME_STATE.writeHeader(out);
+        Varint.writeUnsigned(out, value.homeId());
+        out.put((byte) ((value.alarmOn() ? ALARM_ON : 0)
+                | (value.heatingOn() ? HEATING_ON : 0)
+                | (value.doorOpen() ? DOOR_OPEN : 0)
+                | (value.lightOn() ? LIGHT_ON : 0)
+                | (value.strongCoffee() ? STRONG_COFFEE : 0)));
+    }
+
+    @Override
+    public HomeState decode(ByteBuffer in) {
+        Schema.HOME_STATE.readHeader(in);
+        int homeId = Varint.readUnsignedInt(in);
+        int flags = in.get() & 0xFF;
+        if ((flags & ~KNOWN_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unknown home state flags: " + Integer.toBinaryString(flags));
+        }
+        return new HomeState(homeId,
+                (flags & ALARM_ON) != 0,
+                (flags & HEATING_ON) != 0,
+                (flags & DOOR_OPEN) != 0,
+                (flags & LIGHT_ON) != 0,
+                (flags & STRONG_COFFEE) != 0);
+    }
+
+    @Override
+    public int maxSize(HomeState value) {
+        // header, non-negative home id, flags
+        return 1 + 5 + 1;
+    }
+}
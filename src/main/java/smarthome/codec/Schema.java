@@ -0,0 +1,56 @@
+package smarthome.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Record types of the binary format and their current versions.
+ * <p>
+ * Every encoded record starts with one header byte: the schema id in the high nibble and the
+ * version in the low nibble. Decoders accept the versions they know and reject anything else,
+ * so a format change bumps the version instead of silently misreading old data.
+ * </p>
+ */
+public enum Schema {
+    /** {@link DeviceEventRecord}; see {@link DeviceEventCodec}. */
+    DEVICE_EVENT(1, 1),
+    /** {@link smarthome.load.HouseholdEvent}; see {@link CommandEventCodec}. */
+    COMMAND_EVENT(2, 2),
+    /** {@link smarthome.controller.HomeState}; see {@link HomeStateCodec}. */
+    HOME_STATE(3, 1);
+
+    private final int id;
+    private final int version;
+
+    Schema(int id, int version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    /** @return the current version written by the encoders */
+    public int getVersion() {
+        return version;
+    }
+
+    /** Write the header of the current version. */
+    void writeHeader(ByteBuffer out) {
+        out.put((byte) (id << 4 | version));
+    }
+
+    /**
+     * Read and check a header.
+     *
+     * @return the version of the record that follows
+     * @throws IllegalArgumentException if the record is of another schema or a newer version
+     */
+    int readHeader(ByteBuffer in) {
+        int header = in.get() & 0xFF;
+        if (header >>> 4 != id) {
+            throw new IllegalArgumentException("Expected " + name() + " record, found schema " + (header >>> 4));
+        }
+        int recordVersion = header & 0x0F;
+        if (recordVersion < 1 || recordVersion > version) {
+            throw new IllegalArgumentException("Unsupported " + name() + " version: " + recordVersion);
+        }
+        return recordVersion;
+    }
+}
@@ -0,0 +1,68 @@
+package smarthome.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128 variable-length integers with zigzag encoding for signed values.
+ * <p>
+ * Seven payload bits per byte, least significant group first; the high bit marks that another
+ * byte follows. Small magnitudes (home ids, deltas, lengths) take one or two bytes.
+ * </p>
+ */
+public final class Varint {
+
+    private Varint() {
+    }
+
+    /** Write a non-negative (or unsigned) {@code long}: 1 to 10 bytes. */
+    public static void writeUnsigned(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /** Read a value written by {@link #writeUnsigned(ByteBuffer, long)}. */
+    public static long readUnsigned(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /** Write a signed {@code long}, zigzag-encoded so small negative values stay short. */
+    public static void writeSigned(ByteBuffer out, long value) {
+        writeUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+    /** Read a value written by {@link #writeSigned(ByteBuffer, long)}. */
+    public static long readSigned(ByteBuffer in) {
+        long raw = readUnsigned(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /** Read an unsigned value that must fit an {@code int}. */
+    public static int readUnsignedInt(ByteBuffer in) {
+        long value = readUnsigned(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    /** @return number of bytes {@link #writeUnsigned(ByteBuffer, long)} uses for {@code value} */
+    public static int sizeOfUnsigned(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
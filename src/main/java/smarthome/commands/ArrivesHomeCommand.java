@@ -1,23 +1,44 @@
 package smarthome.commands;
 
 import smarthome.controller.HomeController;
+import smarthome.execution.PlanExecutor;
+import smarthome.execution.PlanResult;
 
 /**
  * Command that signals the user has arrived home.
  * <p>
  * Delegates to {@link HomeController#arrivesHome()} which typically:
  * turns off the alarm if armed, opens the front door if closed,
- * and brews coffee using the configured strategy.
+ * and brews coffee using the configured strategy. Given a {@link PlanExecutor}, it runs
+ * {@link HomeController#arrivesHomePlan()} instead and fails, after rolling back, only if the
+ * alarm or the door step failed.
  * </p>
  */
 public class ArrivesHomeCommand extends EventCommand {
     private final HomeController homeController;
+    private final PlanExecutor planExecutor;
+    private final String idempotencyKey;
 
     /**
      * @param homeController the receiver that performs the actual work
      */
     public ArrivesHomeCommand(HomeController homeController) {
+        this(homeController, null, null);
+    }
+
+    /**
+     * Run the use case as {@link HomeController#arrivesHomePlan()} through {@code planExecutor},
+     * with its retries and compensation.
+     *
+     * @param homeController the receiver that performs the actual work
+     * @param planExecutor   runs the plan
+     * @param idempotencyKey key of the event, so a retry skips completed steps; may be {@code null}
+     */
+    public ArrivesHomeCommand(HomeController homeController, PlanExecutor planExecutor,
+                              String idempotencyKey) {
         this.homeController = homeController;
+        this.planExecutor = planExecutor;
+        this.idempotencyKey = idempotencyKey;
     }
 
     /**
@@ -25,6 +46,13 @@ public class ArrivesHomeCommand extends EventCommand {
      */
     @Override
     public void execute() {
-        homeController.arrivesHome();
+        if (planExecutor == null) {
+            homeController.arrivesHome();
+            return;
+        }
+        PlanResult result = planExecutor.execute(homeController.arrivesHomePlan(), idempotencyKey);
+        if (result.status() == PlanResult.Status.ROLLED_BACK) {
+            throw result.failure();
+        }
     }
 }
@@ -0,0 +1,34 @@
+package smarthome.commands;
+
+import smarthome.domain.observer.NotificationBatch;
+
+/**
+ * Decorator that executes the wrapped command inside a {@link NotificationBatch}, so the device
+ * notifications of one use case reach each observer as a single batch when it completes.
+ * <p>
+ * The batch is delivered even if the wrapped command throws, since the devices it already
+ * switched did change. Created by {@link EventCommandFactory} when notification batching is
+ * enabled.
+ * </p>
+ */
+public class BatchingEventCommand extends EventCommand {
+    private final EventCommand delegate;
+
+    /**
+     * @param delegate the command whose notifications are batched
+     */
+    BatchingEventCommand(EventCommand delegate) {
+        this.delegate = delegate;
+    }
+
+    /** Execute the wrapped command, then deliver its notifications. */
+    @Override
+    public void execute() {
+        NotificationBatch batch = NotificationBatch.open();
+        try {
+            delegate.execute();
+        } finally {
+            batch.close();
+        }
+    }
+}
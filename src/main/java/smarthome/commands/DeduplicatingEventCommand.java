@@ -0,0 +1,38 @@
+package smarthome.commands;
+
+/**
+ * Decorator that executes the wrapped command only if its event id has not been processed yet.
+ * <p>
+ * The id is recorded after the wrapped command completed, so a command that throws can be
+ * retried with the same id, while a gateway's retransmission of an already processed event is
+ * ignored. Created by {@link EventCommandFactory#createEventCommand(EventCommandType, long)}.
+ * </p>
+ */
+public class DeduplicatingEventCommand extends EventCommand {
+    private final EventCommand delegate;
+    private final long eventId;
+    private final EventCommandFactory factory;
+
+    /**
+     * @param delegate the command to execute at most once per event id
+     * @param eventId  id of the event that produced the command
+     * @param factory  the factory whose recent-id window is consulted and updated
+     */
+    DeduplicatingEventCommand(EventCommand delegate, long eventId, EventCommandFactory factory) {
+        this.delegate = delegate;
+        this.eventId = eventId;
+        this.factory = factory;
+    }
+
+    /** Execute the wrapped command unless the event id was already processed. */
+    @Override
+    public void execute() {
+        if (factory.isDuplicate(eventId)) {
+            System.out.println("[EventCommandFactory] nothing to do (event " + eventId
+                    + " was already processed)");
+            return;
+        }
+        delegate.execute();
+        factory.markProcessed(eventId);
+    }
+}
@@ -1,6 +1,13 @@
 package smarthome.commands;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import smarthome.controller.HomeController;
+import smarthome.execution.PlanExecutor;
+import smarthome.load.HouseholdEvent;
+import smarthome.plugin.PluginDevices;
+import smarthome.profiling.Profiling;
 
 /**
  * Factory for creating {@link EventCommand} instances based on an {@link EventCommandType}.
@@ -9,15 +16,96 @@ import smarthome.controller.HomeController;
  * concrete command classes. It pairs nicely with schedulers, queues, or
  * controller code that only knows the enum.
  * </p>
+ * <p>
+ * With a deduplication window, commands created for an event id execute at most once per id:
+ * gateways that retry on timeout may deliver the same event twice, and some use cases (brewing
+ * coffee) are not idempotent. The window remembers the most recent ids of this home only, in a
+ * fixed amount of memory with constant-time lookups (see {@link RecentEventIds}).
+ * </p>
+ * <p>
+ * With a {@link PlanExecutor}, the multi-device use cases (arrives home, movement) run as step
+ * plans with retries and compensation; commands created for an event id use it, with the home
+ * id, as the idempotency key, so a retried event skips the steps that already completed.
+ * </p>
+ * <p>
+ * A home moving to another factory, for example to another cluster node, keeps both: pass
+ * {@link #recentEventIds()} and {@link #planJournal()} of the old factory to
+ * {@link #restoreRecentEventIds(long[])} and {@link #restorePlanJournal(Map)} of the new one.
+ * </p>
+ * <p>
+ * If the controller has {@link smarthome.plugin.DevicePlugin} devices, every command is also
+ * dispatched to them, and plugin events can be created by name with
+ * {@link #createEventCommand(String)}.
+ * </p>
+ * <p>
+ * With notification batching, each command buffers the notifications of the devices it
+ * switches and delivers them per observer when it completes (see
+ * {@link smarthome.domain.observer.NotificationBatch}).
+ * </p>
+ * <p>
+ * Commands created while a JFR recording runs are recorded as
+ * {@link smarthome.profiling.DispatchEvent}s if the recording enables that event (see
+ * {@link ProfiledEventCommand}); otherwise they are not wrapped, so no JFR class is loaded
+ * (see {@link Profiling}).
+ * </p>
  */
 public class EventCommandFactory {
+    private static final int PLANNED_EVENTS = 32;
+
     private final HomeController homeController;
+    private final RecentEventIds processedEvents;
+    /** Ids of the recent events that ran as plans, for {@link #planJournal()}. */
+    private final RecentEventIds plannedEvents;
+    private final boolean batchNotifications;
+    private final PlanExecutor planExecutor;
+    private long duplicates;
 
     /**
      * @param homeController the receiver that commands will operate on (must not be {@code null})
      */
     public EventCommandFactory(HomeController homeController) {
+        this(homeController, 0);
+    }
+
+    /**
+     * @param homeController      the receiver that commands will operate on (must not be {@code null})
+     * @param deduplicationWindow number of recent event ids to remember per home;
+     *                            {@code 0} disables deduplication
+     */
+    public EventCommandFactory(HomeController homeController, int deduplicationWindow) {
+        this(homeController, deduplicationWindow, false);
+    }
+
+    /**
+     * @param homeController      the receiver that commands will operate on (must not be {@code null})
+     * @param deduplicationWindow number of recent event ids to remember per home;
+     *                            {@code 0} disables deduplication
+     * @param batchNotifications  whether each command delivers its device notifications as one
+     *                            batch per observer when it completes
+     */
+    public EventCommandFactory(HomeController homeController, int deduplicationWindow,
+                               boolean batchNotifications) {
+        this(homeController, deduplicationWindow, batchNotifications, null);
+    }
+
+    /**
+     * @param homeController      the receiver that commands will operate on (must not be {@code null})
+     * @param deduplicationWindow number of recent event ids to remember per home;
+     *                            {@code 0} disables deduplication
+     * @param batchNotifications  whether each command delivers its device notifications as one
+     *                            batch per observer when it completes
+     * @param planExecutor        runs the multi-device use cases as step plans; may be shared
+     *                            between homes; {@code null} runs them directly
+     */
+    public EventCommandFactory(HomeController homeController, int deduplicationWindow,
+                               boolean batchNotifications, PlanExecutor planExecutor) {
         this.homeController = homeController;
+        this.processedEvents = deduplicationWindow > 0
+                ? new RecentEventIds(deduplicationWindow) : null;
+        this.batchNotifications = batchNotifications;
+        this.planExecutor = planExecutor;
+        this.plannedEvents = planExecutor == null ? null : new RecentEventIds(
+                deduplicationWindow > 0 ? deduplicationWindow : PLANNED_EVENTS);
     }
 
     /**
@@ -28,13 +116,89 @@ public class EventCommandFactory {
      * @throws IllegalArgumentException if the type is not recognized
      */
     public EventCommand createEventCommand(EventCommandType type) {
+        return create(type, null);
+    }
+
+    /**
+     * Create a command for an event given by name: an {@link EventCommandType} constant or an
+     * event declared by a device plugin.
+     *
+     * @param event the event name
+     * @return a command bound to the configured {@link HomeController}
+     * @throws IllegalArgumentException if neither the controller nor its plugins know the event
+     */
+    public EventCommand createEventCommand(String event) {
+        for (EventCommandType type : EventCommandType.values()) {
+            if (type.name().equals(event)) {
+                return createEventCommand(type);
+            }
+        }
+        PluginDevices plugins = homeController.getPlugins();
+        int eventId = plugins == null ? -1 : plugins.getRegistry().eventId(event);
+        if (eventId < 0) {
+            throw new IllegalArgumentException("Unknown event type: " + event);
+        }
+        return decorate(new PluginDispatchingCommand(null, plugins, eventId), event);
+    }
+
+    /**
+     * Create a command for a uniquely identified event.
+     * <p>
+     * If deduplication is enabled, the command does nothing when an event with the same id has
+     * already been processed within the window; otherwise the id is ignored. An event without
+     * an id is never deduplicated, as with {@link #createEventCommand(EventCommandType)}.
+     * </p>
+     *
+     * @param type    the type of event to execute
+     * @param eventId id assigned by the event source; retries of one event carry the same id;
+     *                {@link HouseholdEvent#NO_ID} if it has none
+     * @return a concrete {@link EventCommand} bound to the configured {@link HomeController}
+     * @throws IllegalArgumentException if the type is not recognized
+     */
+    public EventCommand createEventCommand(EventCommandType type, long eventId) {
+        if (eventId == HouseholdEvent.NO_ID) {
+            return createEventCommand(type);
+        }
+        String idempotencyKey = null;
+        if (planExecutor != null
+                && (type == EventCommandType.ARRIVES_HOME || type == EventCommandType.MOVEMENT)) {
+            idempotencyKey = idempotencyKey(eventId);
+            plannedEvents.add(eventId);
+        }
+        EventCommand command = create(type, idempotencyKey);
+        return processedEvents == null
+                ? command : new DeduplicatingEventCommand(command, eventId, this);
+    }
+
+    private EventCommand create(EventCommandType type, String idempotencyKey) {
+        EventCommand command = createBuiltInCommand(type, idempotencyKey);
+        PluginDevices plugins = homeController.getPlugins();
+        if (plugins != null) {
+            command = new PluginDispatchingCommand(command, plugins, type.ordinal());
+        }
+        return decorate(command, type.name());
+    }
+
+    private EventCommand decorate(EventCommand command, String eventType) {
+        if (batchNotifications) {
+            command = new BatchingEventCommand(command);
+        }
+        if (!Profiling.isActive()) {
+            return command;
+        }
+        return new ProfiledEventCommand(command, homeController.getHomeId(), eventType);
+    }
+
+    private EventCommand createBuiltInCommand(EventCommandType type, String idempotencyKey) {
         switch (type) {
             case GOING_HOME:
                 return new GoingHomeCommand(homeController);
             case ARRIVES_HOME:
-                return new ArrivesHomeCommand(homeController);
+                return planExecutor == null ? new ArrivesHomeCommand(homeController)
+                        : new ArrivesHomeCommand(homeController, planExecutor, idempotencyKey);
             case MOVEMENT:
-                return new MovementCommand(homeController);
+                return planExecutor == null ? new MovementCommand(homeController)
+                        : new MovementCommand(homeController, planExecutor, idempotencyKey);
             case CHANGE_TO_HOLIDAY:
                 return new ChangeToHolidayCommand(homeController);
             case CHANGE_TO_WORKING_DAY:
@@ -43,4 +207,77 @@ public class EventCommandFactory {
                 throw new IllegalArgumentException("Unknown event type: " + type);
         }
     }
+
+    /** @return ids of the recently processed events, oldest first; empty without deduplication */
+    public long[] recentEventIds() {
+        return processedEvents == null ? new long[0] : processedEvents.toArray();
+    }
+
+    /**
+     * Remember events processed by another factory for the same home, so their retries are
+     * skipped here too; ignored without deduplication.
+     *
+     * @param eventIds ids as returned by {@link #recentEventIds()}, oldest first
+     */
+    public void restoreRecentEventIds(long[] eventIds) {
+        if (processedEvents != null) {
+            for (long eventId : eventIds) {
+                processedEvents.add(eventId);
+            }
+        }
+    }
+
+    /**
+     * @return the plan steps completed for the home's most recent plan events (as many as the
+     *         deduplication window, or {@value #PLANNED_EVENTS} without deduplication), by event
+     *         id, oldest first; empty without a {@link PlanExecutor}
+     */
+    public Map<Long, Long> planJournal() {
+        Map<Long, Long> journal = new LinkedHashMap<>();
+        if (plannedEvents != null) {
+            for (long eventId : plannedEvents.toArray()) {
+                long completed = planExecutor.completedSteps(idempotencyKey(eventId));
+                if (completed != 0) {
+                    journal.put(eventId, completed);
+                }
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Journal plan steps completed by another factory for the same home, so retried events
+     * resume their plans here; ignored without a {@link PlanExecutor}.
+     *
+     * @param journal steps by event id, as returned by {@link #planJournal()}
+     */
+    public void restorePlanJournal(Map<Long, Long> journal) {
+        if (plannedEvents != null) {
+            for (Map.Entry<Long, Long> entry : journal.entrySet()) {
+                plannedEvents.add(entry.getKey());
+                planExecutor.restore(idempotencyKey(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    private String idempotencyKey(long eventId) {
+        return homeController.getHomeId() + "/" + eventId;
+    }
+
+    /** @return number of commands skipped because their event had already been processed */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    boolean isDuplicate(long eventId) {
+        if (processedEvents.contains(eventId)) {
+            duplicates++;
+            return true;
+        }
+        return false;
+    }
+
+    void markProcessed(long eventId) {
+        processedEvents.add(eventId);
+    }
 }
@@ -1,27 +1,53 @@
 package smarthome.commands;
 
 import smarthome.controller.HomeController;
+import smarthome.execution.PlanExecutor;
+import smarthome.execution.PlanResult;
 
 /**
  * Command triggered on movement detection.
  * <p>
  * Delegates to {@link HomeController#movement()} which raises an alarm if armed
- * and ensures lighting is on.
+ * and ensures lighting is on. Given a {@link PlanExecutor}, it runs
+ * {@link HomeController#movementPlan()} instead and fails only if the alarm could not be raised.
  * </p>
  */
 public class MovementCommand extends EventCommand {
     private final HomeController homeController;
+    private final PlanExecutor planExecutor;
+    private final String idempotencyKey;
 
     /**
      * @param homeController the receiver that performs the actual action
      */
     public MovementCommand(HomeController homeController) {
+        this(homeController, null, null);
+    }
+
+    /**
+     * Run the use case as {@link HomeController#movementPlan()} through {@code planExecutor},
+     * with its retries.
+     *
+     * @param homeController the receiver that performs the actual work
+     * @param planExecutor   runs the plan
+     * @param idempotencyKey key of the event, so a retry skips completed steps; may be {@code null}
+     */
+    public MovementCommand(HomeController homeController, PlanExecutor planExecutor, String idempotencyKey) {
         this.homeController = homeController;
+        this.planExecutor = planExecutor;
+        this.idempotencyKey = idempotencyKey;
     }
 
     /** Execute the movement handling use case. */
     @Override
     public void execute() {
-        homeController.movement();
+        if (planExecutor == null) {
+            homeController.movement();
+            return;
+        }
+        PlanResult result = planExecutor.execute(homeController.movementPlan(), idempotencyKey);
+        if (result.status() == PlanResult.Status.ROLLED_BACK) {
+            throw result.failure();
+        }
     }
 }
@@ -0,0 +1,37 @@
+package smarthome.commands;
+
+import smarthome.plugin.PluginDevices;
+
+/**
+ * Decorator that also dispatches its event to the home's plugin devices.
+ * <p>
+ * The built-in use case runs first, then the plugin actions bound to the event. Without a
+ * wrapped command, only the plugins run; that is how plugin events are executed. Created by
+ * {@link EventCommandFactory} when the controller has plugins.
+ * </p>
+ */
+public class PluginDispatchingCommand extends EventCommand {
+    private final EventCommand delegate;
+    private final PluginDevices plugins;
+    private final int eventId;
+
+    /**
+     * @param delegate the built-in command, or {@code null} for a plugin event
+     * @param plugins  the home's plugin devices
+     * @param eventId  id of the event in the plugins' registry
+     */
+    PluginDispatchingCommand(EventCommand delegate, PluginDevices plugins, int eventId) {
+        this.delegate = delegate;
+        this.plugins = plugins;
+        this.eventId = eventId;
+    }
+
+    /** Execute the built-in command, if any, then the plugin actions. */
+    @Override
+    public void execute() {
+        if (delegate != null) {
+            delegate.execute();
+        }
+        plugins.dispatch(eventId);
+    }
+}
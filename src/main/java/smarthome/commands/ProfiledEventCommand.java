@@ -0,0 +1,49 @@
+package smarthome.commands;
+
+import smarthome.profiling.DispatchContext;
+import smarthome.profiling.DispatchEvent;
+
+/**
+ * Decorator that records the wrapped command as a {@link DispatchEvent} while JFR records
+ * that event, and makes home and event type known to the events nested in it.
+ * <p>
+ * Outermost decorator created by {@link EventCommandFactory}, so the recorded duration covers
+ * plugin dispatch and batched notification delivery. Without a recording it only delegates.
+ * </p>
+ */
+public class ProfiledEventCommand extends EventCommand {
+    private final EventCommand delegate;
+    private final int homeId;
+    private final String eventType;
+
+    /**
+     * @param delegate  the command to record
+     * @param homeId    home the command operates on
+     * @param eventType name of the event that produced the command
+     */
+    ProfiledEventCommand(EventCommand delegate, int homeId, String eventType) {
+        this.delegate = delegate;
+        this.homeId = homeId;
+        this.eventType = eventType;
+    }
+
+    /** Execute the wrapped command, recording it if enabled. */
+    @Override
+    public void execute() {
+        DispatchEvent dispatch = new DispatchEvent();
+        if (!dispatch.isEnabled()) {
+            delegate.execute();
+            return;
+        }
+        dispatch.homeId = homeId;
+        dispatch.eventType = eventType;
+        DispatchContext.enter(homeId, eventType);
+        dispatch.begin();
+        try {
+            delegate.execute();
+        } finally {
+            dispatch.commit();
+            DispatchContext.exit();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package smarthome.commands;
+
+import java.util.Arrays;
+
+/**
+ * Bounded set of the most recently seen event ids.
+ * <p>
+ * Ids are kept in a ring of fixed capacity; once it is full, remembering a new id forgets the
+ * oldest one. Membership is answered by an open-addressing hash table over primitive
+ * {@code long}s (linear probing, backward-shift deletion), so both {@link #contains(long)} and
+ * {@link #add(long)} take constant time and the memory use is fixed at construction: between
+ * {@code 24} and {@code 40} bytes per remembered id. Not thread-safe.
+ * </p>
+ */
+public class RecentEventIds {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final long[] ring;
+    private final long[] table;
+    private final int mask;
+    private int next;
+    private int size;
+
+    /**
+     * @param capacity number of ids to remember (at least 1)
+     */
+    public RecentEventIds(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.ring = new long[capacity];
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.table = new long[tableSize];
+        this.mask = tableSize - 1;
+        Arrays.fill(table, EMPTY);
+    }
+
+    /** @return {@code true} if {@code id} is among the remembered ids */
+    public boolean contains(long id) {
+        for (int i = slot(id); table[i] != EMPTY; i = (i + 1) & mask) {
+            if (table[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remember {@code id}, forgetting the oldest id if the capacity is reached.
+     *
+     * @param id any value except {@link Long#MIN_VALUE}
+     * @return {@code false} if the id was already remembered (nothing changes)
+     */
+    public boolean add(long id) {
+        if (id == EMPTY) {
+            throw new IllegalArgumentException("Unsupported event id: " + id);
+        }
+        if (contains(id)) {
+            return false;
+        }
+        if (size == ring.length) {
+            remove(ring[next]);
+        } else {
+            size++;
+        }
+        ring[next] = id;
+        next = (next + 1) % ring.length;
+        int i = slot(id);
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = id;
+        return true;
+    }
+
+    /** @return the remembered ids, oldest first */
+    public long[] toArray() {
+        long[] ids = new long[size];
+        int oldest = size == ring.length ? next : 0;
+        for (int i = 0; i < size; i++) {
+            ids[i] = ring[(oldest + i) % ring.length];
+        }
+        return ids;
+    }
+
+    /** @return number of remembered ids */
+    public int size() {
+        return size;
+    }
+
+    private void remove(long id) {
+        int i = slot(id);
+        while (table[i] != id) {
+            i = (i + 1) & mask;
+        }
+        // backward-shift the rest of the probe run so lookups never hit a premature gap
+        int gap = i;
+        for (int j = (gap + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(table[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = EMPTY;
+    }
+
+    private int slot(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
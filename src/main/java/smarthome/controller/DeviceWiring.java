@@ -0,0 +1,169 @@
+package smarthome.controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import smarthome.cache.DeviceStateCache;
+import smarthome.domain.devices.AlarmSystem;
+import smarthome.domain.devices.FrontDoor;
+import smarthome.domain.devices.Light;
+import smarthome.domain.devices.coffeemaker.CoffeeMaker;
+import smarthome.domain.devices.coffeemaker.StrongCoffeeCreationStrategy;
+import smarthome.domain.devices.heatingsystem.HeatingSystem;
+import smarthome.domain.devices.heatingsystem.HeatingSystemAdapter;
+import smarthome.domain.devices.heatingsystem.LegacyHeatingSystem;
+import smarthome.domain.observer.DeviceType;
+import smarthome.domain.observer.Observer;
+import smarthome.domain.observer.ObserverTable;
+import smarthome.domain.observer.Subscription;
+import smarthome.plugin.PluginRegistry;
+
+/**
+ * Immutable recipe for the devices of a {@link HomeController}: explicitly provided devices,
+ * defaults for the rest, and the observers to register on them.
+ * <p>
+ * Builders either apply it right away or leave it on the controller, which applies it on its
+ * first event. One instance can be shared by all homes of a {@link HomeFleetBuilder}, as long
+ * as it holds no explicit devices.
+ * </p>
+ */
+final class DeviceWiring {
+    private final ObserverTable observers;
+    private final List<HomeStateAware> stateAware;
+    private final DeviceStateCache stateCache;
+    private final PluginRegistry plugins;
+    private final List<Map.Entry<IntFunction<? extends Observer>, Subscription>> perHomeObservers;
+    private final AlarmSystem alarmSystem;
+    private final HeatingSystem heatingSystem;
+    private final FrontDoor frontDoor;
+    private final Light light;
+    private final CoffeeMaker coffeeMaker;
+
+    /** @param stateAware the observers of {@code observers} that need the initial states */
+    DeviceWiring(ObserverTable observers, List<HomeStateAware> stateAware,
+                 DeviceStateCache stateCache, PluginRegistry plugins,
+                 AlarmSystem alarmSystem, HeatingSystem heatingSystem, FrontDoor frontDoor,
+                 Light light, CoffeeMaker coffeeMaker) {
+        this(observers, stateAware, stateCache, plugins, List.of(), alarmSystem, heatingSystem,
+                frontDoor, light, coffeeMaker);
+    }
+
+    private DeviceWiring(ObserverTable observers, List<HomeStateAware> stateAware,
+                         DeviceStateCache stateCache, PluginRegistry plugins,
+                         List<Map.Entry<IntFunction<? extends Observer>, Subscription>> perHomeObservers,
+                         AlarmSystem alarmSystem, HeatingSystem heatingSystem, FrontDoor frontDoor,
+                         Light light, CoffeeMaker coffeeMaker) {
+        this.observers = observers;
+        this.stateAware = List.copyOf(stateAware);
+        this.stateCache = stateCache;
+        this.plugins = plugins;
+        this.perHomeObservers = perHomeObservers;
+        this.alarmSystem = alarmSystem;
+        this.heatingSystem = heatingSystem;
+        this.frontDoor = frontDoor;
+        this.light = light;
+        this.coffeeMaker = coffeeMaker;
+    }
+
+    /**
+     * Wiring with default devices only, suitable for sharing between homes.
+     *
+     * @param stateAware       the observers of {@code observers} that need the initial states
+     * @param perHomeObservers factories, called with the home id, for observers that cannot be
+     *                         shared between homes
+     */
+    DeviceWiring(ObserverTable observers, List<HomeStateAware> stateAware,
+                 DeviceStateCache stateCache, PluginRegistry plugins,
+                 List<Map.Entry<IntFunction<? extends Observer>, Subscription>> perHomeObservers) {
+        this(observers, stateAware, stateCache, plugins, List.copyOf(perHomeObservers), null, null, null, null,
+                null);
+    }
+
+    /** @return the observers among {@code observers} that implement {@link HomeStateAware} */
+    static List<HomeStateAware> stateAware(Collection<Observer> observers) {
+        List<HomeStateAware> aware = new ArrayList<>();
+        for (Observer observer : observers) {
+            if (observer instanceof HomeStateAware stateAwareObserver) {
+                aware.add(stateAwareObserver);
+            }
+        }
+        return aware;
+    }
+
+    /** @return whether the alarm is armed before the devices are wired */
+    boolean isAlarmArmed() {
+        return alarmSystem != null && alarmSystem.isOn();
+    }
+
+    /**
+     * Assign the devices of {@code controller}, register the observers on them and hand the
+     * {@link HomeStateAware} observers the initial device states.
+     */
+    void wire(HomeController controller) {
+        controller.alarmSystem = (alarmSystem != null) ? alarmSystem : new AlarmSystem();
+        controller.heatingSystem = (heatingSystem != null) ? heatingSystem
+                : new HeatingSystemAdapter(new LegacyHeatingSystem());
+        controller.frontDoor = (frontDoor != null) ? frontDoor : new FrontDoor();
+        controller.light = (light != null) ? light : new Light();
+        controller.coffeeMaker = (coffeeMaker != null) ? coffeeMaker
+                : new CoffeeMaker(new StrongCoffeeCreationStrategy());
+
+        controller.alarmSystem.addObservers(observers);
+        if (controller.heatingSystem instanceof HeatingSystemAdapter) {
+            ((HeatingSystemAdapter) controller.heatingSystem).addObservers(observers);
+        }
+        controller.frontDoor.addObservers(observers);
+        controller.light.addObservers(observers);
+        controller.coffeeMaker.addObservers(observers);
+
+        HomeState state = null;
+        for (HomeStateAware aware : stateAware) {
+            state = initialState(aware, controller, state);
+        }
+        for (Map.Entry<IntFunction<? extends Observer>, Subscription> perHome : perHomeObservers) {
+            Observer observer = perHome.getKey().apply(controller.homeId);
+            register(controller, observer, perHome.getValue());
+            if (observer instanceof HomeStateAware aware) {
+                state = initialState(aware, controller, state);
+            }
+        }
+        if (stateCache != null) {
+            register(controller, stateCache.invalidator(controller.homeId), Subscription.all());
+        }
+        if (plugins != null) {
+            controller.plugins = plugins.devicesFor(controller.homeId, controller.messageObserver);
+        }
+    }
+
+    /** Hand {@code aware} the initial states, captured on first use; @return the states */
+    private static HomeState initialState(HomeStateAware aware, HomeController controller,
+                                          HomeState state) {
+        HomeState initial = state != null ? state : controller.state();
+        aware.initialState(initial);
+        return initial;
+    }
+
+    /** Register {@code observer} on the devices that can emit an event of {@code subscription}. */
+    private static void register(HomeController controller, Observer observer,
+                                 Subscription subscription) {
+        if (subscription.includes(DeviceType.ALARM_SYSTEM)) {
+            controller.alarmSystem.addObserver(observer, subscription);
+        }
+        if (subscription.includes(DeviceType.HEATING_SYSTEM)
+                && controller.heatingSystem instanceof HeatingSystemAdapter) {
+            ((HeatingSystemAdapter) controller.heatingSystem).addObserver(observer, subscription);
+        }
+        if (subscription.includes(DeviceType.FRONT_DOOR)) {
+            controller.frontDoor.addObserver(observer, subscription);
+        }
+        if (subscription.includes(DeviceType.LIGHT)) {
+            controller.light.addObserver(observer, subscription);
+        }
+        if (subscription.includes(DeviceType.COFFEE_MAKER)) {
+            controller.coffeeMaker.addObserver(observer, subscription);
+        }
+    }
+}
@@ -1,11 +1,24 @@
 package smarthome.controller;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+
+import smarthome.cache.DeviceStateCache;
 import smarthome.domain.devices.AlarmSystem;
 import smarthome.domain.devices.FrontDoor;
 import smarthome.domain.devices.Light;
+import smarthome.domain.observer.DeviceType;
 import smarthome.domain.observer.MessageObserver;
 import smarthome.domain.devices.coffeemaker.CoffeeMaker;
+import smarthome.domain.devices.coffeemaker.StrongCoffeeCreationStrategy;
 import smarthome.domain.devices.heatingsystem.HeatingSystem;
+import smarthome.execution.Step;
+import smarthome.execution.StepPlan;
+import smarthome.plugin.PluginDevices;
+import smarthome.plugin.PluginRegistry;
+import smarthome.profiling.DeviceActionEvent;
+import smarthome.profiling.Profiling;
 
 /**
  * Central coordinator for the smart home.
@@ -24,10 +37,22 @@ import smarthome.domain.devices.heatingsystem.HeatingSystem;
  *   <li><b>Observer (outside):</b> devices push human-readable messages to a {@link MessageObserver}.</li>
  * </ul>
  *
+ * <p>Device actions are recorded as {@link DeviceActionEvent}s while a JFR recording enables
+ * them, tagged with the use case's event type; without a running recording the event class is
+ * not even loaded (see {@link Profiling}).</p>
+ *
  * <p><b>Instantiation:</b> use {@link HomeController.HomeControllerBuilder} (shim) or the
  * top-level {@link com.epam.training.smarthome.controller.HomeControllerBuilder}.</p>
  */
 public class HomeController {
+    private static final String GOING_HOME = "GOING_HOME";
+    private static final String ARRIVES_HOME = "ARRIVES_HOME";
+    private static final String MOVEMENT = "MOVEMENT";
+    private static final String CHANGE_TO_HOLIDAY = "CHANGE_TO_HOLIDAY";
+    private static final String CHANGE_TO_WORKING_DAY = "CHANGE_TO_WORKING_DAY";
+
+    /** Identifier of the home this controller manages; {@code 0} unless set by the builder. */
+    int homeId;
 
     /** Intrusion / siren system. */
     AlarmSystem alarmSystem;
@@ -47,6 +72,25 @@ public class HomeController {
     /** Target observer for device messages; injected by the builder. */
     MessageObserver messageObserver;
 
+    /** Optional cache for device state reads; {@code null} reads the devices directly. */
+    DeviceStateCache stateCache;
+
+    /** Time source for the activity timestamp; set by the builder. */
+    Clock clock = Clock.systemUTC();
+
+    /** Epoch millis of the last use case, {@code Long.MIN_VALUE} before the first one. */
+    private volatile long lastActivityMillis = Long.MIN_VALUE;
+
+    /** Devices contributed by {@link smarthome.plugin.DevicePlugin}s; {@code null} without plugins. */
+    PluginDevices plugins;
+
+    /**
+     * Devices still to be created and wired, set by a lazy builder; {@code null} once the
+     * devices exist. Cleared only after wiring, so a thread that reads {@code null} also sees
+     * the devices.
+     */
+    volatile DeviceWiring pendingWiring;
+
     /**
      * Package-private constructor. Instances should be created via a builder so that:
      * <ul>
@@ -61,13 +105,68 @@ public class HomeController {
         this.messageObserver = messageObserver;
     }
 
+    /** @return identifier of the home managed by this controller */
+    public int getHomeId() {
+        return homeId;
+    }
+
+    /**
+     * @return this home's plugin devices, or {@code null} if the controller was built without a
+     *         {@link smarthome.plugin.PluginRegistry}
+     */
+    public PluginDevices getPlugins() {
+        ensureDevices();
+        return plugins;
+    }
+
+    /**
+     * @return when the last use case ran, according to the controller's clock, or {@code null}
+     *         if none has run yet
+     */
+    public Instant getLastActivity() {
+        long millis = lastActivityMillis;
+        return millis == Long.MIN_VALUE ? null : Instant.ofEpochMilli(millis);
+    }
+
+    /**
+     * @return {@code true} if the alarm system is armed, i.e. a {@link #movement()} would raise an alarm
+     */
+    public boolean isAlarmArmed() {
+        DeviceWiring wiring = pendingWiring;
+        return wiring != null ? wiring.isAlarmArmed() : alarmSystem.isOn();
+    }
+
+    /**
+     * Capture the current device states, e.g. to hand the home over to another node.
+     *
+     * @return an immutable snapshot that {@link HomeControllerBuilder#state(HomeState)} can restore
+     */
+    public HomeState snapshot() {
+        ensureDevices();
+        return state();
+    }
+
+    /** @return the current device states; the devices must be wired */
+    HomeState state() {
+        return new HomeState(homeId,
+                alarmSystem.isOn(),
+                heatingSystem.isTurnedOn(),
+                frontDoor.isOpen(),
+                light.isOn(),
+                coffeeMaker.getStrategy() instanceof StrongCoffeeCreationStrategy);
+    }
+
     /**
      * Intent: the user is heading home; ensure the heating is turned on.
      * Idempotent: if already on, emits a no-op log line rather than toggling.
      */
     public void goingHome() {
-        if (!heatingSystem.isTurnedOn()) {
+        beginUseCase();
+        if (!isHeatingOn()) {
+            DeviceActionEvent action = beginAction(GOING_HOME,
+                    DeviceType.HEATING_SYSTEM, "turn on");
             heatingSystem.turnOn();
+            commit(action);
         } else {
             System.out.println("[HomeController] nothing to do (heating system is already turned on)");
         }
@@ -80,22 +179,72 @@ public class HomeController {
      *   <li>Open the front door if it is closed.</li>
      *   <li>Brew coffee (strategy determines the strength).</li>
      * </ol>
-     * Each device is consulted for current state to avoid redundant actions.
+     * Each device is consulted for current state (through the state cache, if configured)
+     * to avoid redundant actions.
      */
     public void arrivesHome() {
-        if (alarmSystem.isOn()) {
+        beginUseCase();
+        disarmAlarm();
+        openFrontDoor();
+        brewCoffee();
+    }
+
+    /**
+     * The "arrives home" use case as a {@link StepPlan} for
+     * {@link smarthome.execution.PlanExecutor}.
+     * <p>
+     * Disarming the alarm and opening the door are required and compensated: if the door cannot
+     * be opened, the alarm is re-armed instead of leaving the home unprotected. Brewing coffee is
+     * optional, so a failing coffee maker does not undo the arrival and a retry only brews.
+     * Compensations restore the states captured when the plan is created.
+     * </p>
+     */
+    public StepPlan arrivesHomePlan() {
+        beginUseCase();
+        boolean wasArmed = alarmSystem.isOn();
+        boolean wasOpen = frontDoor.isOpen();
+        return new StepPlan("arrives home", List.of(
+                Step.of("disarm alarm", this::disarmAlarm)
+                        .compensatedBy(() -> {
+                            if (wasArmed) {
+                                alarmSystem.turnOn();
+                            }
+                        }),
+                Step.of("open front door", this::openFrontDoor)
+                        .compensatedBy(() -> {
+                            if (!wasOpen) {
+                                frontDoor.close();
+                            }
+                        }),
+                Step.of("brew coffee", this::brewCoffee).optional()));
+    }
+
+    private void disarmAlarm() {
+        if (isAlarmOn()) {
+            DeviceActionEvent action = beginAction(ARRIVES_HOME,
+                    DeviceType.ALARM_SYSTEM, "turn off");
             alarmSystem.turnOff();
+            commit(action);
         } else {
             System.out.println("[HomeController] nothing to do (alarm system is already turned off)");
         }
+    }
 
-        if (!frontDoor.isOpen()) {
+    private void openFrontDoor() {
+        if (!isDoorOpen()) {
+            DeviceActionEvent action = beginAction(ARRIVES_HOME, DeviceType.FRONT_DOOR, "open");
             frontDoor.open();
+            commit(action);
         } else {
             System.out.println("[HomeController] nothing to do (front door is already opened)");
         }
+    }
 
+    private void brewCoffee() {
+        DeviceActionEvent action = beginAction(ARRIVES_HOME,
+                DeviceType.COFFEE_MAKER, "create coffee");
         coffeeMaker.createCoffee();
+        commit(action);
     }
 
     /**
@@ -106,12 +255,39 @@ public class HomeController {
      * </ol>
      */
     public void movement() {
-        if (alarmSystem.isOn()) {
+        beginUseCase();
+        raiseAlarm();
+        turnOnLight();
+    }
+
+    /**
+     * The "movement" use case as a {@link StepPlan} for {@link smarthome.execution.PlanExecutor}.
+     * <p>
+     * Raising the alarm is required; an alarm cannot be taken back, so it has no compensation.
+     * Turning on the light is optional: a failing light leaves the alarm raised, and a retry
+     * only switches the light.
+     * </p>
+     */
+    public StepPlan movementPlan() {
+        beginUseCase();
+        return new StepPlan("movement", List.of(
+                Step.of("raise alarm", this::raiseAlarm),
+                Step.of("turn on light", this::turnOnLight).optional()));
+    }
+
+    private void raiseAlarm() {
+        if (isAlarmOn()) {
+            DeviceActionEvent action = beginAction(MOVEMENT, DeviceType.ALARM_SYSTEM, "alarm");
             alarmSystem.alarm();
+            commit(action);
         }
+    }
 
-        if (!light.isOn()) {
+    private void turnOnLight() {
+        if (!isLightOn()) {
+            DeviceActionEvent action = beginAction(MOVEMENT, DeviceType.LIGHT, "turn on");
             light.turnOn();
+            commit(action);
         } else {
             System.out.println("[HomeController] nothing to do (light is already turned on)");
         }
@@ -122,7 +298,8 @@ public class HomeController {
      * The actual strategy switch and message emission is handled by the coffee maker.
      */
     public void changeToHoliday() {
-        coffeeMaker.changeCoffeeType();
+        beginUseCase();
+        changeCoffeeType(CHANGE_TO_HOLIDAY);
     }
 
     /**
@@ -130,7 +307,69 @@ public class HomeController {
      * The actual strategy switch and message emission is handled by the coffee maker.
      */
     public void changeToWorkingDay() {
+        beginUseCase();
+        changeCoffeeType(CHANGE_TO_WORKING_DAY);
+    }
+
+    private void changeCoffeeType(String eventType) {
+        DeviceActionEvent action = beginAction(eventType,
+                DeviceType.COFFEE_MAKER, "change coffee type");
         coffeeMaker.changeCoffeeType();
+        commit(action);
+    }
+
+    /** @return the started action event, or {@code null} while no JFR recording is running */
+    private DeviceActionEvent beginAction(String eventType, DeviceType device, String action) {
+        return Profiling.isActive() ? DeviceActionEvent.begin(homeId, eventType, device, action) : null;
+    }
+
+    private static void commit(DeviceActionEvent action) {
+        if (action != null) {
+            action.commit();
+        }
+    }
+
+    /** Record the use case time, then make sure the devices exist. */
+    private void beginUseCase() {
+        lastActivityMillis = clock.millis();
+        ensureDevices();
+    }
+
+    /**
+     * Create and wire the devices deferred by {@link HomeControllerBuilder#lazyDevices()}.
+     * Double-checked: only the first caller wires, concurrent callers wait for it.
+     */
+    private void ensureDevices() {
+        if (pendingWiring == null) {
+            return;
+        }
+        synchronized (this) {
+            DeviceWiring wiring = pendingWiring;
+            if (wiring != null) {
+                wiring.wire(this);
+                pendingWiring = null;
+            }
+        }
+    }
+
+    private boolean isHeatingOn() {
+        return stateCache == null ? heatingSystem.isTurnedOn()
+                : stateCache.get(homeId, DeviceType.HEATING_SYSTEM, heatingSystem::isTurnedOn);
+    }
+
+    private boolean isAlarmOn() {
+        return stateCache == null ? alarmSystem.isOn()
+                : stateCache.get(homeId, DeviceType.ALARM_SYSTEM, alarmSystem::isOn);
+    }
+
+    private boolean isDoorOpen() {
+        return stateCache == null ? frontDoor.isOpen()
+                : stateCache.get(homeId, DeviceType.FRONT_DOOR, frontDoor::isOpen);
+    }
+
+    private boolean isLightOn() {
+        return stateCache == null ? light.isOn()
+                : stateCache.get(homeId, DeviceType.LIGHT, light::isOn);
     }
 
     /**
@@ -150,6 +389,55 @@ public class HomeController {
             this.delegate = new smarthome.controller.HomeControllerBuilder(messageObserver);
         }
 
+        /** Set the home identifier. */
+        public HomeControllerBuilder homeId(int homeId) {
+            delegate.homeId(homeId);
+            return this;
+        }
+
+        /** Start from a previously captured {@link HomeState}. */
+        public HomeControllerBuilder state(HomeState state) {
+            delegate.state(state);
+            return this;
+        }
+
+        /** Route device state reads through a shared cache. */
+        public HomeControllerBuilder stateCache(DeviceStateCache cache) {
+            delegate.stateCache(cache);
+            return this;
+        }
+
+        /** Subscribe an additional observer to all devices. */
+        public HomeControllerBuilder subscribe(smarthome.domain.observer.Observer observer) {
+            delegate.subscribe(observer);
+            return this;
+        }
+
+        /** Subscribe an additional observer to the selected events only. */
+        public HomeControllerBuilder subscribe(smarthome.domain.observer.Observer observer,
+                                               smarthome.domain.observer.Subscription subscription) {
+            delegate.subscribe(observer, subscription);
+            return this;
+        }
+
+        /** Create and wire the devices on the first event instead of in {@link #build()}. */
+        public HomeControllerBuilder lazyDevices() {
+            delegate.lazyDevices();
+            return this;
+        }
+
+        /** Use {@code clock} for the controller's activity timestamps. */
+        public HomeControllerBuilder clock(Clock clock) {
+            delegate.clock(clock);
+            return this;
+        }
+
+        /** Add the devices of the given plugins. */
+        public HomeControllerBuilder plugins(PluginRegistry registry) {
+            delegate.plugins(registry);
+            return this;
+        }
+
         /** Set a custom alarm system. */
         public HomeControllerBuilder alarmSystem(AlarmSystem a) {
             delegate.alarmSystem(a);
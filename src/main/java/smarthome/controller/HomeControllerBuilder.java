@@ -1,14 +1,24 @@
 package smarthome.controller;
 
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import smarthome.cache.DeviceStateCache;
 import smarthome.domain.devices.AlarmSystem;
 import smarthome.domain.devices.FrontDoor;
 import smarthome.domain.devices.Light;
 import smarthome.domain.observer.MessageObserver;
+import smarthome.domain.observer.Observer;
+import smarthome.domain.observer.ObserverTable;
+import smarthome.domain.observer.Subscription;
 import smarthome.domain.devices.coffeemaker.CoffeeMaker;
 import smarthome.domain.devices.coffeemaker.StrongCoffeeCreationStrategy;
+import smarthome.domain.devices.coffeemaker.WeakCoffeeCreationStrategy;
 import smarthome.domain.devices.heatingsystem.HeatingSystem;
 import smarthome.domain.devices.heatingsystem.HeatingSystemAdapter;
 import smarthome.domain.devices.heatingsystem.LegacyHeatingSystem;
+import smarthome.plugin.PluginRegistry;
 
 /**
  * Top-level builder for {@link HomeController}.
@@ -20,11 +30,17 @@ import smarthome.domain.devices.heatingsystem.LegacyHeatingSystem;
  */
 public class HomeControllerBuilder {
     private final MessageObserver messageObserver;
+    private int homeId;
+    private DeviceStateCache stateCache;
+    private PluginRegistry plugins;
+    private Clock clock = Clock.systemUTC();
+    private final Map<Observer, Subscription> subscribers = new LinkedHashMap<>();
     private AlarmSystem alarmSystem;
     private HeatingSystem heatingSystem;
     private FrontDoor frontDoor;
     private Light light;
     private CoffeeMaker coffeeMaker;
+    private boolean lazyDevices;
 
     /**
      * @param messageObserver sink for device messages (required)
@@ -33,6 +49,27 @@ public class HomeControllerBuilder {
         this.messageObserver = messageObserver;
     }
 
+    /** Identify the home the controller manages (used when running many homes side by side). */
+    public HomeControllerBuilder homeId(int homeId) {
+        this.homeId = homeId;
+        return this;
+    }
+
+    /**
+     * Start from a previously captured {@link HomeState}: sets the home id and creates default
+     * devices in the captured states. Devices provided explicitly afterwards take precedence.
+     */
+    public HomeControllerBuilder state(HomeState state) {
+        this.homeId = state.homeId();
+        this.alarmSystem = new AlarmSystem(state.alarmOn());
+        this.heatingSystem = new HeatingSystemAdapter(new LegacyHeatingSystem(state.heatingOn()));
+        this.frontDoor = new FrontDoor(state.doorOpen());
+        this.light = new Light(state.lightOn());
+        this.coffeeMaker = new CoffeeMaker(state.strongCoffee()
+                ? new StrongCoffeeCreationStrategy() : new WeakCoffeeCreationStrategy());
+        return this;
+    }
+
     /** Provide a custom alarm system implementation. */
     public HomeControllerBuilder alarmSystem(AlarmSystem alarmSystem) {
         this.alarmSystem = alarmSystem;
@@ -71,36 +108,98 @@ public class HomeControllerBuilder {
         return this;
     }
 
+    /**
+     * Route the controller's device state checks through {@code cache}. The cache is subscribed
+     * to the home's devices so their notifications invalidate the cached states.
+     */
+    public HomeControllerBuilder stateCache(DeviceStateCache cache) {
+        this.stateCache = cache;
+        return this;
+    }
+
+    /**
+     * Use {@code clock} for time-dependent controller state, e.g. a
+     * {@link smarthome.time.SimulationClock} for simulated runs.
+     */
+    public HomeControllerBuilder clock(Clock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * Add the devices of the given plugins (see {@link PluginRegistry#load()}). Commands from an
+     * {@link smarthome.commands.EventCommandFactory} are then dispatched to them as well.
+     */
+    public HomeControllerBuilder plugins(PluginRegistry registry) {
+        this.plugins = registry;
+        return this;
+    }
+
+    /**
+     * Subscribe an additional observer to all devices, e.g. an
+     * {@link smarthome.domain.observer.AsyncObserver} wrapping a slow UI or remote push so
+     * that it cannot stall the devices.
+     */
+    public HomeControllerBuilder subscribe(Observer observer) {
+        return subscribe(observer, Subscription.all());
+    }
+
+    /**
+     * Subscribe an additional observer to the events selected by {@code subscription} only,
+     * e.g. {@code Subscription.events(DeviceEvent.ALARM_TRIGGERED)}. Notifications are
+     * dispatched by event, so the observer is only called for matching events and devices that
+     * cannot emit one never call it (untyped messages only reach observers of every event).
+     */
+    public HomeControllerBuilder subscribe(Observer observer, Subscription subscription) {
+        subscribers.put(observer, subscription);
+        return this;
+    }
+
+    /**
+     * Defer creating and wiring the devices until the controller handles its first event (or
+     * is asked for a {@link HomeController#snapshot()}). Homes that never see an event then
+     * cost one small object each, which shortens node startup. Explicitly provided devices
+     * receive their observers at that point as well.
+     */
+    public HomeControllerBuilder lazyDevices() {
+        this.lazyDevices = true;
+        return this;
+    }
+
     /**
      * Build a fully wired {@link HomeController}.
      * <ul>
      *   <li>If not provided, creates default devices.</li>
      *   <li>If heating is not provided, uses {@code new HeatingSystemAdapter(new LegacyHeatingSystem())}.</li>
      *   <li>If coffee maker is not provided, uses strong coffee by default.</li>
-     *   <li>Subscribes the {@link MessageObserver} to all devices.</li>
+     *   <li>Subscribes the {@link MessageObserver} and any additional subscribers to all devices.</li>
+     *   <li>With {@link #lazyDevices()}, leaves all of the above to the first event.</li>
      * </ul>
      */
     public HomeController build() {
         HomeController controller = new HomeController(messageObserver);
-
-        // Defaults
-        controller.alarmSystem = (this.alarmSystem != null) ? this.alarmSystem : new AlarmSystem();
-        controller.heatingSystem = (this.heatingSystem != null) ? this.heatingSystem
-                : new HeatingSystemAdapter(new LegacyHeatingSystem());
-        controller.frontDoor = (this.frontDoor != null) ? this.frontDoor : new FrontDoor();
-        controller.light = (this.light != null) ? this.light : new Light();
-        controller.coffeeMaker = (this.coffeeMaker != null) ? this.coffeeMaker
-                : new CoffeeMaker(new StrongCoffeeCreationStrategy());
-
-        // Subscribe observer so tests can assert messages
-        controller.alarmSystem.addObserver(messageObserver);
-        if (controller.heatingSystem instanceof HeatingSystemAdapter) {
-            ((HeatingSystemAdapter) controller.heatingSystem).addObserver(messageObserver);
+        controller.homeId = homeId;
+        controller.stateCache = stateCache;
+        controller.clock = clock;
+        DeviceWiring wiring = new DeviceWiring(observers(messageObserver, subscribers),
+                DeviceWiring.stateAware(subscribers.keySet()), stateCache, plugins,
+                alarmSystem, heatingSystem, frontDoor, light, coffeeMaker);
+        if (lazyDevices) {
+            controller.pendingWiring = wiring;
+        } else {
+            wiring.wire(controller);
         }
-        controller.frontDoor.addObserver(messageObserver);
-        controller.light.addObserver(messageObserver);
-        controller.coffeeMaker.addObserver(messageObserver);
-
         return controller;
     }
+
+    /** Resolve the message observer (all events) and the additional subscribers into one table. */
+    static ObserverTable observers(MessageObserver messageObserver,
+                                   Map<Observer, Subscription> subscribers) {
+        ObserverTable.Builder table = ObserverTable.builder()
+                .add(messageObserver, Subscription.all());
+        for (Map.Entry<Observer, Subscription> subscriber : subscribers.entrySet()) {
+            table.add(subscriber.getKey(), subscriber.getValue());
+        }
+        return table.build();
+    }
 }
@@ -0,0 +1,113 @@
+package smarthome.controller;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import smarthome.cache.DeviceStateCache;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.domain.observer.Observer;
+import smarthome.domain.observer.Subscription;
+import smarthome.plugin.PluginRegistry;
+
+/**
+ * Builds the {@link HomeController}s of many identically configured homes at once, e.g. when a
+ * node starts and takes over a range of home ids.
+ * <p>
+ * Unlike calling {@link HomeControllerBuilder#build()} per home, the subscriptions are resolved
+ * once into a shared {@link smarthome.domain.observer.ObserverTable} whose arrays every device
+ * adopts without copying. Combined with {@link #lazyDevices()}, a home costs a single controller
+ * object until its first event. All homes get default devices.
+ * </p>
+ */
+public class HomeFleetBuilder {
+    private final MessageObserver messageObserver;
+    private final Map<Observer, Subscription> subscribers = new LinkedHashMap<>();
+    private final List<Map.Entry<IntFunction<? extends Observer>, Subscription>> perHomeObservers =
+            new ArrayList<>();
+    private DeviceStateCache stateCache;
+    private PluginRegistry plugins;
+    private Clock clock = Clock.systemUTC();
+    private boolean lazyDevices;
+
+    /**
+     * @param messageObserver sink for device messages of all homes (required)
+     */
+    public HomeFleetBuilder(MessageObserver messageObserver) {
+        this.messageObserver = messageObserver;
+    }
+
+    /** Route every controller's device state checks through {@code cache}. */
+    public HomeFleetBuilder stateCache(DeviceStateCache cache) {
+        this.stateCache = cache;
+        return this;
+    }
+
+    /** Use {@code clock} for every controller's time-dependent state. */
+    public HomeFleetBuilder clock(Clock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /** Add the devices of the given plugins to every home. */
+    public HomeFleetBuilder plugins(PluginRegistry registry) {
+        this.plugins = registry;
+        return this;
+    }
+
+    /** Subscribe an additional observer to all devices of all homes. */
+    public HomeFleetBuilder subscribe(Observer observer) {
+        return subscribe(observer, Subscription.all());
+    }
+
+    /** Subscribe an additional observer to the selected events of all homes. */
+    public HomeFleetBuilder subscribe(Observer observer, Subscription subscription) {
+        subscribers.put(observer, subscription);
+        return this;
+    }
+
+    /**
+     * Subscribe one observer per home, created by {@code perHome} with the home id, to the
+     * selected events, e.g.
+     * {@code subscribePerHome(accounting::observer, EnergyAccounting.subscription())}.
+     */
+    public HomeFleetBuilder subscribePerHome(IntFunction<? extends Observer> perHome,
+                                             Subscription subscription) {
+        perHomeObservers.add(Map.entry(perHome, subscription));
+        return this;
+    }
+
+    /** Create and wire each home's devices on its first event; see {@link HomeControllerBuilder#lazyDevices()}. */
+    public HomeFleetBuilder lazyDevices() {
+        this.lazyDevices = true;
+        return this;
+    }
+
+    /**
+     * Build the controllers for home ids {@code firstHomeId} to {@code firstHomeId + count - 1}.
+     *
+     * @return the controllers, indexed by {@code homeId - firstHomeId}
+     */
+    public HomeController[] build(int firstHomeId, int count) {
+        DeviceWiring wiring = new DeviceWiring(
+                HomeControllerBuilder.observers(messageObserver, subscribers),
+                DeviceWiring.stateAware(subscribers.keySet()), stateCache, plugins, perHomeObservers);
+        HomeController[] controllers = new HomeController[count];
+        for (int i = 0; i < count; i++) {
+            HomeController controller = new HomeController(messageObserver);
+            controller.homeId = firstHomeId + i;
+            controller.stateCache = stateCache;
+            controller.clock = clock;
+            if (lazyDevices) {
+                controller.pendingWiring = wiring;
+            } else {
+                wiring.wire(controller);
+            }
+            controllers[i] = controller;
+        }
+        return controllers;
+    }
+}
@@ -0,0 +1,23 @@
+package smarthome.controller;
+
+/**
+ * Immutable snapshot of the device states of one home.
+ * <p>
+ * Produced by {@link HomeController#snapshot()} and restored with
+ * {@link HomeControllerBuilder#state(HomeState)}.
+ * </p>
+ *
+ * @param homeId       identifier of the home
+ * @param alarmOn      whether the alarm system is armed
+ * @param heatingOn    whether the heating system is on
+ * @param doorOpen     whether the front door is open
+ * @param lightOn      whether the light is on
+ * @param strongCoffee whether the coffee maker uses the strong (working-day) strategy
+ */
+public record HomeState(int homeId,
+                        boolean alarmOn,
+                        boolean heatingOn,
+                        boolean doorOpen,
+                        boolean lightOn,
+                        boolean strongCoffee) {
+}
@@ -0,0 +1,15 @@
+package smarthome.controller;
+
+/**
+ * Observer that needs the device states a home starts with, e.g. to account for a device that
+ * is already on, since it only ever sees the notifications of later changes.
+ * <p>
+ * Called once for each home the observer is registered on, when the home's devices are wired
+ * and before they send any notification.
+ * </p>
+ */
+public interface HomeStateAware {
+
+    /** @param state the device states of the home when its observers were registered */
+    void initialState(HomeState state);
+}
@@ -0,0 +1,70 @@
+package smarthome.controller;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+import smarthome.commands.EventCommandFactory;
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.MessageObserver;
+
+/**
+ * Measures how long a node takes from JVM start to its first processed event.
+ * <p>
+ * Arguments (optional): {@code homes mode}, defaulting to {@code 100000 lazy}. The mode selects
+ * how the controllers are built:
+ * </p>
+ * <ul>
+ *   <li>{@code builder}: one {@link HomeControllerBuilder#build()} per home (the old way),</li>
+ *   <li>{@code fleet}: {@link HomeFleetBuilder} with eagerly wired devices,</li>
+ *   <li>{@code lazy}: {@link HomeFleetBuilder} with {@link HomeFleetBuilder#lazyDevices()}.</li>
+ * </ul>
+ * <p>
+ * Run it from the jar with the class-data-sharing archive produced by {@code mvn -Pcds package}
+ * to include the class loading savings (CDS does not archive classes from directories):
+ * </p>
+ * <pre>
+ * java -XX:SharedArchiveFile=target/smarthome.jsa -cp target/home-1.0-SNAPSHOT.jar smarthome.controller.StartupBenchmark
+ * </pre>
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) {
+        long mainMillis = System.currentTimeMillis();
+        int homes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String mode = args.length > 1 ? args[1] : "lazy";
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        long start = System.nanoTime();
+        MessageObserver observer = new MessageObserver();
+        HomeController[] controllers = switch (mode) {
+            case "builder" -> {
+                HomeController[] built = new HomeController[homes];
+                for (int homeId = 0; homeId < homes; homeId++) {
+                    built[homeId] = new HomeControllerBuilder(observer).homeId(homeId).build();
+                }
+                yield built;
+            }
+            case "fleet" -> new HomeFleetBuilder(observer).build(0, homes);
+            case "lazy" -> new HomeFleetBuilder(observer).lazyDevices().build(0, homes);
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        };
+        long built = System.nanoTime();
+        new EventCommandFactory(controllers[0]).createEventCommand(EventCommandType.ARRIVES_HOME).execute();
+        long firstEvent = System.nanoTime();
+        long firstEventMillis = System.currentTimeMillis();
+        System.setOut(stdout);
+
+        long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("mode %s, %,d homes%n", mode, homes);
+        System.out.printf("JVM start to main:        %,6d ms%n", mainMillis - jvmStartMillis);
+        System.out.printf("build controllers:        %,6d ms%n", (built - start) / 1_000_000);
+        System.out.printf("first event:              %,6d ms%n", (firstEvent - built) / 1_000_000);
+        System.out.printf("JVM start to first event: %,6d ms%n", firstEventMillis - jvmStartMillis);
+        System.out.printf("heap used:                %,6d MB (%,d device messages)%n",
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20, observer.getMessages().size());
+    }
+}
@@ -0,0 +1,33 @@
+package smarthome.dispatch;
+
+/**
+ * Additive-increase/multiplicative-decrease limit on the number of commands one notification
+ * batch may span.
+ * <p>
+ * A batch that ends with work still queued means the worker is behind, so the limit grows by
+ * one and more notifications share each delivery. A batch that drains the queue means the
+ * worker keeps up, so the limit halves and notifications go out promptly again. Confined to
+ * one worker thread.
+ * </p>
+ */
+final class AdaptiveBatchSize {
+    private final int max;
+    private int limit = 1;
+
+    /**
+     * @param max upper bound of the limit; at least {@code 1}
+     */
+    AdaptiveBatchSize(int max) {
+        this.max = max;
+    }
+
+    /** @return current number of commands a batch may span */
+    int limit() {
+        return limit;
+    }
+
+    /** Adapt the limit after a batch. */
+    void completed(boolean backlog) {
+        limit = backlog ? Math.min(max, limit + 1) : Math.max(1, limit / 2);
+    }
+}
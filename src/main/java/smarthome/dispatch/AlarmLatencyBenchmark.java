@@ -0,0 +1,137 @@
+package smarthome.dispatch;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.domain.devices.AlarmSystem;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.Observer;
+import smarthome.domain.observer.Subscription;
+import smarthome.load.CountingObserver;
+import smarthome.load.HouseholdEvent;
+import smarthome.load.HouseholdLoadGenerator;
+import smarthome.load.LatencyHistogram;
+
+/**
+ * Measures alarm-notification latency while the normal lane is saturated.
+ * <p>
+ * A producer keeps the normal lane full with generated household events for unarmed homes,
+ * each of which feeds a deliberately slow subscriber (a remote push stand-in). Meanwhile
+ * movement is injected at a fixed interval into armed homes, and the time from submission to
+ * the {@code [AlarmSystem] alarm} notification is recorded. The run is repeated with the
+ * priority lane disabled as a baseline, and the p99.9 is checked against the target.
+ * </p>
+ * <p>
+ * Arguments (optional): {@code seconds targetP999Micros normalWorkers}, defaulting to
+ * {@code 5 1000 2}.
+ * </p>
+ */
+public class AlarmLatencyBenchmark {
+    private static final int NORMAL_HOMES = 1_000;
+    private static final int ARMED_HOMES = 100;
+    private static final long SLOW_SUBSCRIBER_NANOS = 20_000;
+    private static final long ALARM_INTERVAL_NANOS = 500_000;
+    private static final int MAX_NORMAL_BACKLOG = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long targetMicros = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        List<HouseholdEvent> background = new HouseholdLoadGenerator(NORMAL_HOMES, 7, 42).generate();
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Result baseline = run(background, seconds, workers, false);
+        Result priority = run(background, seconds, workers, true);
+        System.setOut(stdout);
+
+        print("single lane", baseline);
+        print("alarm lane", priority);
+        long p999 = priority.alarms.percentile(99.9) / 1_000;
+        System.out.printf("p99.9 alarm latency %d us vs target %d us: %s%n",
+                p999, targetMicros, p999 <= targetMicros ? "PASS" : "FAIL");
+    }
+
+    private static Result run(List<HouseholdEvent> background, int seconds, int workers,
+                              boolean priorityEnabled) throws InterruptedException {
+        PriorityEventDispatcher dispatcher = new PriorityEventDispatcher(workers, priorityEnabled);
+        AtomicLongArray submittedAt = new AtomicLongArray(NORMAL_HOMES + ARMED_HOMES);
+        LatencyHistogram alarms = new LatencyHistogram();
+
+        Observer slowSubscriber = message -> spin(SLOW_SUBSCRIBER_NANOS);
+        for (int homeId = 0; homeId < NORMAL_HOMES; homeId++) {
+            dispatcher.register(new HomeControllerBuilder(new CountingObserver())
+                    .homeId(homeId)
+                    .subscribe(slowSubscriber)
+                    .build());
+        }
+        for (int homeId = NORMAL_HOMES; homeId < NORMAL_HOMES + ARMED_HOMES; homeId++) {
+            int id = homeId;
+            Observer alarmObserver = message -> {
+                synchronized (alarms) {
+                    alarms.record(System.nanoTime() - submittedAt.get(id));
+                }
+            };
+            dispatcher.register(new HomeControllerBuilder(new CountingObserver())
+                    .homeId(homeId)
+                    .alarmSystem(new AlarmSystem(true))
+                    .subscribe(alarmObserver, Subscription.events(DeviceEvent.ALARM_TRIGGERED))
+                    .build());
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            int i = 0;
+            while (running.get()) {
+                if (dispatcher.queued(PriorityEventDispatcher.Lane.NORMAL) < MAX_NORMAL_BACKLOG) {
+                    HouseholdEvent event = background.get(i++ % background.size());
+                    dispatcher.submit(event.homeId(), event.type(), event.eventId());
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }, "background-producer");
+        producer.start();
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long next = System.nanoTime();
+        int armed = 0;
+        while (next < end) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            int homeId = NORMAL_HOMES + armed++ % ARMED_HOMES;
+            submittedAt.set(homeId, System.nanoTime());
+            dispatcher.submit(homeId, EventCommandType.MOVEMENT);
+            next += ALARM_INTERVAL_NANOS;
+        }
+        running.set(false);
+        producer.join();
+        LatencyHistogram normal = dispatcher.latency(PriorityEventDispatcher.Lane.NORMAL);
+        dispatcher.close();
+        return new Result(alarms, normal);
+    }
+
+    private static void spin(long nanos) {
+        long until = System.nanoTime() + nanos;
+        while (System.nanoTime() < until) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void print(String label, Result result) {
+        LatencyHistogram a = result.alarms;
+        System.out.printf("%-12s alarms %,d: p50 %,d us, p99 %,d us, p99.9 %,d us, max %,d us | "
+                        + "normal %,d: p99 %,d us%n",
+                label, a.count(), a.percentile(50) / 1_000, a.percentile(99) / 1_000,
+                a.percentile(99.9) / 1_000, a.max() / 1_000,
+                result.normal.count(), result.normal.percentile(99) / 1_000);
+    }
+
+    private record Result(LatencyHistogram alarms, LatencyHistogram normal) {
+    }
+}
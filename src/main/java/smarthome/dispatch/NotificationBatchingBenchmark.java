@@ -0,0 +1,118 @@
+package smarthome.dispatch;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeFleetBuilder;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.Observer;
+import smarthome.load.CountingObserver;
+import smarthome.load.HouseholdEvent;
+import smarthome.load.HouseholdLoadGenerator;
+
+/**
+ * Measures what notification batching saves a subscriber with a fixed cost per call.
+ * <p>
+ * A backlog of generated household events is pushed through a {@link PriorityEventDispatcher}
+ * with one normal worker. Every home feeds a shared downstream subscriber that spins for a
+ * fixed time per call (a write to a socket or log stand-in), whether the call carries one
+ * notification or a batch. The run is repeated without batching, with one batch per command and
+ * with adaptive batches spanning queued commands, and the downstream calls and time per event
+ * are printed.
+ * </p>
+ * <p>
+ * Arguments (optional): {@code homes events callNanos maxBatchCommands}, defaulting to
+ * {@code 1000 200000 2000 64}.
+ * </p>
+ */
+public class NotificationBatchingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int homes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int eventCount = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        long callNanos = args.length > 2 ? Long.parseLong(args[2]) : 2000;
+        int maxBatch = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        List<HouseholdEvent> events = new HouseholdLoadGenerator(homes, 365, 42).generate();
+        events = events.subList(0, Math.min(eventCount, events.size()));
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        run(events, homes, callNanos, 0);
+        Result unbatched = run(events, homes, callNanos, 0);
+        Result perCommand = run(events, homes, callNanos, 1);
+        Result adaptive = run(events, homes, callNanos, maxBatch);
+        System.setOut(stdout);
+
+        print("unbatched", unbatched);
+        print("per command", perCommand);
+        print("adaptive", adaptive);
+        System.out.printf("downstream calls: %.1fx fewer per command, %.1fx fewer adaptive%n",
+                (double) unbatched.calls / perCommand.calls, (double) unbatched.calls / adaptive.calls);
+    }
+
+    private static Result run(List<HouseholdEvent> events, int homes, long callNanos, int maxBatch)
+            throws InterruptedException {
+        Downstream downstream = new Downstream(callNanos);
+        HomeController[] controllers = new HomeFleetBuilder(new CountingObserver())
+                .subscribe(downstream)
+                .build(0, homes);
+        PriorityEventDispatcher dispatcher = new PriorityEventDispatcher(1, false, maxBatch);
+        for (HomeController controller : controllers) {
+            dispatcher.register(controller);
+        }
+        long start = System.nanoTime();
+        for (HouseholdEvent event : events) {
+            dispatcher.submit(event.homeId(), event.type(), event.eventId());
+        }
+        dispatcher.close();
+        long nanos = System.nanoTime() - start;
+        return new Result(events.size(), nanos, downstream.calls, downstream.notifications,
+                dispatcher.getBatches(), dispatcher.getBatchedCommands());
+    }
+
+    private static void print(String label, Result result) {
+        System.out.printf("%-12s %,d events, %,d notifications, %,d downstream calls, %.0f ns/event, "
+                        + "%.1f commands/batch%n",
+                label, result.events, result.notifications, result.calls,
+                (double) result.nanos / result.events,
+                result.batches == 0 ? 0 : (double) result.batchedCommands / result.batches);
+    }
+
+    /** Subscriber paying {@code callNanos} per call; only called from the single worker. */
+    private static final class Downstream implements Observer {
+        private final long callNanos;
+        long calls;
+        long notifications;
+
+        Downstream(long callNanos) {
+            this.callNanos = callNanos;
+        }
+
+        @Override
+        public void update(String message) {
+            calls++;
+            notifications++;
+            spin(callNanos);
+        }
+
+        @Override
+        public void updateBatch(DeviceEvent[] events, String[] messages, int count) {
+            calls++;
+            notifications += count;
+            spin(callNanos);
+        }
+
+        private static void spin(long nanos) {
+            long until = System.nanoTime() + nanos;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private record Result(int events, long nanos, long calls, long notifications,
+                          long batches, long batchedCommands) {
+    }
+}
@@ -0,0 +1,433 @@
+package smarthome.dispatch;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import smarthome.commands.EventCommand;
+import smarthome.commands.EventCommandFactory;
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeController;
+import smarthome.domain.observer.NotificationBatch;
+import smarthome.execution.PlanExecutor;
+import smarthome.execution.RetryPolicy;
+import smarthome.load.HouseholdEvent;
+import smarthome.load.LatencyHistogram;
+
+/**
+ * Multi-threaded event dispatcher with a dedicated low-latency lane for alarms.
+ * <p>
+ * Every home has a serial queue of its pending events, and the lanes hold homes rather than
+ * events. A home waits in at most one lane, or is being run by one thread, at any time, so its
+ * events execute one at a time and in submission order no matter how many workers there are.
+ * A home moved from the normal to the alarm lane is not searched for in the normal lane: the
+ * entry it leaves there is skipped when a worker takes it.
+ * </p>
+ * <p>
+ * {@link EventCommandType#MOVEMENT} events for homes whose alarm is armed are assigned to the
+ * {@link Lane#ALARM} lane; everything else to the {@link Lane#NORMAL} lane. A home with a pending
+ * alarm event is moved to the alarm lane, which has its own maximum-priority thread and which
+ * normal workers check before taking each home, so pending alarms pre-empt other homes' queued
+ * work at the next scheduling point. Within its home, an alarm event still waits for the events
+ * submitted before it: an {@code ARRIVES_HOME} that disarms the alarm is never overtaken.
+ * </p>
+ * <p>
+ * Normal workers can batch device notifications (see {@link NotificationBatch}). A batch covers
+ * at least one command; while the home has a backlog it also takes that home's next queued
+ * commands, up to a limit that adapts to the backlog (see {@link AdaptiveBatchSize}), so under
+ * load each observer is called once for many commands. A batch is delivered before the home
+ * can be run by another thread. Alarm events are never batched, and a batch stops before an
+ * alarm event. Recorded latencies end when the command completes, before its batch is
+ * delivered.
+ * </p>
+ * <p>
+ * Multi-device use cases run as step plans through a {@link PlanExecutor} shared by all homes,
+ * by default without retries, so a required step that fails still rolls back the steps before it.
+ * Events submitted with an id that is among the home's recent ids are skipped as retries.
+ * A command that throws (for example a use case that was rolled back) is counted as failed and
+ * the worker goes on with the next event; the home stays schedulable.
+ * </p>
+ */
+public class PriorityEventDispatcher implements AutoCloseable {
+
+    /** Dispatch lane an event was assigned to. */
+    public enum Lane {
+        /** Movement on an armed home: raises an alarm. */
+        ALARM,
+
+        /** Everything else. */
+        NORMAL
+    }
+
+    private static final Home STOP = new Home(null, null);
+    private static final int PLAN_JOURNAL_ENTRIES = 4096;
+    private static final int DEDUPLICATION_WINDOW = 32;
+
+    private final Map<Integer, Home> homes = new ConcurrentHashMap<>();
+    private final BlockingQueue<Home> alarmLane = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Home> normalLane = new LinkedBlockingQueue<>();
+    private final Map<Lane, AtomicInteger> queued = new EnumMap<>(Lane.class);
+    private final Map<Lane, LatencyHistogram> latencies = new EnumMap<>(Lane.class);
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Object idle = new Object();
+    private final boolean priorityEnabled;
+    private final int maxBatchCommands;
+    private final PlanExecutor planExecutor;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedCommands = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Thread alarmThread;
+    private final Thread[] normalWorkers;
+
+    /**
+     * Start the dispatcher threads.
+     *
+     * @param normalWorkers   number of threads serving the normal lane
+     * @param priorityEnabled {@code false} routes alarms through the normal lane as well
+     *                        (useful as a baseline)
+     */
+    public PriorityEventDispatcher(int normalWorkers, boolean priorityEnabled) {
+        this(normalWorkers, priorityEnabled, 0);
+    }
+
+    /**
+     * Start the dispatcher threads.
+     *
+     * @param normalWorkers    number of threads serving the normal lane
+     * @param priorityEnabled  {@code false} routes alarms through the normal lane as well
+     *                         (useful as a baseline)
+     * @param maxBatchCommands most commands of one home whose notifications are delivered as
+     *                         one batch; {@code 0} disables batching, {@code 1} batches each
+     *                         command on its own
+     */
+    public PriorityEventDispatcher(int normalWorkers, boolean priorityEnabled, int maxBatchCommands) {
+        this(normalWorkers, priorityEnabled, maxBatchCommands,
+                new PlanExecutor(RetryPolicy.none(), PLAN_JOURNAL_ENTRIES));
+    }
+
+    /**
+     * Start the dispatcher threads.
+     *
+     * @param normalWorkers    number of threads serving the normal lane
+     * @param priorityEnabled  {@code false} routes alarms through the normal lane as well
+     *                         (useful as a baseline)
+     * @param maxBatchCommands most commands of one home whose notifications are delivered as
+     *                         one batch; {@code 0} disables batching, {@code 1} batches each
+     *                         command on its own
+     * @param planExecutor     runs the multi-device use cases of all homes, with its retries
+     */
+    public PriorityEventDispatcher(int normalWorkers, boolean priorityEnabled, int maxBatchCommands,
+                                   PlanExecutor planExecutor) {
+        if (maxBatchCommands < 0) {
+            throw new IllegalArgumentException("maxBatchCommands must not be negative");
+        }
+        this.priorityEnabled = priorityEnabled;
+        this.maxBatchCommands = maxBatchCommands;
+        this.planExecutor = planExecutor;
+        for (Lane lane : Lane.values()) {
+            queued.put(lane, new AtomicInteger());
+            latencies.put(lane, new LatencyHistogram());
+        }
+        this.alarmThread = new Thread(this::serveAlarms, "dispatch-alarm");
+        this.alarmThread.setPriority(Thread.MAX_PRIORITY);
+        this.alarmThread.setDaemon(true);
+        this.alarmThread.start();
+        this.normalWorkers = new Thread[normalWorkers];
+        for (int i = 0; i < normalWorkers; i++) {
+            this.normalWorkers[i] = new Thread(this::serveNormal, "dispatch-normal-" + i);
+            this.normalWorkers[i].setDaemon(true);
+            this.normalWorkers[i].start();
+        }
+    }
+
+    /** Make {@code controller} reachable by its {@link HomeController#getHomeId() home id}. */
+    public void register(HomeController controller) {
+        EventCommandFactory factory = new EventCommandFactory(controller, DEDUPLICATION_WINDOW,
+                false, planExecutor);
+        homes.put(controller.getHomeId(), new Home(factory, controller));
+    }
+
+    /**
+     * Queue an event without an id for asynchronous execution after the home's previously
+     * submitted events; it is never treated as a retry.
+     *
+     * @param homeId a registered home
+     * @param type   the event to execute
+     * @return the lane the event was assigned to
+     * @throws IllegalArgumentException if the home is not registered
+     */
+    public Lane submit(int homeId, EventCommandType type) {
+        return submit(homeId, type, HouseholdEvent.NO_ID);
+    }
+
+    /**
+     * Queue an event for asynchronous execution after the home's previously submitted events.
+     *
+     * @param homeId  a registered home
+     * @param type    the event to execute
+     * @param eventId id assigned by the event source; retries of one event carry the same id;
+     *                {@link HouseholdEvent#NO_ID} if it has none
+     * @return the lane the event was assigned to
+     * @throws IllegalArgumentException if the home is not registered
+     */
+    public Lane submit(int homeId, EventCommandType type, long eventId) {
+        Home home = homes.get(homeId);
+        if (home == null) {
+            throw new IllegalArgumentException("Unknown home: " + homeId);
+        }
+        Lane lane = priorityEnabled && type == EventCommandType.MOVEMENT
+                && home.controller.isAlarmArmed() ? Lane.ALARM : Lane.NORMAL;
+        Task task = new Task(type, eventId, System.nanoTime(), lane);
+        outstanding.incrementAndGet();
+        queued.get(lane).incrementAndGet();
+        synchronized (home) {
+            home.pending.add(task);
+            if (lane == Lane.ALARM) {
+                home.alarms++;
+            }
+            if (!home.running) {
+                schedule(home);
+            }
+        }
+        return lane;
+    }
+
+    /**
+     * @param lane the lane to report on
+     * @return a copy of the submit-to-completion latencies of events executed in {@code lane}
+     */
+    public LatencyHistogram latency(Lane lane) {
+        LatencyHistogram histogram = latencies.get(lane);
+        LatencyHistogram copy = new LatencyHistogram();
+        synchronized (histogram) {
+            copy.add(histogram);
+        }
+        return copy;
+    }
+
+    /** @return events assigned to {@code lane} that have not started yet */
+    public int queued(Lane lane) {
+        return queued.get(lane).get();
+    }
+
+    /** @return notification batches delivered by the normal workers */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /** @return commands executed inside notification batches */
+    public long getBatchedCommands() {
+        return batchedCommands.get();
+    }
+
+    /** @return commands that threw instead of completing; their latency is not recorded */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Stop all threads after the events already queued have been executed. If interrupted
+     * while waiting, the threads are stopped at once and the interrupt flag is restored.
+     */
+    @Override
+    public void close() {
+        try {
+            synchronized (idle) {
+                while (outstanding.get() > 0) {
+                    idle.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int i = 0; i < normalWorkers.length; i++) {
+            normalLane.add(STOP);
+        }
+        alarmLane.add(STOP);
+        try {
+            for (Thread worker : normalWorkers) {
+                worker.join();
+            }
+            alarmThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Put {@code home} in the lane its pending events need. Called holding the home's lock. */
+    private void schedule(Home home) {
+        if (home.pending.isEmpty()) {
+            return;
+        }
+        Lane wanted = home.alarms > 0 ? Lane.ALARM : Lane.NORMAL;
+        if (home.lane == wanted || home.lane == Lane.ALARM) {
+            return;
+        }
+        // a home leaving the normal lane stays in its queue; run() skips that entry
+        home.lane = wanted;
+        (wanted == Lane.ALARM ? alarmLane : normalLane).add(home);
+    }
+
+    private void serveAlarms() {
+        try {
+            Home home;
+            while ((home = alarmLane.take()) != STOP) {
+                run(home, Lane.ALARM, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serveNormal() {
+        AdaptiveBatchSize batchSize = maxBatchCommands > 0 ? new AdaptiveBatchSize(maxBatchCommands) : null;
+        try {
+            while (true) {
+                // homes with pending alarms pre-empt queued normal work
+                Home home = alarmLane.poll();
+                Lane lane = Lane.ALARM;
+                if (home == STOP) {
+                    // the alarm thread's stop signal: hand it back
+                    alarmLane.add(STOP);
+                    home = null;
+                }
+                if (home == null) {
+                    home = normalLane.take();
+                    lane = Lane.NORMAL;
+                }
+                if (home == STOP) {
+                    return;
+                }
+                run(home, lane, batchSize);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run the next event of {@code home} or, when batching, the next events up to the batch
+     * limit; deliver their notifications, then reschedule the home if it has more. Does nothing
+     * if {@code home} no longer waits in {@code lane}: the entry was left behind in the normal
+     * lane when the home moved to the alarm lane.
+     */
+    private void run(Home home, Lane lane, AdaptiveBatchSize batchSize) {
+        Task task;
+        boolean batch;
+        synchronized (home) {
+            if (home.lane != lane) {
+                return;
+            }
+            home.lane = null;
+            task = home.pending.poll();
+            if (task == null) {
+                return;
+            }
+            home.running = true;
+            batch = batchSize != null && task.lane == Lane.NORMAL;
+        }
+        try {
+            if (!batch) {
+                execute(home, task);
+            } else {
+                executeBatch(home, task, batchSize);
+            }
+        } finally {
+            synchronized (home) {
+                home.running = false;
+                schedule(home);
+            }
+        }
+    }
+
+    /** Execute {@code first} and, while the home has a backlog, its next normal events in one batch. */
+    private void executeBatch(Home home, Task first, AdaptiveBatchSize batchSize) {
+        int commands = 0;
+        boolean backlog;
+        NotificationBatch batch = NotificationBatch.open();
+        try {
+            Task task = first;
+            while (true) {
+                execute(home, task);
+                commands++;
+                if (commands >= batchSize.limit()) {
+                    break;
+                }
+                synchronized (home) {
+                    Task next = home.pending.peek();
+                    task = next == null || next.lane == Lane.ALARM ? null : home.pending.poll();
+                }
+                if (task == null) {
+                    break;
+                }
+            }
+        } finally {
+            // deliver while the home is still ours: no other thread can notify its observers
+            batch.close();
+        }
+        synchronized (home) {
+            backlog = !home.pending.isEmpty();
+        }
+        batches.incrementAndGet();
+        batchedCommands.addAndGet(commands);
+        batchSize.completed(backlog);
+    }
+
+    private void execute(Home home, Task task) {
+        queued.get(task.lane).decrementAndGet();
+        try {
+            EventCommand command = home.factory.createEventCommand(task.type, task.eventId);
+            try {
+                command.execute();
+            } catch (RuntimeException e) {
+                // the worker serves every home: one failing command must not stop it
+                failed.incrementAndGet();
+                return;
+            }
+            long latency = System.nanoTime() - task.submittedNanos;
+            LatencyHistogram histogram = latencies.get(task.lane);
+            synchronized (histogram) {
+                histogram.record(latency);
+            }
+        } finally {
+            if (task.lane == Lane.ALARM) {
+                synchronized (home) {
+                    home.alarms--;
+                }
+            }
+            if (outstanding.decrementAndGet() == 0) {
+                synchronized (idle) {
+                    idle.notifyAll();
+                }
+            }
+        }
+    }
+
+    /** A registered home and its serial queue; queue state is guarded by the instance's lock. */
+    private static final class Home {
+        final EventCommandFactory factory;
+        final HomeController controller;
+        final ArrayDeque<Task> pending = new ArrayDeque<>();
+        /**
+         * Lane the home is waiting in, {@code null} while running or idle. Entries of the home
+         * in other lanes are stale.
+         */
+        Lane lane;
+        boolean running;
+        /** Pending or running alarm events. */
+        int alarms;
+
+        Home(EventCommandFactory factory, HomeController controller) {
+            this.factory = factory;
+            this.controller = controller;
+        }
+    }
+
+    private record Task(EventCommandType type, long eventId, long submittedNanos, Lane lane) {
+    }
+}
@@ -1,5 +1,6 @@
 package smarthome.domain.devices;
 
+import smarthome.domain.observer.DeviceEvent;
 import smarthome.domain.observer.Observable;
 
 /**
@@ -14,7 +15,8 @@ import smarthome.domain.observer.Observable;
  * Calls are idempotent: re-arming or re-disarming does nothing.
  */
 public class AlarmSystem extends Observable {
-    private boolean isOn;
+    /** Volatile so dispatchers on other threads can classify movement events by armed state. */
+    private volatile boolean isOn;
 
     /** Create an alarm initially disarmed. */
     public AlarmSystem() {
@@ -33,7 +35,7 @@ public class AlarmSystem extends Observable {
     public void turnOn() {
         if (!isOn) {
             isOn = true;
-            notifyObservers("[AlarmSystem] turn on");
+            notifyObservers(DeviceEvent.ALARM_TURN_ON);
         }
     }
 
@@ -41,7 +43,7 @@ public class AlarmSystem extends Observable {
     public void turnOff() {
         if (isOn) {
             isOn = false;
-            notifyObservers("[AlarmSystem] turn off");
+            notifyObservers(DeviceEvent.ALARM_TURN_OFF);
         }
     }
 
@@ -50,7 +52,7 @@ public class AlarmSystem extends Observable {
      */
     public void alarm() {
         if (isOn) {
-            notifyObservers("[AlarmSystem] alarm");
+            notifyObservers(DeviceEvent.ALARM_TRIGGERED);
         }
     }
 
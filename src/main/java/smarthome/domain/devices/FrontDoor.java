@@ -1,5 +1,6 @@
 package smarthome.domain.devices;
 
+import smarthome.domain.observer.DeviceEvent;
 import smarthome.domain.observer.Observable;
 
 /**
@@ -32,7 +33,7 @@ public class FrontDoor extends Observable {
     public void open() {
         if (!isOpen) {
             isOpen = true;
-            notifyObservers("[FrontDoor] open");
+            notifyObservers(DeviceEvent.DOOR_OPEN);
         }
     }
 
@@ -40,7 +41,7 @@ public class FrontDoor extends Observable {
     public void close() {
         if (isOpen) {
             isOpen = false;
-            notifyObservers("[FrontDoor] close");
+            notifyObservers(DeviceEvent.DOOR_CLOSE);
         }
     }
 
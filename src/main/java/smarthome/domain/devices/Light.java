@@ -1,5 +1,6 @@
 package smarthome.domain.devices;
 
+import smarthome.domain.observer.DeviceEvent;
 import smarthome.domain.observer.Observable;
 
 /**
@@ -32,7 +33,7 @@ public class Light extends Observable {
     public void turnOn() {
         if (!isOn) {
             isOn = true;
-            notifyObservers("[Light] turn on");
+            notifyObservers(DeviceEvent.LIGHT_TURN_ON);
         }
     }
 
@@ -40,7 +41,7 @@ public class Light extends Observable {
     public void turnOff() {
         if (isOn) {
             isOn = false;
-            notifyObservers("[Light] turn off");
+            notifyObservers(DeviceEvent.LIGHT_TURN_OFF);
         }
     }
 
@@ -1,5 +1,6 @@
 package smarthome.domain.devices.coffeemaker;
 
+import smarthome.domain.observer.DeviceEvent;
 import smarthome.domain.observer.Observable;
 
 /**
@@ -30,13 +31,19 @@ public class CoffeeMaker extends Observable {
         this.strategy = strategy;
     }
 
+    /** @return the strategy that will be used for the next coffee */
+    public CoffeeCreationStrategy getStrategy() {
+        return strategy;
+    }
+
     /**
      * Brew a coffee using the current {@link CoffeeCreationStrategy}, and notify observers
      * with a human-readable message containing the caffeine amount.
      */
     public void createCoffee() {
         int caffeine = strategy.getCaffeineAmount();
-        notifyObservers("[CoffeeMaker] create coffee with " + caffeine + "mg caffeine");
+        notifyObservers(DeviceEvent.COFFEE_CREATED,
+                "[CoffeeMaker] create coffee with " + caffeine + "mg caffeine");
     }
 
     /**
@@ -55,6 +62,6 @@ public class CoffeeMaker extends Observable {
         } else {
             strategy = new StrongCoffeeCreationStrategy();
         }
-        notifyObservers("[CoffeeMaker] change the type of coffee");
+        notifyObservers(DeviceEvent.COFFEE_TYPE_CHANGED);
     }
 }
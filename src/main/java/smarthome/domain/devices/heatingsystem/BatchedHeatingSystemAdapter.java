@@ -0,0 +1,101 @@
+package smarthome.domain.devices.heatingsystem;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HeatingSystem} for a device behind a gateway, sending commands through a
+ * {@link BatchingHeatingGatewayClient} instead of one round trip per call.
+ * <p>
+ * {@link #turnOn()} and {@link #turnOff()} return as soon as the command is queued; use
+ * {@link #turnOnAsync()} / {@link #turnOffAsync()} to wait for the gateway. The adapter keeps a
+ * local copy of the device that it switches when a command is queued, so {@link #isTurnedOn()}
+ * reports the most recently <em>commanded</em> state and the controller stays idempotent while
+ * a batch is still in flight. Observers are registered on that copy: they are notified on the
+ * calling thread, inside its {@link smarthome.domain.observer.NotificationBatch} and JFR
+ * dispatch, never on the gateway's thread.
+ * </p>
+ * <p>
+ * If a command fails, the copy falls back to the state the gateway device acknowledged, and
+ * observers are notified of it, at the adapter's next call on its caller's side once no command
+ * is in flight.
+ * </p>
+ */
+public class BatchedHeatingSystemAdapter extends HeatingSystemAdapter {
+    private final BatchingHeatingGatewayClient client;
+    private final int deviceId;
+    /** The device on the gateway; only read, after its commands completed. */
+    private final LegacyHeatingSystem remote;
+    /** Commanded state; observers are registered here. */
+    private final LegacyHeatingSystem local;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean failed;
+
+    /**
+     * @param client   batching client of the gateway the device is connected to
+     * @param deviceId id of the device on that gateway
+     */
+    public BatchedHeatingSystemAdapter(BatchingHeatingGatewayClient client, int deviceId) {
+        this(client, deviceId, client.getGateway().device(deviceId));
+    }
+
+    private BatchedHeatingSystemAdapter(BatchingHeatingGatewayClient client, int deviceId,
+                                        LegacyHeatingSystem remote) {
+        this(client, deviceId, remote, new LegacyHeatingSystem(remote.isTurnedOn()));
+    }
+
+    private BatchedHeatingSystemAdapter(BatchingHeatingGatewayClient client, int deviceId,
+                                        LegacyHeatingSystem remote, LegacyHeatingSystem local) {
+        super(local);
+        this.client = client;
+        this.deviceId = deviceId;
+        this.remote = remote;
+        this.local = local;
+    }
+
+    @Override
+    public void turnOn() {
+        turnOnAsync();
+    }
+
+    @Override
+    public void turnOff() {
+        turnOffAsync();
+    }
+
+    /** Queue a turn-on; the future completes once the gateway applied the device's final state. */
+    public CompletableFuture<Void> turnOnAsync() {
+        return send(true);
+    }
+
+    /** Queue a turn-off; the future completes once the gateway applied the device's final state. */
+    public CompletableFuture<Void> turnOffAsync() {
+        return send(false);
+    }
+
+    @Override
+    public boolean isTurnedOn() {
+        reconcile();
+        return local.isTurnedOn();
+    }
+
+    private CompletableFuture<Void> send(boolean turnOn) {
+        reconcile();
+        local.operate(turnOn);
+        inFlight.incrementAndGet();
+        return client.submit(deviceId, turnOn).whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                failed = true;
+            }
+            inFlight.decrementAndGet();
+        });
+    }
+
+    /** After a failed command, once none is in flight, take over the gateway device's state. */
+    private void reconcile() {
+        if (failed && inFlight.get() == 0) {
+            failed = false;
+            local.operate(remote.isTurnedOn());
+        }
+    }
+}
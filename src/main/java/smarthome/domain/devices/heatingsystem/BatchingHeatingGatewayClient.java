@@ -0,0 +1,146 @@
+package smarthome.domain.devices.heatingsystem;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client that batches heating commands for one {@link HeatingGateway}.
+ * <p>
+ * The first command after an idle period opens a batching window; every command submitted
+ * before the window closes joins the same batch, which is then sent in a single round trip.
+ * Commands for the same device within a window are collapsed, so on/off flapping only sends
+ * the final state. Batches are pipelined: a new window may be flushed while earlier batches
+ * are still in flight. Each caller's future completes when the batch carrying its command
+ * has been applied.
+ * </p>
+ * <p>
+ * The window is timed in real time rather than on a {@code java.time.Clock}: it limits the
+ * delay added to real gateway round trips and has no meaning in simulated time.
+ * </p>
+ */
+public class BatchingHeatingGatewayClient implements AutoCloseable {
+    private final HeatingGateway gateway;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "heating-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Map<Integer, Pending> window = new LinkedHashMap<>();
+    private long windowNumber;
+    private CompletableFuture<Void> lastBatch = CompletableFuture.completedFuture(null);
+    private long submitted;
+    private long collapsed;
+
+    /**
+     * @param gateway      the gateway connection to send batches over
+     * @param window       how long to collect commands before sending
+     * @param unit         unit of {@code window}
+     * @param maxBatchSize flush early once this many distinct devices are pending
+     */
+    public BatchingHeatingGatewayClient(HeatingGateway gateway, long window, TimeUnit unit,
+                                        int maxBatchSize) {
+        this.gateway = gateway;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /** @return the gateway this client sends to */
+    public HeatingGateway getGateway() {
+        return gateway;
+    }
+
+    /**
+     * Queue a state change for {@code deviceId}.
+     *
+     * @return completes when the final state of the device in this window has been applied
+     */
+    public synchronized CompletableFuture<Void> submit(int deviceId, boolean turnOn) {
+        submitted++;
+        if (window.isEmpty()) {
+            long opened = windowNumber;
+            timer.schedule(() -> flushWindow(opened), windowNanos, TimeUnit.NANOSECONDS);
+        }
+        Pending pending = window.get(deviceId);
+        if (pending == null) {
+            pending = new Pending();
+            window.put(deviceId, pending);
+        } else {
+            collapsed++;
+        }
+        pending.turnOn = turnOn;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        pending.waiters.add(done);
+        if (window.size() >= maxBatchSize) {
+            flush();
+        }
+        return done;
+    }
+
+    /**
+     * Send the current window immediately.
+     *
+     * @return completes when every batch sent so far has been applied
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        if (window.isEmpty()) {
+            return lastBatch;
+        }
+        Map<Integer, Pending> batch = window;
+        window = new LinkedHashMap<>();
+        windowNumber++;
+        List<HeatingCommand> commands = new ArrayList<>(batch.size());
+        for (Map.Entry<Integer, Pending> entry : batch.entrySet()) {
+            commands.add(new HeatingCommand(entry.getKey(), entry.getValue().turnOn));
+        }
+        lastBatch = gateway.send(commands).whenComplete((ignored, failure) -> {
+            for (Pending pending : batch.values()) {
+                for (CompletableFuture<Void> waiter : pending.waiters) {
+                    if (failure != null) {
+                        waiter.completeExceptionally(failure);
+                    } else {
+                        waiter.complete(null);
+                    }
+                }
+            }
+        });
+        return lastBatch;
+    }
+
+    /** @return number of commands submitted by callers */
+    public synchronized long getSubmitted() {
+        return submitted;
+    }
+
+    /** @return number of commands that were superseded within their window and never sent */
+    public synchronized long getCollapsed() {
+        return collapsed;
+    }
+
+    /** Send what is pending and stop the window timer. */
+    @Override
+    public void close() {
+        flush();
+        timer.shutdown();
+    }
+
+    /** Timer callback; ignored if that window was already flushed early. */
+    private synchronized void flushWindow(long opened) {
+        if (opened == windowNumber) {
+            flush();
+        }
+    }
+
+    /** Final state requested for one device in the current window, plus everyone waiting on it. */
+    private static final class Pending {
+        boolean turnOn;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>(1);
+    }
+}
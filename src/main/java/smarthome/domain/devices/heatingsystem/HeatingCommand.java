@@ -0,0 +1,10 @@
+package smarthome.domain.devices.heatingsystem;
+
+/**
+ * A single on/off instruction for one heating device behind a {@link HeatingGateway}.
+ *
+ * @param deviceId id of the device on the gateway
+ * @param turnOn   desired state; {@code true} to turn on, {@code false} to turn off
+ */
+public record HeatingCommand(int deviceId, boolean turnOn) {
+}
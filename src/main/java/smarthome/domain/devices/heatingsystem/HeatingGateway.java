@@ -0,0 +1,32 @@
+package smarthome.domain.devices.heatingsystem;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Connection to a legacy gateway that controls many {@link LegacyHeatingSystem}s.
+ * <p>
+ * Every {@link #send(List)} costs one round trip regardless of the batch size. Implementations
+ * must support pipelining: a new batch may be sent before earlier ones have completed, and
+ * batches are applied and completed in the order they were sent.
+ * </p>
+ */
+public interface HeatingGateway {
+
+    /**
+     * Send a batch of commands in one round trip.
+     *
+     * @param batch commands to apply, in order
+     * @return completes once the gateway has applied the whole batch
+     */
+    CompletableFuture<Void> send(List<HeatingCommand> batch);
+
+    /**
+     * Endpoint of a device behind the gateway, used for state reads. Its observers would be
+     * notified on whichever thread applies the batches.
+     *
+     * @param deviceId id of the device on the gateway
+     * @return the device
+     */
+    LegacyHeatingSystem device(int deviceId);
+}
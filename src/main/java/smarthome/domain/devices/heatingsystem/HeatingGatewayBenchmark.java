@@ -0,0 +1,95 @@
+package smarthome.domain.devices.heatingsystem;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import smarthome.commands.EventCommandFactory;
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.domain.observer.MessageObserver;
+
+/**
+ * Compares one-round-trip-per-call heating control with the batched, pipelined gateway client
+ * during a 7am burst of {@code GOING_HOME} events.
+ * <p>
+ * Every home turns its heating on; a fraction of the homes additionally flaps (on, off, on)
+ * within the burst. Both modes talk to a {@link SimulatedHeatingGateway} with the same latency.
+ * </p>
+ * <p>
+ * Arguments (optional): {@code homes latencyMillis windowMillis flappingPercent}, defaulting to
+ * {@code 1000 2 5 20}.
+ * </p>
+ */
+public class HeatingGatewayBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int homes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 2;
+        long windowMillis = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        int flappingPercent = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        // Baseline: every call is its own blocking round trip, as with HeatingSystemAdapter
+        SimulatedHeatingGateway direct = new SimulatedHeatingGateway(latencyMillis, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        for (int homeId = 0; homeId < homes; homeId++) {
+            direct.send(List.of(new HeatingCommand(homeId, true))).join();
+            if (flaps(homeId, flappingPercent)) {
+                direct.send(List.of(new HeatingCommand(homeId, false))).join();
+                direct.send(List.of(new HeatingCommand(homeId, true))).join();
+            }
+        }
+        long directNanos = System.nanoTime() - start;
+        direct.close();
+
+        // Batched: controllers issue commands through the batching client
+        SimulatedHeatingGateway gateway = new SimulatedHeatingGateway(latencyMillis, TimeUnit.MILLISECONDS);
+        BatchingHeatingGatewayClient client =
+                new BatchingHeatingGatewayClient(gateway, windowMillis, TimeUnit.MILLISECONDS, 10_000);
+        MessageObserver observer = new MessageObserver();
+        EventCommandFactory[] factories = new EventCommandFactory[homes];
+        BatchedHeatingSystemAdapter[] adapters = new BatchedHeatingSystemAdapter[homes];
+        for (int homeId = 0; homeId < homes; homeId++) {
+            adapters[homeId] = new BatchedHeatingSystemAdapter(client, homeId);
+            factories[homeId] = new EventCommandFactory(new HomeControllerBuilder(observer)
+                    .homeId(homeId)
+                    .heatingSystem(adapters[homeId])
+                    .build());
+        }
+        start = System.nanoTime();
+        for (int homeId = 0; homeId < homes; homeId++) {
+            factories[homeId].createEventCommand(EventCommandType.GOING_HOME).execute();
+            if (flaps(homeId, flappingPercent)) {
+                adapters[homeId].turnOff();
+                factories[homeId].createEventCommand(EventCommandType.GOING_HOME).execute();
+            }
+        }
+        client.flush().join();
+        long batchedNanos = System.nanoTime() - start;
+        client.close();
+        gateway.close();
+        System.setOut(stdout);
+
+        int on = 0;
+        for (int homeId = 0; homeId < homes; homeId++) {
+            if (gateway.device(homeId).isTurnedOn()) {
+                on++;
+            }
+        }
+        System.out.printf("per-call: %,d round trips, %,d commands, %,d ms%n",
+                direct.getRoundTrips(), direct.getCommands(), TimeUnit.NANOSECONDS.toMillis(directNanos));
+        System.out.printf("batched:  %,d round trips, %,d commands (%,d collapsed), %,d ms%n",
+                gateway.getRoundTrips(), gateway.getCommands(), client.getCollapsed(),
+                TimeUnit.NANOSECONDS.toMillis(batchedNanos));
+        System.out.printf("heating on after burst: %,d / %,d homes; %,d device messages%n",
+                on, homes, observer.getMessages().size());
+    }
+
+    private static boolean flaps(int homeId, int flappingPercent) {
+        return homeId % 100 < flappingPercent;
+    }
+}
@@ -1,6 +1,8 @@
 package smarthome.domain.devices.heatingsystem;
 
-import smarthome.domain.observer.MessageObserver;
+import smarthome.domain.observer.Observer;
+import smarthome.domain.observer.ObserverTable;
+import smarthome.domain.observer.Subscription;
 
 /**
  * Adapter that exposes a {@link HeatingSystem} interface over a {@link LegacyHeatingSystem}.
@@ -26,7 +28,7 @@ public class HeatingSystemAdapter implements HeatingSystem {
 
     /**
      * Access to the wrapped device.
-     * <p><b>Note:</b> Prefer using {@link #addObserver(MessageObserver)} instead of
+     * <p><b>Note:</b> Prefer using {@link #addObserver(Observer)} instead of
      * reaching through the adapter, to preserve encapsulation.
      */
     public LegacyHeatingSystem getLegacySystem() {
@@ -36,10 +38,24 @@ public class HeatingSystemAdapter implements HeatingSystem {
     /**
      * Register an observer for messages emitted by the legacy device.
      */
-    public void addObserver(MessageObserver o) {
+    public void addObserver(Observer o) {
         legacyHeatingSystem.addObserver(o);
     }
 
+    /**
+     * Register an observer for the legacy device's messages matching {@code subscription}.
+     */
+    public void addObserver(Observer o, Subscription subscription) {
+        legacyHeatingSystem.addObserver(o, subscription);
+    }
+
+    /**
+     * Register every observer of a pre-resolved {@link ObserverTable} on the legacy device.
+     */
+    public void addObservers(ObserverTable table) {
+        legacyHeatingSystem.addObservers(table);
+    }
+
     @Override
     public void turnOn() {
         legacyHeatingSystem.operate(true);
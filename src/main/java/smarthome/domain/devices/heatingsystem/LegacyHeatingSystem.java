@@ -1,5 +1,6 @@
 package smarthome.domain.devices.heatingsystem;
 
+import smarthome.domain.observer.DeviceEvent;
 import smarthome.domain.observer.Observable;
 
 /**
@@ -41,9 +42,9 @@ public class LegacyHeatingSystem extends Observable {
         if (this.isTurnedOn != turnOn) {
             this.isTurnedOn = turnOn;
             if (turnOn) {
-                notifyObservers("[HeatingSystem] turn on");
+                notifyObservers(DeviceEvent.HEATING_TURN_ON);
             } else {
-                notifyObservers("[HeatingSystem] turn off");
+                notifyObservers(DeviceEvent.HEATING_TURN_OFF);
             }
         }
     }
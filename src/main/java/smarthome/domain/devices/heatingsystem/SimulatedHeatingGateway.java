@@ -0,0 +1,81 @@
+package smarthome.domain.devices.heatingsystem;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for a legacy heating gateway with a configurable round-trip latency.
+ * <p>
+ * All batches travel over one simulated connection: each is applied to the devices
+ * {@code latency} after it was sent, in send order, by a single gateway thread. Requests are
+ * pipelined, so sending does not wait for earlier batches to complete. Observers of the
+ * devices are therefore notified on the gateway thread.
+ * </p>
+ */
+public class SimulatedHeatingGateway implements HeatingGateway, AutoCloseable {
+    private final long latencyNanos;
+    private final Map<Integer, LegacyHeatingSystem> devices = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService connection = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "heating-gateway");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong commands = new AtomicLong();
+
+    /**
+     * @param latency round-trip time charged per {@link #send(List)}
+     * @param unit    unit of {@code latency}
+     */
+    public SimulatedHeatingGateway(long latency, TimeUnit unit) {
+        this.latencyNanos = unit.toNanos(latency);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<Void> send(List<HeatingCommand> batch) {
+        roundTrips.incrementAndGet();
+        commands.addAndGet(batch.size());
+        List<HeatingCommand> copy = List.copyOf(batch);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        connection.schedule(() -> {
+            try {
+                for (HeatingCommand command : copy) {
+                    device(command.deviceId()).operate(command.turnOn());
+                }
+                done.complete(null);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        }, latencyNanos, TimeUnit.NANOSECONDS);
+        return done;
+    }
+
+    /** {@inheritDoc} Devices are created, turned off, on first access. */
+    @Override
+    public LegacyHeatingSystem device(int deviceId) {
+        return devices.computeIfAbsent(deviceId, id -> new LegacyHeatingSystem());
+    }
+
+    /** @return number of round trips (batches) sent so far */
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    /** @return number of individual commands sent so far */
+    public long getCommands() {
+        return commands.get();
+    }
+
+    /** Close the simulated connection; batches already sent are still applied. */
+    @Override
+    public void close() {
+        connection.shutdown();
+    }
+}
@@ -0,0 +1,294 @@
+package smarthome.domain.observer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Decorator that delivers messages to a wrapped {@link Observer} on its own thread.
+ * <p>
+ * {@link #update(String)} only enqueues into a bounded queue, so the notifying device pays a
+ * constant-time hand-off instead of the subscriber's processing time. A dedicated virtual
+ * thread drains the queue and calls the delegate in arrival order. When the queue is full,
+ * the configured {@link OverflowPolicy} decides whether to drop or to block.
+ * </p>
+ * <p>
+ * Each subscriber should get its own instance; one instance may be shared by many devices and
+ * homes. Exceptions and errors thrown by the delegate are counted and do not stop delivery.
+ * Enqueuing shares a read lock, {@link #close()} takes the write lock: a message is either
+ * queued before the close marker or dropped, never stranded behind it. If the drain thread is
+ * interrupted (for example by a delegate), the observer closes itself the same way: it drops
+ * new messages, delivers the accepted ones and ends with the interrupt flag set.
+ * </p>
+ * <p>
+ * Delivery and the lag metrics run in real time, not on a {@code java.time.Clock}: they
+ * describe the hand-off between threads, which a simulated clock cannot speed up.
+ * </p>
+ */
+public class AsyncObserver implements Observer, AutoCloseable {
+    private static final Pending CLOSE = new Pending(null, null, 0);
+
+    private final Observer delegate;
+    private final OverflowPolicy policy;
+    private final BlockingQueue<Pending> queue;
+    private final Thread drainThread;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile long delivered;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+    /** Guarded by {@link #closeLock}. */
+    private boolean closed;
+
+    /**
+     * Start delivering to {@code delegate}.
+     *
+     * @param delegate the (possibly slow) subscriber; called only from the drain thread
+     * @param capacity maximum number of queued messages
+     * @param policy   what to do when the queue is full
+     */
+    public AsyncObserver(Observer delegate, int capacity, OverflowPolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.drainThread = Thread.ofVirtual()
+                .name("observer-" + delegate.getClass().getSimpleName())
+                .start(this::drain);
+    }
+
+    /**
+     * Enqueue the untyped message for asynchronous delivery.
+     *
+     * @param message a human-readable message; never {@code null}
+     */
+    @Override
+    public void update(String message) {
+        enqueue(new Pending(null, message, System.nanoTime()));
+    }
+
+    /**
+     * Enqueue the typed notification for asynchronous delivery; the delegate receives it
+     * through {@link Observer#update(DeviceEvent, String)}.
+     *
+     * @param event   the kind of event that happened; never {@code null}
+     * @param message the human-readable message for the event; never {@code null}
+     */
+    @Override
+    public void update(DeviceEvent event, String message) {
+        enqueue(new Pending(event, message, System.nanoTime()));
+    }
+
+    private void enqueue(Pending item) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            offer(item);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /** Queue {@code item} according to the overflow policy; called holding the read lock. */
+    private void offer(Pending item) {
+        pending.incrementAndGet();
+        switch (policy) {
+            case DROP_NEWEST:
+                if (!queue.offer(item)) {
+                    pending.decrementAndGet();
+                    dropped.incrementAndGet();
+                    return;
+                }
+                break;
+            case DROP_OLDEST:
+                // the close marker is only queued once no enqueue can run, so it is never evicted
+                while (!queue.offer(item)) {
+                    if (queue.poll() != null) {
+                        pending.decrementAndGet();
+                        dropped.incrementAndGet();
+                    }
+                }
+                break;
+            case BLOCK:
+                try {
+                    queue.put(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    pending.decrementAndGet();
+                    dropped.incrementAndGet();
+                    return;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown overflow policy: " + policy);
+        }
+        enqueued.incrementAndGet();
+    }
+
+    /**
+     * Wait until every accepted message has been delivered or dropped.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of {@code timeout}
+     * @return {@code true} if the queue drained in time
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pending.get() > 0) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    /**
+     * Stop accepting messages, deliver what is already queued and wait for the drain thread to
+     * finish. Waiting is not cut short by an interrupt; the interrupt flag is restored.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        closeLock.writeLock().lock();
+        try {
+            if (!closed) {
+                closed = true;
+                while (true) {
+                    try {
+                        queue.put(CLOSE);
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        while (drainThread.isAlive()) {
+            try {
+                drainThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** @return messages accepted into the queue so far */
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    /** @return messages handed to the delegate so far */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /** @return messages discarded because of overflow or after {@link #close()} */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /** @return number of delegate invocations that threw */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /** @return messages currently waiting for delivery */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** @return enqueue-to-delivery time of the most recently delivered message */
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    /** @return largest enqueue-to-delivery time observed */
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    private void drain() {
+        while (true) {
+            Pending item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                drainAfterInterrupt();
+                return;
+            }
+            if (item == CLOSE) {
+                return;
+            }
+            deliver(item);
+        }
+    }
+
+    /**
+     * Stop accepting messages as {@link #close()} would, deliver the ones already accepted and
+     * restore the interrupt flag; blocked enqueuers get their messages in as the queue empties.
+     */
+    private void drainAfterInterrupt() {
+        boolean accepting = true;
+        while (true) {
+            Pending item = queue.poll();
+            if (item == CLOSE) {
+                break;
+            }
+            if (item != null) {
+                deliver(item);
+            } else if (!accepting) {
+                break;
+            } else if (closeLock.writeLock().tryLock()) {
+                // no enqueue is in progress: after this, nothing more can be queued
+                try {
+                    closed = true;
+                } finally {
+                    closeLock.writeLock().unlock();
+                }
+                accepting = false;
+            } else {
+                Thread.yield();
+            }
+        }
+        Thread.currentThread().interrupt();
+    }
+
+    private void deliver(Pending item) {
+        long lag = System.nanoTime() - item.enqueuedNanos();
+        lastLagNanos = lag;
+        if (lag > maxLagNanos) {
+            maxLagNanos = lag;
+        }
+        try {
+            if (item.event() != null) {
+                delegate.update(item.event(), item.message());
+            } else {
+                delegate.update(item.message());
+            }
+        } catch (Throwable e) {
+            // an Error must not silently end delivery for every later message
+            failures.incrementAndGet();
+        } finally {
+            delivered++;
+            pending.decrementAndGet();
+        }
+    }
+
+    private record Pending(DeviceEvent event, String message, long enqueuedNanos) {
+    }
+}
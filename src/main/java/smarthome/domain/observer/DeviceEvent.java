@@ -0,0 +1,42 @@
+package smarthome.domain.observer;
+
+/**
+ * Typed notification emitted by a device.
+ * <p>
+ * Each constant belongs to one {@link DeviceType} and carries the human-readable message
+ * devices have always emitted, so observers can subscribe by type instead of matching
+ * message prefixes. Events with a variable payload (coffee strength) are published with an
+ * explicit message instead; see {@link Observable#notifyObservers(DeviceEvent, String)}.
+ * </p>
+ */
+public enum DeviceEvent {
+    ALARM_TURN_ON(DeviceType.ALARM_SYSTEM, "[AlarmSystem] turn on"),
+    ALARM_TURN_OFF(DeviceType.ALARM_SYSTEM, "[AlarmSystem] turn off"),
+    ALARM_TRIGGERED(DeviceType.ALARM_SYSTEM, "[AlarmSystem] alarm"),
+    HEATING_TURN_ON(DeviceType.HEATING_SYSTEM, "[HeatingSystem] turn on"),
+    HEATING_TURN_OFF(DeviceType.HEATING_SYSTEM, "[HeatingSystem] turn off"),
+    DOOR_OPEN(DeviceType.FRONT_DOOR, "[FrontDoor] open"),
+    DOOR_CLOSE(DeviceType.FRONT_DOOR, "[FrontDoor] close"),
+    LIGHT_TURN_ON(DeviceType.LIGHT, "[Light] turn on"),
+    LIGHT_TURN_OFF(DeviceType.LIGHT, "[Light] turn off"),
+    COFFEE_CREATED(DeviceType.COFFEE_MAKER, "[CoffeeMaker] create coffee"),
+    COFFEE_TYPE_CHANGED(DeviceType.COFFEE_MAKER, "[CoffeeMaker] change the type of coffee");
+
+    private final DeviceType deviceType;
+    private final String message;
+
+    DeviceEvent(DeviceType deviceType, String message) {
+        this.deviceType = deviceType;
+        this.message = message;
+    }
+
+    /** @return the device kind that emits this event */
+    public DeviceType getDeviceType() {
+        return deviceType;
+    }
+
+    /** @return the default human-readable message for this event */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,12 @@
+package smarthome.domain.observer;
+
+/**
+ * Kind of device that emits a {@link DeviceEvent}.
+ */
+public enum DeviceType {
+    ALARM_SYSTEM,
+    HEATING_SYSTEM,
+    FRONT_DOOR,
+    LIGHT,
+    COFFEE_MAKER
+}
@@ -0,0 +1,223 @@
+package smarthome.domain.observer;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import smarthome.profiling.DispatchContext;
+import smarthome.profiling.ObserverDeliveryEvent;
+import smarthome.profiling.Profiling;
+
+/**
+ * Per-thread scope in which device notifications are buffered instead of delivered.
+ * <p>
+ * While a scope is open on the current thread, {@link Observable#notifyObservers(DeviceEvent, String)}
+ * only records the notification. When the outermost scope is closed, every observer that was
+ * notified receives all of its notifications, in order, with one
+ * {@link Observer#updateBatch(DeviceEvent[], String[], int)} call; observers are called in
+ * the order they were first notified. One use case that alarms, opens the door and brews
+ * coffee thus costs a subscriber one call instead of three.
+ * </p>
+ * <pre>
+ * NotificationBatch batch = NotificationBatch.open();
+ * try {
+ *     command.execute();
+ * } finally {
+ *     batch.close();
+ * }
+ * </pre>
+ * <p>
+ * Scopes nest; inner scopes join the outer one. Notifications raised by observers while a
+ * batch is being delivered are delivered immediately. If an observer throws, the rest of the
+ * batch is discarded, as an exception in an unbatched notification would skip the remaining
+ * observers. Untyped messages that devices send directly to an observer are not buffered,
+ * and neither are notifications of observers that are not
+ * {@link Observer#isDeferrable() deferrable}. Instances are confined to their thread and reused.
+ * </p>
+ */
+public final class NotificationBatch implements AutoCloseable {
+    private static final ThreadLocal<NotificationBatch> CURRENT = ThreadLocal.withInitial(NotificationBatch::new);
+
+    private int depth;
+    private boolean delivering;
+
+    // buffered notifications
+    private Observer[][] subscribers = new Observer[8][];
+    private DeviceEvent[] events = new DeviceEvent[8];
+    private String[] messages = new String[8];
+    // dispatch that raised each notification, for profiling
+    private int[] homeIds = new int[8];
+    private String[] eventTypes = new String[8];
+    private int size;
+
+    // delivery scratch: per observer a linked list of (observer, notification) records
+    private final IdentityHashMap<Observer, Integer> slots = new IdentityHashMap<>();
+    private Observer[] observers = new Observer[8];
+    private int[] head = new int[8];
+    private int[] tail = new int[8];
+    private int[] count = new int[8];
+    private int[] notification = new int[16];
+    private int[] next = new int[16];
+    private DeviceEvent[] batchEvents = new DeviceEvent[8];
+    private String[] batchMessages = new String[8];
+
+    private NotificationBatch() {
+    }
+
+    /**
+     * Open a scope on the current thread; close it to deliver.
+     *
+     * @return the current thread's batch
+     */
+    public static NotificationBatch open() {
+        NotificationBatch batch = CURRENT.get();
+        batch.depth++;
+        return batch;
+    }
+
+    /** @return the current thread's batch if a scope is open and not being delivered, else {@code null} */
+    static NotificationBatch active() {
+        NotificationBatch batch = CURRENT.get();
+        return batch.depth > 0 && !batch.delivering ? batch : null;
+    }
+
+    /** @return number of notifications buffered in the open scope */
+    public int size() {
+        return size;
+    }
+
+    /** Close the scope; closing the outermost scope delivers the buffered notifications. */
+    @Override
+    public void close() {
+        if (depth == 0) {
+            throw new IllegalStateException("No open notification batch");
+        }
+        if (--depth == 0 && !delivering) {
+            deliver();
+        }
+    }
+
+    void add(Observer[] notified, DeviceEvent event, String message) {
+        if (size == events.length) {
+            int capacity = size * 2;
+            subscribers = Arrays.copyOf(subscribers, capacity);
+            events = Arrays.copyOf(events, capacity);
+            messages = Arrays.copyOf(messages, capacity);
+            homeIds = Arrays.copyOf(homeIds, capacity);
+            eventTypes = Arrays.copyOf(eventTypes, capacity);
+        }
+        subscribers[size] = notified;
+        events[size] = event;
+        messages[size] = message;
+        homeIds[size] = DispatchContext.homeId();
+        eventTypes[size] = DispatchContext.eventType();
+        size++;
+    }
+
+    private void deliver() {
+        if (size == 0) {
+            return;
+        }
+        delivering = true;
+        int observerCount = 0;
+        try {
+            int records = 0;
+            for (int n = 0; n < size; n++) {
+                for (Observer observer : subscribers[n]) {
+                    if (!observer.isDeferrable()) {
+                        // already notified when the notification was raised
+                        continue;
+                    }
+                    Integer slot = slots.get(observer);
+                    int s;
+                    if (slot == null) {
+                        s = observerCount++;
+                        ensureObservers(observerCount);
+                        slots.put(observer, s);
+                        observers[s] = observer;
+                        head[s] = records;
+                        count[s] = 0;
+                    } else {
+                        s = slot;
+                        next[tail[s]] = records;
+                    }
+                    if (records == next.length) {
+                        notification = Arrays.copyOf(notification, records * 2);
+                        next = Arrays.copyOf(next, records * 2);
+                    }
+                    notification[records] = n;
+                    tail[s] = records;
+                    count[s]++;
+                    records++;
+                }
+            }
+            if (batchEvents.length < size) {
+                batchEvents = new DeviceEvent[events.length];
+                batchMessages = new String[events.length];
+            }
+            for (int s = 0; s < observerCount; s++) {
+                int record = head[s];
+                for (int i = 0; i < count[s]; i++) {
+                    batchEvents[i] = events[notification[record]];
+                    batchMessages[i] = messages[notification[record]];
+                    record = next[record];
+                }
+                if (!Profiling.isActive()) {
+                    observers[s].updateBatch(batchEvents, batchMessages, count[s]);
+                    continue;
+                }
+                ObserverDeliveryEvent delivery = new ObserverDeliveryEvent();
+                delivery.begin();
+                observers[s].updateBatch(batchEvents, batchMessages, count[s]);
+                delivery.end();
+                if (delivery.shouldCommit()) {
+                    commit(delivery, s);
+                }
+            }
+        } finally {
+            // drop references so delivered messages and observers can be collected
+            Arrays.fill(subscribers, 0, size, null);
+            Arrays.fill(events, 0, size, null);
+            Arrays.fill(messages, 0, size, null);
+            Arrays.fill(eventTypes, 0, size, null);
+            Arrays.fill(batchEvents, 0, Math.min(size, batchEvents.length), null);
+            Arrays.fill(batchMessages, 0, Math.min(size, batchMessages.length), null);
+            Arrays.fill(observers, 0, observerCount, null);
+            slots.clear();
+            size = 0;
+            delivering = false;
+        }
+    }
+
+    /** Label {@code delivery} with the dispatches and events of observer slot {@code s}. */
+    private void commit(ObserverDeliveryEvent delivery, int s) {
+        int homeId = homeIds[notification[head[s]]];
+        Set<String> types = new LinkedHashSet<>();
+        Set<String> deviceEvents = new LinkedHashSet<>();
+        int record = head[s];
+        for (int i = 0; i < count[s]; i++) {
+            int n = notification[record];
+            if (homeIds[n] != homeId) {
+                homeId = -1;
+            }
+            if (eventTypes[n] != null) {
+                types.add(eventTypes[n]);
+            }
+            deviceEvents.add(events[n].name());
+            record = next[record];
+        }
+        delivery.commitBatch(homeId, types.isEmpty() ? null : String.join(",", types),
+                String.join(",", deviceEvents), observers[s], count[s]);
+    }
+
+    private void ensureObservers(int needed) {
+        if (needed > observers.length) {
+            int capacity = observers.length * 2;
+            observers = Arrays.copyOf(observers, capacity);
+            head = Arrays.copyOf(head, capacity);
+            tail = Arrays.copyOf(tail, capacity);
+            count = Arrays.copyOf(count, capacity);
+        }
+    }
+}
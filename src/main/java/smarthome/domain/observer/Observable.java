@@ -1,40 +1,161 @@
 package smarthome.domain.observer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+
+import smarthome.profiling.ObserverDeliveryEvent;
+import smarthome.profiling.Profiling;
 
 /**
  * Minimal subject in the Observer pattern.
  * <p>
- * Maintains a list of {@link Observer}s and synchronously delivers messages
- * via {@link #notifyObservers(String)}. This class is intentionally small and
- * <em>not</em> thread-safe; if you need concurrency, consider
- * {@code CopyOnWriteArrayList} or external synchronization.
+ * Keeps, for every {@link DeviceEvent}, the array of {@link Observer}s subscribed to it and
+ * synchronously delivers messages via {@link #notifyObservers(DeviceEvent)}. The per-event
+ * arrays are rebuilt when an observer is added, so a notification only walks the interested
+ * subscribers. Inside a {@link NotificationBatch} scope notifications are buffered and
+ * delivered per observer when the scope closes. Each delivery is recorded as an
+ * {@link ObserverDeliveryEvent} while a JFR recording runs and enables it. This class is
+ * intentionally small and <em>not</em> thread-safe; if you need concurrency, consider external
+ * synchronization.
  * </p>
  */
 public abstract class Observable {
-    private final List<Observer> observers = new ArrayList<>();
+    private static final Observer[] NONE = new Observer[0];
+
+    private final Observer[][] observersByEvent = new Observer[DeviceEvent.values().length][];
+    /** Observers subscribed to every event, in registration order, for untyped messages. */
+    private Observer[] allObservers = NONE;
+
+    protected Observable() {
+        Arrays.fill(observersByEvent, NONE);
+    }
 
     /**
-     * Register an observer to receive future notifications.
+     * Register an observer to receive all future notifications.
      *
      * @param observer the observer to add; must not be {@code null}
      */
     public void addObserver(Observer observer) {
-        observers.add(observer);
+        addObserver(observer, Subscription.all());
+    }
+
+    /**
+     * Register an observer to receive future notifications matching {@code subscription}.
+     *
+     * @param observer     the observer to add; must not be {@code null}
+     * @param subscription the events the observer is interested in
+     */
+    public void addObserver(Observer observer, Subscription subscription) {
+        for (DeviceEvent event : DeviceEvent.values()) {
+            if (subscription.includes(event)) {
+                Observer[] current = observersByEvent[event.ordinal()];
+                Observer[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = observer;
+                observersByEvent[event.ordinal()] = updated;
+            }
+        }
+        if (subscription.includesAll()) {
+            allObservers = Arrays.copyOf(allObservers, allObservers.length + 1);
+            allObservers[allObservers.length - 1] = observer;
+        }
+    }
+
+    /**
+     * Register every observer of {@code table}, after the observers already registered.
+     * Events without current observers share the table's arrays instead of copying them.
+     *
+     * @param table pre-resolved subscriptions; must not be {@code null}
+     */
+    public void addObservers(ObserverTable table) {
+        for (DeviceEvent event : DeviceEvent.values()) {
+            Observer[] added = table.observers(event);
+            Observer[] current = observersByEvent[event.ordinal()];
+            if (current.length == 0) {
+                observersByEvent[event.ordinal()] = added;
+            } else if (added.length > 0) {
+                Observer[] updated = Arrays.copyOf(current, current.length + added.length);
+                System.arraycopy(added, 0, updated, current.length, added.length);
+                observersByEvent[event.ordinal()] = updated;
+            }
+        }
+        Observer[] added = table.observers();
+        if (allObservers.length == 0) {
+            allObservers = added;
+        } else if (added.length > 0) {
+            Observer[] updated = Arrays.copyOf(allObservers, allObservers.length + added.length);
+            System.arraycopy(added, 0, updated, allObservers.length, added.length);
+            allObservers = updated;
+        }
     }
 
     /**
-     * Notify all registered observers with the given message.
+     * Notify the observers subscribed to every event, such as with {@link Subscription#all()},
+     * with an untyped message. Observers with a narrower subscription do not receive it: the
+     * message has no event they could have subscribed to.
      * <p>
-     * Delivery is synchronous and in registration order.
+     * Delivery is synchronous and in registration order, also inside a
+     * {@link NotificationBatch}.
      * </p>
      *
      * @param message the message to deliver; must not be {@code null}
+     * @deprecated publish a {@link DeviceEvent} with {@link #notifyObservers(DeviceEvent, String)}
+     *             so that subscriptions and batching apply
      */
+    @Deprecated
     protected void notifyObservers(String message) {
-        for (Observer observer : observers) {
+        for (Observer observer : allObservers) {
             observer.update(message);
         }
     }
+
+    /**
+     * Notify the observers subscribed to {@code event} with its default message.
+     *
+     * @param event the event to publish; must not be {@code null}
+     */
+    protected void notifyObservers(DeviceEvent event) {
+        notifyObservers(event, event.getMessage());
+    }
+
+    /**
+     * Notify the observers subscribed to {@code event} with a custom message.
+     * <p>
+     * Delivery is synchronous and in registration order, or deferred to the end of the current
+     * thread's {@link NotificationBatch} if one is open; observers that are not
+     * {@link Observer#isDeferrable() deferrable} are notified at once even then. Subscribers
+     * that must not hold up the device should be wrapped in an {@link AsyncObserver}.
+     * </p>
+     *
+     * @param event   the event to publish; must not be {@code null}
+     * @param message the message to deliver; must not be {@code null}
+     */
+    protected void notifyObservers(DeviceEvent event, String message) {
+        Observer[] observers = observersByEvent[event.ordinal()];
+        if (observers.length == 0) {
+            return;
+        }
+        NotificationBatch batch = NotificationBatch.active();
+        if (batch != null) {
+            for (Observer observer : observers) {
+                if (!observer.isDeferrable()) {
+                    deliver(observer, event, message);
+                }
+            }
+            batch.add(observers, event, message);
+            return;
+        }
+        for (Observer observer : observers) {
+            deliver(observer, event, message);
+        }
+    }
+
+    private static void deliver(Observer observer, DeviceEvent event, String message) {
+        if (!Profiling.isActive()) {
+            observer.update(event, message);
+            return;
+        }
+        ObserverDeliveryEvent delivery = new ObserverDeliveryEvent();
+        delivery.begin();
+        observer.update(event, message);
+        delivery.complete(event.name(), observer, 1);
+    }
 }
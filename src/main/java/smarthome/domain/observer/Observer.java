@@ -3,7 +3,9 @@ package smarthome.domain.observer;
 /**
  * Observer in a simple string-based Observer pattern.
  * <p>
- * Implementations receive user-facing messages from {@link Observable}s.
+ * Implementations receive user-facing messages from {@link Observable}s. Observers that
+ * care about the kind of event rather than the text can override
+ * {@link #update(DeviceEvent, String)} and subscribe with a {@link Subscription}.
  * </p>
  */
 public interface Observer {
@@ -14,4 +16,51 @@ public interface Observer {
      * @param message a human-readable message; never {@code null}
      */
     void update(String message);
+
+    /**
+     * Receive a typed notification from a subject.
+     * <p>
+     * Defaults to {@link #update(String)} so message-only observers keep working.
+     * </p>
+     *
+     * @param event   the kind of event that happened; never {@code null}
+     * @param message the human-readable message for the event; never {@code null}
+     */
+    default void update(DeviceEvent event, String message) {
+        update(message);
+    }
+
+    /**
+     * Receive the typed notifications of one {@link NotificationBatch}, in order.
+     * <p>
+     * Defaults to calling {@link #update(DeviceEvent, String)} for each; subscribers with a
+     * per-call cost (a write, a lock, a queue hand-off) can override it to pay that cost once.
+     * The arrays are reused after the call returns and must not be retained.
+     * </p>
+     *
+     * @param events   the kinds of event, in {@code [0, count)}
+     * @param messages the matching messages, in {@code [0, count)}
+     * @param count    number of notifications; at least one
+     */
+    default void updateBatch(DeviceEvent[] events, String[] messages, int count) {
+        for (int i = 0; i < count; i++) {
+            update(events[i], messages[i]);
+        }
+    }
+
+    /**
+     * Whether this observer's notifications may be held back until the end of a
+     * {@link NotificationBatch}.
+     * <p>
+     * Defaults to {@code true}. Observers whose effect the rest of the batch depends on, such as
+     * a cache invalidation that a later command's state check must see, return {@code false}:
+     * they are notified when the device changes, with {@link #update(DeviceEvent, String)}, and
+     * left out of the batch.
+     * </p>
+     *
+     * @return {@code false} to be notified immediately inside a batch
+     */
+    default boolean isDeferrable() {
+        return true;
+    }
 }
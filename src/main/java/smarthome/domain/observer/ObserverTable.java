@@ -0,0 +1,81 @@
+package smarthome.domain.observer;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, pre-resolved set of subscriptions that can be attached to many devices at once.
+ * <p>
+ * Registering {@code k} observers one at a time rebuilds the per-event arrays of an
+ * {@link Observable} {@code k} times. A table resolves the subscriptions once; attaching it
+ * with {@link Observable#addObservers(ObserverTable)} to a device without observers shares
+ * the table's arrays instead of copying them, which is what a fleet of identically wired homes
+ * needs. Sharing is safe because an {@link Observable} never mutates its arrays in place.
+ * </p>
+ */
+public final class ObserverTable {
+    private static final Observer[] NONE = new Observer[0];
+
+    private final Observer[][] observersByEvent;
+    private final Observer[] all;
+
+    private ObserverTable(Observer[][] observersByEvent, Observer[] all) {
+        this.observersByEvent = observersByEvent;
+        this.all = all;
+    }
+
+    /** @return a builder for a new table */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** @return the observers subscribed to {@code event}; callers must not modify the array */
+    Observer[] observers(DeviceEvent event) {
+        return observersByEvent[event.ordinal()];
+    }
+
+    /**
+     * @return the observers subscribed to every event, in registration order, for untyped
+     *         messages; callers must not modify the array
+     */
+    Observer[] observers() {
+        return all;
+    }
+
+    /** Collects observers and their subscriptions in registration order. */
+    public static final class Builder {
+        private final Observer[][] observersByEvent = new Observer[DeviceEvent.values().length][];
+        private Observer[] all = NONE;
+
+        private Builder() {
+            Arrays.fill(observersByEvent, NONE);
+        }
+
+        /**
+         * Subscribe {@code observer} to the events selected by {@code subscription}.
+         *
+         * @param observer     the observer to add; must not be {@code null}
+         * @param subscription the events the observer is interested in
+         * @return this builder
+         */
+        public Builder add(Observer observer, Subscription subscription) {
+            for (DeviceEvent event : DeviceEvent.values()) {
+                if (subscription.includes(event)) {
+                    Observer[] current = observersByEvent[event.ordinal()];
+                    Observer[] updated = Arrays.copyOf(current, current.length + 1);
+                    updated[current.length] = observer;
+                    observersByEvent[event.ordinal()] = updated;
+                }
+            }
+            if (subscription.includesAll()) {
+                all = Arrays.copyOf(all, all.length + 1);
+                all[all.length - 1] = observer;
+            }
+            return this;
+        }
+
+        /** @return the table; the builder can keep being used without affecting it */
+        public ObserverTable build() {
+            return new ObserverTable(observersByEvent.clone(), all);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package smarthome.domain.observer;
+
+/**
+ * What an {@link AsyncObserver} does when its delivery queue is full.
+ */
+public enum OverflowPolicy {
+    /** Discard the incoming message; the device never waits. */
+    DROP_NEWEST,
+
+    /** Evict the oldest queued message to make room; the device never waits. */
+    DROP_OLDEST,
+
+    /** Block the notifying device until the subscriber catches up (lossless, but not isolated). */
+    BLOCK
+}
@@ -0,0 +1,73 @@
+package smarthome.domain.observer;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable filter describing which {@link DeviceEvent}s an {@link Observer} wants.
+ * <p>
+ * Subscriptions are resolved once, when the observer is added to an {@link Observable};
+ * notifications are then dispatched by event ordinal without any filtering or string
+ * matching. Examples:
+ * </p>
+ * <pre>
+ * Subscription.all()
+ * Subscription.devices(DeviceType.ALARM_SYSTEM)
+ * Subscription.events(DeviceEvent.ALARM_TRIGGERED)   // alarm triggers only
+ * </pre>
+ * <p>
+ * Untyped messages (the deprecated {@code Observable.notifyObservers(String)}) carry no event
+ * to match, so only observers whose subscription includes every event receive them.
+ * </p>
+ */
+public final class Subscription {
+    private static final Subscription ALL = new Subscription(EnumSet.allOf(DeviceEvent.class));
+
+    private final Set<DeviceEvent> events;
+
+    private Subscription(Set<DeviceEvent> events) {
+        this.events = events;
+    }
+
+    /** @return a subscription to every event of every device */
+    public static Subscription all() {
+        return ALL;
+    }
+
+    /** @return a subscription to exactly the given events */
+    public static Subscription events(DeviceEvent first, DeviceEvent... rest) {
+        return new Subscription(EnumSet.of(first, rest));
+    }
+
+    /** @return a subscription to all events of the given device types */
+    public static Subscription devices(DeviceType first, DeviceType... rest) {
+        Set<DeviceType> types = EnumSet.of(first, rest);
+        Set<DeviceEvent> events = EnumSet.noneOf(DeviceEvent.class);
+        for (DeviceEvent event : DeviceEvent.values()) {
+            if (types.contains(event.getDeviceType())) {
+                events.add(event);
+            }
+        }
+        return new Subscription(events);
+    }
+
+    /** @return {@code true} if notifications of {@code event} should be delivered */
+    public boolean includes(DeviceEvent event) {
+        return events.contains(event);
+    }
+
+    /** @return {@code true} if every event is included, so untyped messages are delivered too */
+    boolean includesAll() {
+        return events.size() == DeviceEvent.values().length;
+    }
+
+    /** @return {@code true} if at least one event of {@code deviceType} is included */
+    public boolean includes(DeviceType deviceType) {
+        for (DeviceEvent event : events) {
+            if (event.getDeviceType() == deviceType) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
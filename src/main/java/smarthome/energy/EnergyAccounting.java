@@ -0,0 +1,176 @@
+package smarthome.energy;
+
+import java.time.Clock;
+
+import smarthome.controller.HomeState;
+import smarthome.controller.HomeStateAware;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.Observer;
+import smarthome.domain.observer.Subscription;
+
+/**
+ * Streaming energy accounting fed from device notifications.
+ * <p>
+ * Heating and lights draw their rated power between their on and off notifications; every
+ * brewed coffee books a fixed amount. Consumption is aggregated incrementally, per home and
+ * fleet-wide, into minute, hour and day buckets (see {@link EnergyWindow}), so both tumbling
+ * and sliding totals can be read at any time without replaying history. Each notification
+ * costs a primitive-keyed lookup and a few bucket updates; an active home holds about 1 KB.
+ * </p>
+ * <p>
+ * Register one {@link #observer(int)} per home, e.g.
+ * {@code builder.subscribe(accounting.observer(homeId), EnergyAccounting.subscription())} or
+ * {@code fleetBuilder.subscribePerHome(accounting::observer, EnergyAccounting.subscription())}.
+ * Thread-safe; one instance is meant to be shared by all homes of a node.
+ * </p>
+ */
+public class EnergyAccounting {
+    private static final Subscription ENERGY_EVENTS = Subscription.events(
+            DeviceEvent.HEATING_TURN_ON, DeviceEvent.HEATING_TURN_OFF,
+            DeviceEvent.LIGHT_TURN_ON, DeviceEvent.LIGHT_TURN_OFF,
+            DeviceEvent.COFFEE_CREATED);
+    private static final int HEATING = 1;
+    private static final int LIGHT = 2;
+    private static final double MILLIJOULES_PER_WATT_HOUR = 3_600_000.0;
+
+    private final long heatingWatts;
+    private final long lightWatts;
+    private final long coffeeMillijoules;
+    private final Clock clock;
+    private final HomeMeters homes = new HomeMeters(1024);
+    private final EnergyMeter fleet = new EnergyMeter();
+    private long events;
+
+    /**
+     * @param rates energy model of the devices; draws are rounded to whole watts
+     * @param clock time source for bucketing
+     */
+    public EnergyAccounting(EnergyRates rates, Clock clock) {
+        this.heatingWatts = Math.round(rates.heatingWatts());
+        this.lightWatts = Math.round(rates.lightWatts());
+        this.coffeeMillijoules = Math.round(rates.coffeeWattHours() * MILLIJOULES_PER_WATT_HOUR);
+        this.clock = clock;
+    }
+
+    /**
+     * @param rates energy model of the devices; draws are rounded to whole watts
+     */
+    public EnergyAccounting(EnergyRates rates) {
+        this(rates, Clock.systemUTC());
+    }
+
+    /** @return the device events that carry energy; subscribe {@link #observer(int)} with it */
+    public static Subscription subscription() {
+        return ENERGY_EVENTS;
+    }
+
+    /**
+     * @return observer that books the energy events of {@code homeId}'s devices; it is
+     *         {@link HomeStateAware}, so heating or light already on when the home is wired,
+     *         e.g. restored from a {@link HomeState}, draws power from then on
+     */
+    public Observer observer(int homeId) {
+        return new HomeObserver(homeId);
+    }
+
+    /**
+     * Book the devices that are on in {@code state} as switched on now. Observers returned by
+     * {@link #observer(int)} do this when their home is wired; call it directly only for homes
+     * fed through {@link #record(int, DeviceEvent)}.
+     */
+    public synchronized void initialize(HomeState state) {
+        long now = clock.millis();
+        if (state.heatingOn()) {
+            switchDevice(state.homeId(), HEATING, true, heatingWatts, now);
+        }
+        if (state.lightOn()) {
+            switchDevice(state.homeId(), LIGHT, true, lightWatts, now);
+        }
+    }
+
+    /**
+     * Book one device notification of {@code homeId}; events without energy are ignored.
+     * Repeated on (or off) notifications of the same device do not change its draw.
+     */
+    public synchronized void record(int homeId, DeviceEvent event) {
+        long now = clock.millis();
+        switch (event) {
+            case HEATING_TURN_ON -> switchDevice(homeId, HEATING, true, heatingWatts, now);
+            case HEATING_TURN_OFF -> switchDevice(homeId, HEATING, false, heatingWatts, now);
+            case LIGHT_TURN_ON -> switchDevice(homeId, LIGHT, true, lightWatts, now);
+            case LIGHT_TURN_OFF -> switchDevice(homeId, LIGHT, false, lightWatts, now);
+            case COFFEE_CREATED -> {
+                homes.getOrCreate(homeId).addEnergy(coffeeMillijoules, now);
+                fleet.addEnergy(coffeeMillijoules, now);
+            }
+            default -> {
+                return;
+            }
+        }
+        events++;
+    }
+
+    /** @return energy used by {@code homeId} in {@code window}, in watt-hours */
+    public synchronized double homeWattHours(int homeId, EnergyWindow window) {
+        EnergyMeter meter = homes.get(homeId);
+        return meter == null ? 0 : meter.energy(window, clock.millis()) / MILLIJOULES_PER_WATT_HOUR;
+    }
+
+    /** @return energy used by all homes in {@code window}, in watt-hours */
+    public synchronized double fleetWattHours(EnergyWindow window) {
+        return fleet.energy(window, clock.millis()) / MILLIJOULES_PER_WATT_HOUR;
+    }
+
+    /** @return current draw of {@code homeId}, in watts */
+    public synchronized long homePowerWatts(int homeId) {
+        EnergyMeter meter = homes.get(homeId);
+        return meter == null ? 0 : meter.powerWatts();
+    }
+
+    /** @return current draw of all homes, in watts */
+    public synchronized long fleetPowerWatts() {
+        return fleet.powerWatts();
+    }
+
+    /** @return number of homes with at least one energy event */
+    public synchronized int getHomes() {
+        return homes.size();
+    }
+
+    /** @return energy notifications received so far */
+    public synchronized long getEvents() {
+        return events;
+    }
+
+    private void switchDevice(int homeId, int device, boolean on, long watts, long now) {
+        EnergyMeter meter = homes.getOrCreate(homeId);
+        if (meter.switchDevice(device, on)) {
+            long delta = on ? watts : -watts;
+            meter.changePower(delta, now);
+            fleet.changePower(delta, now);
+        }
+    }
+
+    private final class HomeObserver implements Observer, HomeStateAware {
+        private final int homeId;
+
+        HomeObserver(int homeId) {
+            this.homeId = homeId;
+        }
+
+        @Override
+        public void update(String message) {
+            // untyped messages cannot be attributed to a device
+        }
+
+        @Override
+        public void update(DeviceEvent event, String message) {
+            record(homeId, event);
+        }
+
+        @Override
+        public void initialState(HomeState state) {
+            initialize(state);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package smarthome.energy;
+
+/**
+ * Running energy account of one home, or of the whole fleet.
+ * <p>
+ * Keeps the current power draw and the time up to which it has been booked. Every change of
+ * the draw, and every read, first books the draw since then into the minute, hour and day
+ * rings, so the totals are current at any time while each update touches only the buckets the
+ * elapsed interval spans. Not thread-safe.
+ * </p>
+ */
+final class EnergyMeter {
+    private final EnergyRing[] rings;
+    private long powerWatts;
+    private long accruedUntil = Long.MIN_VALUE;
+    private int devicesOn;
+
+    EnergyMeter() {
+        EnergyWindow.Resolution[] resolutions = EnergyWindow.Resolution.values();
+        this.rings = new EnergyRing[resolutions.length];
+        for (EnergyWindow.Resolution resolution : resolutions) {
+            rings[resolution.ordinal()] = new EnergyRing(resolution.bucketMillis, resolution.buckets);
+        }
+    }
+
+    /** Change the power draw by {@code deltaWatts} from {@code nowMillis} on. */
+    void changePower(long deltaWatts, long nowMillis) {
+        accrue(nowMillis);
+        powerWatts += deltaWatts;
+    }
+
+    /**
+     * Record that a device was switched, ignoring repeated notifications of the same state.
+     *
+     * @param device bit identifying the device
+     * @return {@code true} if the state changed
+     */
+    boolean switchDevice(int device, boolean on) {
+        int updated = on ? devicesOn | device : devicesOn & ~device;
+        boolean changed = updated != devicesOn;
+        devicesOn = updated;
+        return changed;
+    }
+
+    /** Book a one-off consumption, e.g. a brewed coffee. */
+    void addEnergy(long millijoules, long nowMillis) {
+        long at = accrue(nowMillis);
+        for (EnergyRing ring : rings) {
+            ring.add(at, millijoules);
+        }
+    }
+
+    /** @return current draw in watts */
+    long powerWatts() {
+        return powerWatts;
+    }
+
+    /** @return energy of {@code window} in millijoules, as of {@code nowMillis} */
+    long energy(EnergyWindow window, long nowMillis) {
+        long now = accrue(nowMillis);
+        EnergyRing ring = rings[window.resolution.ordinal()];
+        return switch (window.kind) {
+            case CURRENT -> ring.bucket(now);
+            case PREVIOUS -> ring.bucket(now - ring.bucketMillis());
+            case SLIDING -> ring.sliding(now);
+        };
+    }
+
+    /**
+     * Book the draw since the last update.
+     *
+     * @return the effective time, which never moves backwards even if the clock does
+     */
+    private long accrue(long nowMillis) {
+        if (accruedUntil == Long.MIN_VALUE) {
+            accruedUntil = nowMillis;
+        }
+        long now = Math.max(nowMillis, accruedUntil);
+        for (EnergyRing ring : rings) {
+            ring.addSpread(accruedUntil, now, powerWatts);
+        }
+        accruedUntil = now;
+        return now;
+    }
+}
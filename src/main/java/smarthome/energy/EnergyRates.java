@@ -0,0 +1,22 @@
+package smarthome.energy;
+
+/**
+ * Energy model of the devices, used by {@link EnergyAccounting}.
+ *
+ * @param heatingWatts    draw of a heating system while it is on
+ * @param lightWatts      draw of a light while it is on
+ * @param coffeeWattHours energy of one brewed coffee
+ */
+public record EnergyRates(double heatingWatts, double lightWatts, double coffeeWattHours) {
+
+    public EnergyRates {
+        if (heatingWatts < 0 || lightWatts < 0 || coffeeWattHours < 0) {
+            throw new IllegalArgumentException("energy rates must not be negative");
+        }
+    }
+
+    /** @return a 2 kW heating system, a 60 W light and 20 Wh per coffee */
+    public static EnergyRates defaults() {
+        return new EnergyRates(2000, 60, 20);
+    }
+}
@@ -0,0 +1,89 @@
+package smarthome.energy;
+
+import java.util.Arrays;
+
+/**
+ * Fixed number of consecutive, time-aligned energy buckets with a running total.
+ * <p>
+ * Bucket {@code b} covers {@code [b * bucketMillis, (b + 1) * bucketMillis)}. Moving to a newer
+ * bucket recycles the oldest slots and subtracts them from the total, so the sliding sum over
+ * all kept buckets is always available without summing them. Energy is kept in millijoules
+ * (watts times milliseconds). Not thread-safe.
+ * </p>
+ */
+final class EnergyRing {
+    private final long bucketMillis;
+    private final long[] energy;
+    private long head = -1;
+    private long total;
+
+    EnergyRing(long bucketMillis, int buckets) {
+        this.bucketMillis = bucketMillis;
+        this.energy = new long[buckets];
+    }
+
+    /** Add {@code millijoules} consumed at {@code atMillis}; energy older than the ring is dropped. */
+    void add(long atMillis, long millijoules) {
+        long bucket = atMillis / bucketMillis;
+        advance(bucket);
+        if (bucket > head - energy.length) {
+            energy[slot(bucket)] += millijoules;
+            total += millijoules;
+        }
+    }
+
+    /** Spread a constant draw of {@code watts} over {@code [fromMillis, toMillis)}. */
+    void addSpread(long fromMillis, long toMillis, long watts) {
+        if (watts == 0 || toMillis <= fromMillis) {
+            return;
+        }
+        advance((toMillis - 1) / bucketMillis);
+        // only the part of the interval that still fits into the ring is worth splitting
+        long from = Math.max(fromMillis, (head - energy.length + 1) * bucketMillis);
+        while (from < toMillis) {
+            long bucket = from / bucketMillis;
+            long end = Math.min(toMillis, (bucket + 1) * bucketMillis);
+            long millijoules = watts * (end - from);
+            energy[slot(bucket)] += millijoules;
+            total += millijoules;
+            from = end;
+        }
+    }
+
+    /** @return energy of the bucket containing {@code atMillis}, or 0 if it is not kept */
+    long bucket(long atMillis) {
+        long bucket = atMillis / bucketMillis;
+        return bucket > head || bucket <= head - energy.length ? 0 : energy[slot(bucket)];
+    }
+
+    /** @return energy of the kept buckets up to the one containing {@code nowMillis} */
+    long sliding(long nowMillis) {
+        advance(nowMillis / bucketMillis);
+        return total;
+    }
+
+    long bucketMillis() {
+        return bucketMillis;
+    }
+
+    private void advance(long bucket) {
+        if (bucket <= head) {
+            return;
+        }
+        if (bucket - head >= energy.length) {
+            Arrays.fill(energy, 0);
+            total = 0;
+        } else {
+            for (long b = head + 1; b <= bucket; b++) {
+                int slot = slot(b);
+                total -= energy[slot];
+                energy[slot] = 0;
+            }
+        }
+        head = bucket;
+    }
+
+    private int slot(long bucket) {
+        return (int) (bucket % energy.length);
+    }
+}
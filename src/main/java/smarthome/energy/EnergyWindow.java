@@ -0,0 +1,55 @@
+package smarthome.energy;
+
+/**
+ * Time window of an energy total.
+ * <p>
+ * Tumbling windows are aligned to calendar minutes, hours and days (UTC); the current one is
+ * still filling, the previous one is final and suitable for billing. Sliding windows end now
+ * and move at the resolution of the pre-aggregated buckets they sum.
+ * </p>
+ */
+public enum EnergyWindow {
+    /** The current calendar minute, so far. */
+    MINUTE(Resolution.MINUTE, Kind.CURRENT),
+    /** The current calendar hour, so far. */
+    HOUR(Resolution.HOUR, Kind.CURRENT),
+    /** The current calendar day, so far. */
+    DAY(Resolution.DAY, Kind.CURRENT),
+    /** The last complete calendar minute. */
+    PREVIOUS_MINUTE(Resolution.MINUTE, Kind.PREVIOUS),
+    /** The last complete calendar hour. */
+    PREVIOUS_HOUR(Resolution.HOUR, Kind.PREVIOUS),
+    /** The last complete calendar day. */
+    PREVIOUS_DAY(Resolution.DAY, Kind.PREVIOUS),
+    /** The last 60 minutes, at minute resolution. */
+    LAST_60_MINUTES(Resolution.MINUTE, Kind.SLIDING),
+    /** The last 24 hours, at hour resolution. */
+    LAST_24_HOURS(Resolution.HOUR, Kind.SLIDING),
+    /** The last 30 days, at day resolution. */
+    LAST_30_DAYS(Resolution.DAY, Kind.SLIDING);
+
+    /** Bucket size of the pre-aggregated totals, with the number of buckets kept. */
+    enum Resolution {
+        MINUTE(60_000L, 60),
+        HOUR(3_600_000L, 24),
+        DAY(86_400_000L, 30);
+
+        final long bucketMillis;
+        final int buckets;
+
+        Resolution(long bucketMillis, int buckets) {
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+        }
+    }
+
+    enum Kind { CURRENT, PREVIOUS, SLIDING }
+
+    final Resolution resolution;
+    final Kind kind;
+
+    EnergyWindow(Resolution resolution, Kind kind) {
+        this.resolution = resolution;
+        this.kind = kind;
+    }
+}
@@ -0,0 +1,76 @@
+package smarthome.energy;
+
+/**
+ * Map from home id to {@link EnergyMeter} over primitive {@code int} keys.
+ * <p>
+ * Open addressing with linear probing; no boxing and one array slot per key, so a lookup on the
+ * notification path does not allocate. Meters are never removed. Not thread-safe.
+ * </p>
+ */
+final class HomeMeters {
+    private int[] keys;
+    private EnergyMeter[] meters;
+    private int mask;
+    private int size;
+
+    HomeMeters(int expectedHomes) {
+        int capacity = Integer.highestOneBit(Math.max(expectedHomes, 8) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.meters = new EnergyMeter[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /** @return the meter of {@code homeId}, or {@code null} if the home has no energy events yet */
+    EnergyMeter get(int homeId) {
+        for (int i = slot(homeId); meters[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == homeId) {
+                return meters[i];
+            }
+        }
+        return null;
+    }
+
+    /** @return the meter of {@code homeId}, created on first use */
+    EnergyMeter getOrCreate(int homeId) {
+        int i = slot(homeId);
+        for (; meters[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == homeId) {
+                return meters[i];
+            }
+        }
+        EnergyMeter meter = new EnergyMeter();
+        keys[i] = homeId;
+        meters[i] = meter;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return meter;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        EnergyMeter[] oldMeters = meters;
+        keys = new int[oldKeys.length * 2];
+        meters = new EnergyMeter[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldMeters[j] != null) {
+                int i = slot(oldKeys[j]);
+                while (meters[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                meters[i] = oldMeters[j];
+            }
+        }
+    }
+
+    private int slot(int homeId) {
+        int h = homeId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,162 @@
+package smarthome.execution;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import smarthome.time.Sleeper;
+
+/**
+ * Runs {@link StepPlan}s with per-step retries, compensation and idempotency keys.
+ * <p>
+ * For every idempotency key the executor remembers which steps have completed, as a single
+ * {@code long} bit mask in a bounded journal. Executing a plan again with the same key skips
+ * those steps, so a caller retrying a use case does not repeat device traffic (or brew a
+ * second coffee). When a required step still fails after its retries, every completed step
+ * that has a compensation is undone in reverse order and its bit is cleared; steps without
+ * compensation stay recorded as done. Executions without a key get the same retries and
+ * compensation but are not journaled.
+ * </p>
+ * <p>
+ * Thread-safe, but two concurrent executions under the same key are not coordinated.
+ * </p>
+ */
+public class PlanExecutor {
+    private final RetryPolicy retryPolicy;
+    private final Sleeper sleeper;
+    private final Map<String, Long> journal;
+
+    /**
+     * @param retryPolicy    retry behavior applied to every step
+     * @param journalEntries maximum number of idempotency keys remembered (oldest forgotten first)
+     * @param sleeper        waits out the backoff, e.g. {@link smarthome.time.SimulationClock#sleeper()}
+     */
+    public PlanExecutor(RetryPolicy retryPolicy, int journalEntries, Sleeper sleeper) {
+        this.retryPolicy = retryPolicy;
+        this.sleeper = sleeper;
+        this.journal = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > journalEntries;
+            }
+        };
+    }
+
+    /**
+     * @param retryPolicy    retry behavior applied to every step
+     * @param journalEntries maximum number of idempotency keys remembered (oldest forgotten first)
+     */
+    public PlanExecutor(RetryPolicy retryPolicy, int journalEntries) {
+        this(retryPolicy, journalEntries, Sleeper.system());
+    }
+
+    /**
+     * Execute {@code plan}, resuming an earlier execution under the same key if there was one.
+     *
+     * @param plan           the steps to run
+     * @param idempotencyKey identifies one logical request, e.g. the event id; {@code null}
+     *                       runs every step and records nothing
+     * @return what happened
+     */
+    public PlanResult execute(StepPlan plan, String idempotencyKey) {
+        List<Step> steps = plan.steps();
+        long done = completedSteps(idempotencyKey);
+        int executed = 0;
+        int skipped = 0;
+        List<String> failed = new ArrayList<>();
+        RuntimeException lastFailure = null;
+
+        for (int i = 0; i < steps.size(); i++) {
+            long bit = 1L << i;
+            if ((done & bit) != 0) {
+                skipped++;
+                continue;
+            }
+            Step step = steps.get(i);
+            RuntimeException failure = runWithRetries(step);
+            if (failure == null) {
+                done |= bit;
+                executed++;
+                record(idempotencyKey, done);
+                continue;
+            }
+            failed.add(step.getName());
+            lastFailure = failure;
+            if (!step.isOptional()) {
+                int compensated = 0;
+                for (int j = i - 1; j >= 0; j--) {
+                    if ((done & (1L << j)) != 0 && compensate(steps.get(j))) {
+                        done &= ~(1L << j);
+                        compensated++;
+                    }
+                }
+                record(idempotencyKey, done);
+                return new PlanResult(plan.name(), idempotencyKey, PlanResult.Status.ROLLED_BACK,
+                        executed, skipped, compensated, failed, failure);
+            }
+        }
+        PlanResult.Status status = failed.isEmpty()
+                ? PlanResult.Status.COMPLETED : PlanResult.Status.PARTIAL;
+        return new PlanResult(plan.name(), idempotencyKey, status, executed, skipped, 0, failed,
+                lastFailure);
+    }
+
+    /** @return bit mask of steps completed under {@code idempotencyKey}; bit {@code i} is step {@code i} */
+    public synchronized long completedSteps(String idempotencyKey) {
+        return idempotencyKey == null ? 0 : journal.getOrDefault(idempotencyKey, 0L);
+    }
+
+    /**
+     * Journal steps completed by another executor, e.g. for a home taken over from another
+     * node, so a retry of the plan resumes here.
+     *
+     * @param idempotencyKey key the steps were completed under
+     * @param completedSteps bit mask as returned by {@link #completedSteps(String)}
+     */
+    public void restore(String idempotencyKey, long completedSteps) {
+        record(idempotencyKey, completedSteps);
+    }
+
+    private synchronized void record(String idempotencyKey, long done) {
+        if (idempotencyKey != null) {
+            journal.put(idempotencyKey, done);
+        }
+    }
+
+    private RuntimeException runWithRetries(Step step) {
+        RuntimeException failure = null;
+        for (int attempt = 1; attempt <= retryPolicy.maxAttempts(); attempt++) {
+            if (attempt > 1 && !sleep(retryPolicy.backoffBefore(attempt))) {
+                return failure;
+            }
+            try {
+                step.run();
+                return null;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        return failure;
+    }
+
+    /** @return {@code true} if the step was undone; a failing compensation leaves it recorded as done */
+    private static boolean compensate(Step step) {
+        try {
+            return step.compensate();
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private boolean sleep(Duration backoff) {
+        try {
+            sleeper.sleep(backoff);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
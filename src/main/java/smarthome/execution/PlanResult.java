@@ -0,0 +1,37 @@
+package smarthome.execution;
+
+import java.util.List;
+
+/**
+ * Outcome of {@link PlanExecutor#execute(StepPlan, String)}.
+ *
+ * @param plan           name of the executed plan
+ * @param idempotencyKey key the execution was recorded under, or {@code null}
+ * @param status         overall outcome
+ * @param executed       steps run (successfully) during this call
+ * @param skipped        steps skipped because an earlier call with the same key completed them
+ * @param compensated    steps rolled back during this call
+ * @param failedSteps    names of the steps that failed after all retries
+ * @param failure        the last failure, or {@code null}
+ */
+public record PlanResult(String plan,
+                         String idempotencyKey,
+                         Status status,
+                         int executed,
+                         int skipped,
+                         int compensated,
+                         List<String> failedSteps,
+                         RuntimeException failure) {
+
+    /** Overall outcome of a plan execution. */
+    public enum Status {
+        /** Every step has completed (now or in an earlier call with the same key). */
+        COMPLETED,
+
+        /** Required steps completed, but at least one optional step is still pending. */
+        PARTIAL,
+
+        /** A required step failed; completed steps with compensation were rolled back. */
+        ROLLED_BACK
+    }
+}
@@ -0,0 +1,29 @@
+package smarthome.execution;
+
+import java.time.Duration;
+
+/**
+ * How often and how patiently a failing {@link Step} is retried.
+ *
+ * @param maxAttempts    total attempts per step, including the first one (at least 1)
+ * @param initialBackoff pause before the second attempt
+ * @param multiplier     factor applied to the pause after every further failure
+ */
+public record RetryPolicy(int maxAttempts, Duration initialBackoff, double multiplier) {
+
+    public RetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+    }
+
+    /** @return a policy that never retries */
+    public static RetryPolicy none() {
+        return new RetryPolicy(1, Duration.ZERO, 1);
+    }
+
+    /** @return pause before attempt number {@code attempt} (2 for the first retry) */
+    Duration backoffBefore(int attempt) {
+        return Duration.ofNanos((long) (initialBackoff.toNanos() * Math.pow(multiplier, attempt - 2)));
+    }
+}
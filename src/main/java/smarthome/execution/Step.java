@@ -0,0 +1,64 @@
+package smarthome.execution;
+
+/**
+ * One device action inside a {@link StepPlan}.
+ * <p>
+ * A step may carry a compensating action that undoes it when a later required step fails,
+ * and may be marked optional: a failing optional step does not roll the plan back, it is just
+ * left pending so that a retry with the same idempotency key runs only what is missing.
+ * </p>
+ */
+public final class Step {
+    private final String name;
+    private final Runnable action;
+    private final Runnable compensation;
+    private final boolean optional;
+
+    private Step(String name, Runnable action, Runnable compensation, boolean optional) {
+        this.name = name;
+        this.action = action;
+        this.compensation = compensation;
+        this.optional = optional;
+    }
+
+    /**
+     * @param name   short, human-readable name used in results and logs
+     * @param action the device action; signals failure by throwing a {@link RuntimeException}
+     * @return a required step without compensation
+     */
+    public static Step of(String name, Runnable action) {
+        return new Step(name, action, null, false);
+    }
+
+    /** @return a copy of this step that runs {@code compensation} when the plan is rolled back */
+    public Step compensatedBy(Runnable compensation) {
+        return new Step(name, action, compensation, optional);
+    }
+
+    /** @return a copy of this step whose failure does not roll the plan back */
+    public Step optional() {
+        return new Step(name, action, compensation, true);
+    }
+
+    /** @return the step name */
+    public String getName() {
+        return name;
+    }
+
+    /** @return {@code true} if a failure of this step leaves the plan partially applied */
+    public boolean isOptional() {
+        return optional;
+    }
+
+    void run() {
+        action.run();
+    }
+
+    boolean compensate() {
+        if (compensation == null) {
+            return false;
+        }
+        compensation.run();
+        return true;
+    }
+}
@@ -0,0 +1,19 @@
+package smarthome.execution;
+
+import java.util.List;
+
+/**
+ * Ordered list of {@link Step}s that together implement one use case.
+ *
+ * @param name  use-case name, e.g. {@code "arrives home"}
+ * @param steps steps in execution order (at most 64)
+ */
+public record StepPlan(String name, List<Step> steps) {
+
+    public StepPlan {
+        if (steps.size() > Long.SIZE) {
+            throw new IllegalArgumentException("A plan supports at most 64 steps: " + name);
+        }
+        steps = List.copyOf(steps);
+    }
+}
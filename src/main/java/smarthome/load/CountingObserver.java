@@ -0,0 +1,29 @@
+package smarthome.load;
+
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.MessageObserver;
+
+/**
+ * {@link MessageObserver} that only counts messages instead of retaining them,
+ * so long soak runs do not grow the heap with device output.
+ */
+public class CountingObserver extends MessageObserver {
+    private long count;
+
+    /** Count the message and drop it. */
+    @Override
+    public void update(String message) {
+        count++;
+    }
+
+    /** Count the batch and drop it. */
+    @Override
+    public void updateBatch(DeviceEvent[] events, String[] messages, int count) {
+        this.count += count;
+    }
+
+    /** @return number of messages received so far */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,30 @@
+package smarthome.load;
+
+import smarthome.commands.EventCommandType;
+
+/**
+ * A single event produced by the {@link HouseholdLoadGenerator}.
+ *
+ * @param timeMillis simulated time of the event, in milliseconds since the start of the run
+ *                   (day 0, 00:00 is a Monday midnight)
+ * @param homeId     identifier of the home the event belongs to
+ * @param type       the event to dispatch to that home's controller
+ * @param eventId    id assigned by the event source, the same for every retry of the event,
+ *                   so that {@link smarthome.commands.EventCommandFactory} can deduplicate it;
+ *                   {@link #NO_ID} if unknown
+ */
+public record HouseholdEvent(long timeMillis, int homeId, EventCommandType type, long eventId) {
+
+    /** Event id of events whose source assigned none; such events are never deduplicated. */
+    public static final long NO_ID = -1;
+
+    /** An event without an id. */
+    public HouseholdEvent(long timeMillis, int homeId, EventCommandType type) {
+        this(timeMillis, homeId, type, NO_ID);
+    }
+
+    /** @return whether the event carries an id assigned by its source */
+    public boolean hasId() {
+        return eventId != NO_ID;
+    }
+}
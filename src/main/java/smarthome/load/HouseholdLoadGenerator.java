@@ -0,0 +1,177 @@
+package smarthome.load;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import smarthome.commands.EventCommandType;
+
+/**
+ * Seedable generator of realistic household event streams across many homes.
+ * <p>
+ * Every home follows a daily routine:
+ * </p>
+ * <ul>
+ *   <li><b>Working days:</b> a morning movement burst before leaving, then a commute back in the
+ *       evening that produces {@link EventCommandType#GOING_HOME} followed by
+ *       {@link EventCommandType#ARRIVES_HOME}, and Poisson-distributed
+ *       {@link EventCommandType#MOVEMENT} bursts until bedtime.</li>
+ *   <li><b>Weekends:</b> {@link EventCommandType#CHANGE_TO_HOLIDAY} on Saturday morning, movement
+ *       throughout the day and an occasional outing; {@link EventCommandType#CHANGE_TO_WORKING_DAY}
+ *       is issued early on Monday.</li>
+ * </ul>
+ * <p>
+ * Each home draws from its own {@link Random} derived from the seed and the home id, so the
+ * output for a given seed is identical regardless of the number of homes generated alongside it.
+ * </p>
+ */
+public class HouseholdLoadGenerator {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private final int homes;
+    private final int days;
+    private final long seed;
+    private double burstsPerEvening = 3.0;
+    private double burstsPerWeekendDay = 6.0;
+    private double movementsPerBurst = 4.0;
+
+    /**
+     * @param homes number of homes to generate events for (ids {@code 0..homes-1})
+     * @param days  number of simulated days, starting on a Monday
+     * @param seed  seed that makes the generated stream reproducible
+     */
+    public HouseholdLoadGenerator(int homes, int days, long seed) {
+        if (homes <= 0 || days <= 0) {
+            throw new IllegalArgumentException("homes and days must be positive");
+        }
+        this.homes = homes;
+        this.days = days;
+        this.seed = seed;
+    }
+
+    /** Mean number of movement bursts on a working-day evening (Poisson). */
+    public HouseholdLoadGenerator burstsPerEvening(double mean) {
+        this.burstsPerEvening = mean;
+        return this;
+    }
+
+    /** Mean number of movement bursts on a weekend day (Poisson). */
+    public HouseholdLoadGenerator burstsPerWeekendDay(double mean) {
+        this.burstsPerWeekendDay = mean;
+        return this;
+    }
+
+    /** Mean number of additional {@code MOVEMENT} events within a single burst (Poisson). */
+    public HouseholdLoadGenerator movementsPerBurst(double mean) {
+        this.movementsPerBurst = mean;
+        return this;
+    }
+
+    /**
+     * Generate the events of all homes, ordered by simulated time (ties broken by home id).
+     * Event ids are the positions in that order.
+     *
+     * @return a new mutable list of events
+     */
+    public List<HouseholdEvent> generate() {
+        List<HouseholdEvent> events = new ArrayList<>();
+        for (int homeId = 0; homeId < homes; homeId++) {
+            generateHome(homeId, events);
+        }
+        events.sort(Comparator.comparingLong(HouseholdEvent::timeMillis)
+                .thenComparingInt(HouseholdEvent::homeId));
+        for (int i = 0; i < events.size(); i++) {
+            HouseholdEvent event = events.get(i);
+            events.set(i, new HouseholdEvent(event.timeMillis(), event.homeId(), event.type(), i));
+        }
+        return events;
+    }
+
+    private void generateHome(int homeId, List<HouseholdEvent> out) {
+        Random random = new Random(seed * 0x9E3779B97F4A7C15L + homeId);
+        for (int day = 0; day < days; day++) {
+            long dayStart = day * DAY;
+            int dayOfWeek = day % 7;
+            if (dayOfWeek == 5 || dayOfWeek == 6) {
+                weekendDay(homeId, dayStart, dayOfWeek == 5, random, out);
+            } else {
+                workingDay(homeId, dayStart, dayOfWeek == 0 && day > 0, random, out);
+            }
+        }
+    }
+
+    private void workingDay(int homeId, long dayStart, boolean monday, Random random,
+                            List<HouseholdEvent> out) {
+        if (monday) {
+            long at = dayStart + around(6 * HOUR, 30 * MINUTE, random);
+            out.add(new HouseholdEvent(at, homeId, EventCommandType.CHANGE_TO_WORKING_DAY));
+        }
+        long wakeUp = dayStart + around(6 * HOUR + 30 * MINUTE, 20 * MINUTE, random);
+        long leave = wakeUp + around(HOUR, 15 * MINUTE, random);
+        burst(homeId, wakeUp, random, out);
+
+        long goingHome = dayStart + around(17 * HOUR, HOUR, random);
+        long arrives = goingHome + 20 * MINUTE + (long) (random.nextDouble() * 40 * MINUTE);
+        if (goingHome <= leave) {
+            return;
+        }
+        out.add(new HouseholdEvent(goingHome, homeId, EventCommandType.GOING_HOME));
+        out.add(new HouseholdEvent(arrives, homeId, EventCommandType.ARRIVES_HOME));
+        bursts(homeId, arrives, dayStart + 23 * HOUR, burstsPerEvening, random, out);
+    }
+
+    private void weekendDay(int homeId, long dayStart, boolean saturday, Random random,
+                            List<HouseholdEvent> out) {
+        long wakeUp = dayStart + around(8 * HOUR, 45 * MINUTE, random);
+        if (saturday) {
+            out.add(new HouseholdEvent(wakeUp, homeId, EventCommandType.CHANGE_TO_HOLIDAY));
+        }
+        bursts(homeId, wakeUp, dayStart + 23 * HOUR, burstsPerWeekendDay, random, out);
+        if (random.nextBoolean()) {
+            long goingHome = dayStart + around(16 * HOUR, 2 * HOUR, random);
+            long arrives = goingHome + 10 * MINUTE + (long) (random.nextDouble() * 30 * MINUTE);
+            out.add(new HouseholdEvent(goingHome, homeId, EventCommandType.GOING_HOME));
+            out.add(new HouseholdEvent(arrives, homeId, EventCommandType.ARRIVES_HOME));
+        }
+    }
+
+    private void bursts(int homeId, long from, long to, double mean, Random random,
+                        List<HouseholdEvent> out) {
+        if (to <= from) {
+            return;
+        }
+        int count = poisson(mean, random);
+        for (int i = 0; i < count; i++) {
+            burst(homeId, from + (long) (random.nextDouble() * (to - from)), random, out);
+        }
+    }
+
+    private void burst(int homeId, long start, Random random, List<HouseholdEvent> out) {
+        int movements = 1 + poisson(movementsPerBurst, random);
+        long at = start;
+        for (int i = 0; i < movements; i++) {
+            out.add(new HouseholdEvent(at, homeId, EventCommandType.MOVEMENT));
+            // exponential inter-arrival time with a 30 s mean
+            at += (long) (-Math.log(1.0 - random.nextDouble()) * 30_000);
+        }
+    }
+
+    private static long around(long mean, long stdDev, Random random) {
+        return Math.max(0, mean + (long) (random.nextGaussian() * stdDev));
+    }
+
+    /** Knuth's method; fine for the small means used here. */
+    private static int poisson(double mean, Random random) {
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int k = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            k++;
+        }
+        return k;
+    }
+}
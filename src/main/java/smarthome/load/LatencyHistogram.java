@@ -0,0 +1,95 @@
+package smarthome.load;
+
+/**
+ * Fixed-size, log-linear latency histogram.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} are counted exactly. Larger values are bucketed by their
+ * power of two, and each power of two is split into {@code SUB_BUCKETS / 2} = 64 linear
+ * sub-buckets, which keeps the relative error below 1/64 (about 1.6%) while using a constant
+ * amount of memory regardless of how many samples are recorded. Not thread-safe.
+ * </p>
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * Record one sample.
+     *
+     * @param value a non-negative value, typically nanoseconds; negative values count as {@code 0}
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts[index(v)]++;
+        count++;
+        sum += v;
+        max = Math.max(max, v);
+    }
+
+    /** Add all samples of {@code other} to this histogram. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @param percentile value in {@code [0, 100]}
+     * @return an upper bound of the sample at the given percentile, or {@code 0} if empty
+     */
+    public long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, upperBound(i));
+            }
+        }
+        return max;
+    }
+
+    /** @return number of recorded samples */
+    public long count() {
+        return count;
+    }
+
+    /** @return arithmetic mean of all samples, or {@code 0} if empty */
+    public double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /** @return largest recorded sample */
+    public long max() {
+        return max;
+    }
+
+    private static int index(long v) {
+        if (v < SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (v >>> exponent) - SUB_BUCKETS / 2;
+        return exponent * (SUB_BUCKETS / 2) + SUB_BUCKETS / 2 + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS / 2) / (SUB_BUCKETS / 2);
+        int subBucket = (index - SUB_BUCKETS / 2) % (SUB_BUCKETS / 2);
+        return ((long) (subBucket + SUB_BUCKETS / 2 + 1) << exponent) - 1;
+    }
+}
@@ -0,0 +1,54 @@
+package smarthome.load;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a single {@link LoadRunner} run.
+ *
+ * @param events           number of events executed
+ * @param elapsedNanos     wall-clock duration of the run
+ * @param latency          per-event latency, measured from the intended send time to completion
+ * @param heapUsedBefore   used heap in bytes before the run
+ * @param heapUsedAfter    used heap in bytes after the run
+ * @param gcCount          number of collections during the run (all collectors)
+ * @param gcTimeMillis     accumulated collection time during the run (all collectors)
+ */
+public record LoadReport(long events,
+                         long elapsedNanos,
+                         LatencyHistogram latency,
+                         long heapUsedBefore,
+                         long heapUsedAfter,
+                         long gcCount,
+                         long gcTimeMillis) {
+
+    /** @return achieved throughput in events per second */
+    public double throughput() {
+        return elapsedNanos == 0 ? 0 : events * 1e9 / elapsedNanos;
+    }
+
+    /** Multi-line, human-readable summary. */
+    @Override
+    public String toString() {
+        return String.format(
+                "events:      %,d%n"
+                        + "elapsed:     %,d ms%n"
+                        + "throughput:  %,.0f events/s%n"
+                        + "latency:     mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, "
+                        + "p99.9 %.1f us, max %.1f us%n"
+                        + "heap:        %,d KiB -> %,d KiB%n"
+                        + "gc:          %d collections, %d ms",
+                events,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                throughput(),
+                latency.mean() / 1e3,
+                latency.percentile(50) / 1e3,
+                latency.percentile(90) / 1e3,
+                latency.percentile(99) / 1e3,
+                latency.percentile(99.9) / 1e3,
+                latency.max() / 1e3,
+                heapUsedBefore / 1024,
+                heapUsedAfter / 1024,
+                gcCount,
+                gcTimeMillis);
+    }
+}
@@ -0,0 +1,126 @@
+package smarthome.load;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import smarthome.cache.DeviceStateCache;
+import smarthome.commands.EventCommandFactory;
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeControllerBuilder;
+
+/**
+ * Drives a fleet of {@link HomeController}s with a pre-generated event stream.
+ * <p>
+ * Events are replayed in order on the calling thread. With a positive rate the runner is
+ * open-loop: event {@code i} is due at {@code start + i / rate}, and its latency is measured
+ * from that due time rather than from when it was actually sent, so a stalled controller shows
+ * up in the percentiles instead of silently lowering the offered load.
+ * </p>
+ * <p>
+ * Controller console output ("nothing to do" lines) is discarded while a run is in progress.
+ * </p>
+ */
+public class LoadRunner {
+    private static final long SPIN_NANOS = 100_000;
+
+    private final EventCommandFactory[] factories;
+    private final CountingObserver observer = new CountingObserver();
+
+    /**
+     * Build one default-wired controller per home.
+     *
+     * @param homes number of homes; events must use ids {@code 0..homes-1}
+     */
+    public LoadRunner(int homes) {
+        this(homes, null);
+    }
+
+    /**
+     * Build one default-wired controller per home, optionally sharing a device state cache.
+     *
+     * @param homes      number of homes; events must use ids {@code 0..homes-1}
+     * @param stateCache cache for the controllers' device state reads, or {@code null}
+     */
+    public LoadRunner(int homes, DeviceStateCache stateCache) {
+        factories = new EventCommandFactory[homes];
+        for (int homeId = 0; homeId < homes; homeId++) {
+            HomeController controller = new HomeControllerBuilder(observer)
+                    .homeId(homeId)
+                    .stateCache(stateCache)
+                    .build();
+            factories[homeId] = new EventCommandFactory(controller);
+        }
+    }
+
+    /**
+     * Replay {@code events}.
+     *
+     * @param events          events to execute, in order
+     * @param eventsPerSecond target rate; {@code 0} or less runs as fast as possible
+     * @return throughput, latency and memory statistics of the run
+     */
+    public LoadReport run(List<HouseholdEvent> events, double eventsPerSecond) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        LatencyHistogram latency = new LatencyHistogram();
+        double intervalNanos = eventsPerSecond > 0 ? 1e9 / eventsPerSecond : 0;
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                HouseholdEvent event = events.get(i);
+                long due = start + (long) (i * intervalNanos);
+                long now;
+                while ((now = System.nanoTime()) < due) {
+                    // park for the bulk of the wait and spin the rest; parking alone overshoots
+                    if (due - now > SPIN_NANOS) {
+                        LockSupport.parkNanos(due - now - SPIN_NANOS);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+                long sent = intervalNanos > 0 ? due : now;
+                factories[event.homeId()].createEventCommand(event.type(), event.eventId())
+                        .execute();
+                latency.record(System.nanoTime() - sent);
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        return new LoadReport(events.size(), elapsed, latency,
+                heapBefore, memory.getHeapMemoryUsage().getUsed(),
+                gcCount() - gcCountBefore, gcTime() - gcTimeBefore);
+    }
+
+    /** @return number of device messages observed across all runs */
+    public long messagesObserved() {
+        return observer.getCount();
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,46 @@
+package smarthome.load;
+
+import java.time.Duration;
+import java.util.List;
+
+import smarthome.cache.DeviceStateCache;
+
+/**
+ * Command-line entry point for soak and capacity runs.
+ * <p>
+ * Arguments (all optional, positional):
+ * {@code homes days eventsPerSecond seed cacheTtlMillis}, defaulting to {@code 1000 7 0 42 0}.
+ * A rate of {@code 0} replays the stream as fast as possible; a positive cache TTL routes the
+ * controllers' device state reads through a shared {@link DeviceStateCache}.
+ * </p>
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass="smarthome.load.LoadTest" -Dexec.args="10000 7 50000 42"
+ * </pre>
+ */
+public class LoadTest {
+
+    public static void main(String[] args) {
+        int homes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        double rate = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        long cacheTtlMillis = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        List<HouseholdEvent> events = new HouseholdLoadGenerator(homes, days, seed).generate();
+        System.out.printf("generated %,d events for %,d homes over %d days (seed %d)%n",
+                events.size(), homes, days, seed);
+
+        DeviceStateCache cache = cacheTtlMillis > 0
+                ? new DeviceStateCache(Duration.ofMillis(cacheTtlMillis), homes * 4) : null;
+        LoadRunner runner = new LoadRunner(homes, cache);
+        LoadReport report = runner.run(events, rate);
+        System.out.println(report);
+        System.out.printf("messages:    %,d%n", runner.messagesObserved());
+        if (cache != null) {
+            System.out.printf("state cache: hit ratio %.1f%%, %,d round trips saved, %,d device reads, "
+                            + "%,d invalidations, %,d expirations, %,d evictions%n",
+                    cache.getHitRatio() * 100, cache.getHits(), cache.getMisses(),
+                    cache.getInvalidations(), cache.getExpirations(), cache.getEvictions());
+        }
+    }
+}
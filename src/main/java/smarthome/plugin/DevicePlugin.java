@@ -0,0 +1,46 @@
+package smarthome.plugin;
+
+import java.util.List;
+
+import smarthome.domain.observer.Observer;
+
+/**
+ * Service provider interface for device types that are not built into the
+ * {@link smarthome.controller.HomeController}, e.g. a thermostat, blinds or a lock.
+ * <p>
+ * Implementations are discovered with {@link java.util.ServiceLoader} (list them in
+ * {@code META-INF/services/smarthome.plugin.DevicePlugin}) and declare their device through
+ * annotations on {@link #deviceClass()}:
+ * </p>
+ * <ul>
+ *   <li>{@link OnEvent} on public no-argument methods: the actions, and the events that trigger
+ *       them (built-in {@link smarthome.commands.EventCommandType} names or plugin events),</li>
+ *   <li>{@link DeviceState} on public no-argument getters: the observable states.</li>
+ * </ul>
+ * <p>
+ * The annotations are read once, when the {@link PluginRegistry} is created; events are then
+ * dispatched through pre-bound method handles without reflection.
+ * </p>
+ */
+public interface DevicePlugin {
+
+    /** @return unique name of the device type, e.g. {@code "thermostat"} */
+    String name();
+
+    /** @return class of the devices created by {@link #createDevice(int, Observer)} */
+    Class<?> deviceClass();
+
+    /**
+     * Create the device of one home. Called on the first event dispatched to that home.
+     *
+     * @param homeId   the home the device belongs to
+     * @param observer sink for the device's user-facing messages
+     * @return an instance of {@link #deviceClass()}
+     */
+    Object createDevice(int homeId, Observer observer);
+
+    /** @return names of the messages the device emits, for documentation and UIs */
+    default List<String> emittedEvents() {
+        return List.of();
+    }
+}
@@ -0,0 +1,18 @@
+package smarthome.plugin;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public no-argument getter of a plugin device as a named device state, readable
+ * through {@link PluginDevices#state(String, String)}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface DeviceState {
+
+    /** @return the state name */
+    String value();
+}
@@ -0,0 +1,19 @@
+package smarthome.plugin;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public no-argument method of a plugin device as the action for the named events.
+ * Names of {@link smarthome.commands.EventCommandType} constants hook into the built-in use
+ * cases; any other name declares a plugin event.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OnEvent {
+
+    /** @return the events that trigger the action */
+    String[] value();
+}
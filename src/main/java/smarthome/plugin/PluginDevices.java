@@ -0,0 +1,89 @@
+package smarthome.plugin;
+
+import java.lang.invoke.MethodHandle;
+
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.Observer;
+
+/**
+ * The plugin devices of one home.
+ * <p>
+ * A device is created by its {@link DevicePlugin} on the first event dispatched to it, so homes
+ * that never use a plugin do not pay for it. Like the built-in devices, not thread-safe: a
+ * home's events are expected to be processed one at a time.
+ * </p>
+ */
+public class PluginDevices {
+    private final PluginRegistry registry;
+    private final int homeId;
+    private final Observer observer;
+    private final Object[] devices;
+
+    PluginDevices(PluginRegistry registry, int homeId, Observer observer) {
+        this.registry = registry;
+        this.homeId = homeId;
+        this.observer = observer;
+        this.devices = new Object[registry.pluginCount()];
+    }
+
+    /** @return the registry the devices were bound with */
+    public PluginRegistry getRegistry() {
+        return registry;
+    }
+
+    /** Run the plugin actions bound to a built-in event. */
+    public void dispatch(EventCommandType type) {
+        dispatch(type.ordinal());
+    }
+
+    /**
+     * Run the plugin actions bound to an event.
+     *
+     * @param eventId id from {@link PluginRegistry#eventId(String)}
+     * @return {@code true} if at least one action ran
+     */
+    public boolean dispatch(int eventId) {
+        int[] plugins = registry.pluginsFor(eventId);
+        MethodHandle[] actions = registry.actionsFor(eventId);
+        for (int i = 0; i < plugins.length; i++) {
+            Object device = device(plugins[i]);
+            try {
+                actions[i].invokeExact(device);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Device plugin action failed", e);
+            }
+        }
+        return plugins.length > 0;
+    }
+
+    /**
+     * Read a {@link DeviceState} of a plugin device, creating the device if needed.
+     *
+     * @param plugin the {@link DevicePlugin#name()}
+     * @param state  the state name
+     * @return the current value
+     */
+    public Object state(String plugin, String state) {
+        int index = registry.pluginIndex(plugin);
+        MethodHandle getter = registry.state(index, state);
+        Object device = device(index);
+        try {
+            return (Object) getter.invokeExact(device);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Device plugin state read failed", e);
+        }
+    }
+
+    private Object device(int plugin) {
+        Object device = devices[plugin];
+        if (device == null) {
+            device = registry.plugin(plugin).createDevice(homeId, observer);
+            devices[plugin] = device;
+        }
+        return device;
+    }
+}
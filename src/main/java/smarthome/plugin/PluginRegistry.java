@@ -0,0 +1,169 @@
+package smarthome.plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.Observer;
+
+/**
+ * The catalog of {@link DevicePlugin}s, with their dispatch bound once at load time.
+ * <p>
+ * Every event name gets an id: the built-in {@link EventCommandType}s keep their ordinal, plugin
+ * events are numbered after them. For every id the registry holds the plugins and the
+ * {@link MethodHandle}s of their {@link OnEvent} actions, adapted to {@code (Object)void} so
+ * that dispatching is an array walk and an {@code invokeExact} per action. Immutable and
+ * thread-safe; create one per node and share it between homes.
+ * </p>
+ */
+public class PluginRegistry {
+    private static final MethodType ACTION = MethodType.methodType(void.class, Object.class);
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    private final DevicePlugin[] plugins;
+    private final Map<String, Integer> pluginIndex = new HashMap<>();
+    private final Map<String, Integer> eventIds = new LinkedHashMap<>();
+    private final int[][] pluginsByEvent;
+    private final MethodHandle[][] actionsByEvent;
+    private final List<Map<String, MethodHandle>> states = new ArrayList<>();
+
+    private PluginRegistry(List<DevicePlugin> plugins) {
+        this.plugins = plugins.toArray(new DevicePlugin[0]);
+        for (EventCommandType type : EventCommandType.values()) {
+            eventIds.put(type.name(), type.ordinal());
+        }
+        List<List<Integer>> pluginLists = new ArrayList<>();
+        List<List<MethodHandle>> actionLists = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (int p = 0; p < this.plugins.length; p++) {
+            DevicePlugin plugin = this.plugins[p];
+            if (pluginIndex.putIfAbsent(plugin.name(), p) != null) {
+                throw new IllegalArgumentException("Duplicate device plugin: " + plugin.name());
+            }
+            Map<String, MethodHandle> pluginStates = new HashMap<>();
+            for (Method method : plugin.deviceClass().getMethods()) {
+                OnEvent onEvent = method.getAnnotation(OnEvent.class);
+                if (onEvent != null) {
+                    MethodHandle action = bind(lookup, plugin, method).asType(ACTION);
+                    for (String event : onEvent.value()) {
+                        int id = eventIds.computeIfAbsent(event, name -> eventIds.size());
+                        while (pluginLists.size() <= id) {
+                            pluginLists.add(new ArrayList<>());
+                            actionLists.add(new ArrayList<>());
+                        }
+                        pluginLists.get(id).add(p);
+                        actionLists.get(id).add(action);
+                    }
+                }
+                DeviceState state = method.getAnnotation(DeviceState.class);
+                if (state != null) {
+                    pluginStates.put(state.value(), bind(lookup, plugin, method).asType(GETTER));
+                }
+            }
+            states.add(pluginStates);
+        }
+        this.pluginsByEvent = new int[eventIds.size()][];
+        this.actionsByEvent = new MethodHandle[eventIds.size()][];
+        for (int id = 0; id < eventIds.size(); id++) {
+            boolean bound = id < pluginLists.size();
+            pluginsByEvent[id] = bound
+                    ? pluginLists.get(id).stream().mapToInt(Integer::intValue).toArray() : new int[0];
+            actionsByEvent[id] = bound
+                    ? actionLists.get(id).toArray(new MethodHandle[0]) : new MethodHandle[0];
+        }
+    }
+
+    /** @return a registry of the plugins found on the class path by {@link ServiceLoader} */
+    public static PluginRegistry load() {
+        List<DevicePlugin> plugins = new ArrayList<>();
+        ServiceLoader.load(DevicePlugin.class).forEach(plugins::add);
+        return new PluginRegistry(plugins);
+    }
+
+    /** @return a registry of exactly the given plugins */
+    public static PluginRegistry of(DevicePlugin... plugins) {
+        return new PluginRegistry(Arrays.asList(plugins));
+    }
+
+    /** @return the loaded plugins, in discovery order */
+    public List<DevicePlugin> getPlugins() {
+        return List.of(plugins);
+    }
+
+    /** @return all event names, built-in ones first; an unmodifiable view */
+    public Set<String> getEvents() {
+        return Collections.unmodifiableSet(eventIds.keySet());
+    }
+
+    /** @return id of {@code event} for {@link PluginDevices#dispatch(int)}, or {@code -1} if unknown */
+    public int eventId(String event) {
+        Integer id = eventIds.get(event);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param homeId   the home the devices belong to
+     * @param observer sink for the devices' messages
+     * @return the (lazily created) plugin devices of one home
+     */
+    public PluginDevices devicesFor(int homeId, Observer observer) {
+        return new PluginDevices(this, homeId, observer);
+    }
+
+    DevicePlugin plugin(int index) {
+        return plugins[index];
+    }
+
+    int pluginCount() {
+        return plugins.length;
+    }
+
+    int pluginIndex(String name) {
+        Integer index = pluginIndex.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown device plugin: " + name);
+        }
+        return index;
+    }
+
+    int[] pluginsFor(int eventId) {
+        return pluginsByEvent[eventId];
+    }
+
+    MethodHandle[] actionsFor(int eventId) {
+        return actionsByEvent[eventId];
+    }
+
+    MethodHandle state(int plugin, String name) {
+        MethodHandle getter = states.get(plugin).get(name);
+        if (getter == null) {
+            throw new IllegalArgumentException("Unknown state " + name + " of " + plugins[plugin].name());
+        }
+        return getter;
+    }
+
+    private static MethodHandle bind(MethodHandles.Lookup lookup, DevicePlugin plugin, Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0) {
+            throw new IllegalArgumentException(plugin.name() + ": " + method.getName()
+                    + " must be an instance method without parameters");
+        }
+        try {
+            return lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(plugin.name() + ": " + method.getName()
+                    + " is not accessible", e);
+        }
+    }
+}
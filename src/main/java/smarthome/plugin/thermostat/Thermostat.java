@@ -0,0 +1,75 @@
+package smarthome.plugin.thermostat;
+
+import smarthome.domain.observer.Observer;
+import smarthome.plugin.DeviceState;
+import smarthome.plugin.OnEvent;
+
+/**
+ * Sample plugin device: a thermostat that follows the household's routine.
+ * <p>
+ * Observers receive messages like:<br>
+ * <code>[Thermostat] set to 21C</code>
+ * </p>
+ */
+public class Thermostat {
+    static final int ECO_CELSIUS = 16;
+    static final int COMFORT_CELSIUS = 21;
+    static final int BOOST_CELSIUS = 24;
+
+    private final Observer observer;
+    private int targetCelsius = ECO_CELSIUS;
+    private boolean holiday;
+
+    /**
+     * @param observer sink for user-facing messages
+     */
+    public Thermostat(Observer observer) {
+        this.observer = observer;
+    }
+
+    /** Heat to comfort temperature when somebody is on the way home, unless on holiday. */
+    @OnEvent("GOING_HOME")
+    public void comfort() {
+        if (!holiday) {
+            setTarget(COMFORT_CELSIUS);
+        }
+    }
+
+    /** Keep the home at eco temperature during holidays. */
+    @OnEvent("CHANGE_TO_HOLIDAY")
+    public void holiday() {
+        holiday = true;
+        setTarget(ECO_CELSIUS);
+    }
+
+    /** Back to the working-day routine. */
+    @OnEvent("CHANGE_TO_WORKING_DAY")
+    public void workingDay() {
+        holiday = false;
+    }
+
+    /** Plugin event: heat up quickly, e.g. from the mobile app. */
+    @OnEvent("THERMOSTAT_BOOST")
+    public void boost() {
+        setTarget(BOOST_CELSIUS);
+    }
+
+    /** @return the temperature the thermostat heats to */
+    @DeviceState("targetCelsius")
+    public int getTargetCelsius() {
+        return targetCelsius;
+    }
+
+    /** @return whether the holiday profile is active */
+    @DeviceState("holiday")
+    public boolean isHoliday() {
+        return holiday;
+    }
+
+    private void setTarget(int celsius) {
+        if (celsius != targetCelsius) {
+            targetCelsius = celsius;
+            observer.update("[Thermostat] set to " + celsius + "C");
+        }
+    }
+}
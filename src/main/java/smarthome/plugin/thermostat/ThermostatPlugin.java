@@ -0,0 +1,33 @@
+package smarthome.plugin.thermostat;
+
+import java.util.List;
+
+import smarthome.domain.observer.Observer;
+import smarthome.plugin.DevicePlugin;
+
+/**
+ * Registers the {@link Thermostat} through the device plugin SPI
+ * (see {@code META-INF/services/smarthome.plugin.DevicePlugin}).
+ */
+public class ThermostatPlugin implements DevicePlugin {
+
+    @Override
+    public String name() {
+        return "thermostat";
+    }
+
+    @Override
+    public Class<?> deviceClass() {
+        return Thermostat.class;
+    }
+
+    @Override
+    public Object createDevice(int homeId, Observer observer) {
+        return new Thermostat(observer);
+    }
+
+    @Override
+    public List<String> emittedEvents() {
+        return List.of("[Thermostat] set to <celsius>C");
+    }
+}
@@ -0,0 +1,55 @@
+package smarthome.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import smarthome.domain.observer.DeviceType;
+
+/**
+ * JFR event spanning one device action requested by the controller, including a legacy
+ * heating call behind the adapter and the device's notification fan-out.
+ */
+@Name(DeviceActionEvent.NAME)
+@Label("Device Action")
+@Description("One action of one device, e.g. turning the heating on")
+@Category({"Smart Home", "Devices"})
+@StackTrace(false)
+@Threshold("5 ms")
+public class DeviceActionEvent extends Event {
+    /** Event type name in recordings. */
+    public static final String NAME = "smarthome.DeviceAction";
+
+    @Label("Home Id")
+    public int homeId;
+
+    @Label("Event Type")
+    public String eventType;
+
+    @Label("Device")
+    public String device;
+
+    @Label("Action")
+    public String action;
+
+    /**
+     * Start timing an action; {@link #commit()} the result when it completes.
+     *
+     * @return the started event, or an inert one if the event is not being recorded
+     */
+    public static DeviceActionEvent begin(int homeId, String eventType, DeviceType device, String action) {
+        DeviceActionEvent event = new DeviceActionEvent();
+        if (event.isEnabled()) {
+            event.homeId = homeId;
+            event.eventType = eventType;
+            event.device = device.name();
+            event.action = action;
+            event.begin();
+        }
+        return event;
+    }
+}
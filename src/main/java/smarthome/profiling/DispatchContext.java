@@ -0,0 +1,50 @@
+package smarthome.profiling;
+
+/**
+ * Home and event type of the dispatch running on the current thread, for events raised where
+ * they are not known, such as observer deliveries inside {@code Observable}.
+ * <p>
+ * Only maintained while {@link DispatchEvent} is being recorded, so it costs nothing otherwise.
+ * Dispatches do not nest.
+ * </p>
+ */
+public final class DispatchContext {
+    private static final ThreadLocal<DispatchContext> CURRENT = ThreadLocal.withInitial(DispatchContext::new);
+
+    private int homeId = -1;
+    private String eventType;
+
+    private DispatchContext() {
+    }
+
+    /** Enter a dispatch on the current thread. */
+    public static void enter(int homeId, String eventType) {
+        DispatchContext context = CURRENT.get();
+        context.homeId = homeId;
+        context.eventType = eventType;
+    }
+
+    /** Leave the current thread's dispatch. */
+    public static void exit() {
+        DispatchContext context = CURRENT.get();
+        context.homeId = -1;
+        context.eventType = null;
+    }
+
+    /** @return home id of the current thread's dispatch, {@code -1} outside one */
+    public static int homeId() {
+        return CURRENT.get().homeId;
+    }
+
+    /** @return event type of the current thread's dispatch, {@code null} outside one */
+    public static String eventType() {
+        return CURRENT.get().eventType;
+    }
+
+    /** Fill home id and event type of {@code delivery} from the current dispatch. */
+    public static void describe(ObserverDeliveryEvent delivery) {
+        DispatchContext context = CURRENT.get();
+        delivery.homeId = context.homeId;
+        delivery.eventType = context.eventType;
+    }
+}
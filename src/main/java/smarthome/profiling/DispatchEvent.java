@@ -0,0 +1,31 @@
+package smarthome.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning the execution of one event command, from the controller's decisions to
+ * the last observer delivery. Its self time (without nested {@link DeviceActionEvent}s and
+ * {@link ObserverDeliveryEvent}s) is the controller's own work.
+ */
+@Name(DispatchEvent.NAME)
+@Label("Event Dispatch")
+@Description("Execution of one event command for one home")
+@Category({"Smart Home", "Controller"})
+@StackTrace(false)
+@Threshold("5 ms")
+public class DispatchEvent extends Event {
+    /** Event type name in recordings. */
+    public static final String NAME = "smarthome.Dispatch";
+
+    @Label("Home Id")
+    public int homeId;
+
+    @Label("Event Type")
+    public String eventType;
+}
@@ -0,0 +1,81 @@
+package smarthome.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event spanning the delivery of one notification, or one batch of notifications, to one
+ * observer. Home id and event type are those of the dispatch that raised the notifications,
+ * {@code -1} and {@code null} outside one. A batch can span several dispatches: its home id is
+ * {@code -1} unless all notifications come from one home, and its event types and device
+ * events are listed comma-separated, each once, in order of appearance.
+ */
+@Name(ObserverDeliveryEvent.NAME)
+@Label("Observer Delivery")
+@Description("Delivery of device notifications to one observer")
+@Category({"Smart Home", "Observers"})
+@StackTrace(false)
+@Threshold("5 ms")
+public class ObserverDeliveryEvent extends Event {
+    /** Event type name in recordings. */
+    public static final String NAME = "smarthome.ObserverDelivery";
+
+    @Label("Home Id")
+    public int homeId;
+
+    @Label("Event Type")
+    public String eventType;
+
+    @Label("Device Event")
+    public String deviceEvent;
+
+    @Label("Observer")
+    public Class<?> observer;
+
+    @Label("Notifications")
+    public int notifications;
+
+    /**
+     * End the delivery started with {@link #begin()} and commit it if it is recorded and
+     * exceeds the threshold; describing the delivery is skipped otherwise.
+     *
+     * @param deviceEvent   name of the (first) device event delivered
+     * @param observer      the observer that was called
+     * @param notifications number of notifications delivered
+     */
+    public void complete(String deviceEvent, Object observer, int notifications) {
+        end();
+        if (shouldCommit()) {
+            DispatchContext.describe(this);
+            this.deviceEvent = deviceEvent;
+            this.observer = observer.getClass();
+            this.notifications = notifications;
+            commit();
+        }
+    }
+
+    /**
+     * Commit a batch delivery that was {@link #end() ended} and {@link #shouldCommit() passed}
+     * the threshold, with labels the caller collected from the batch's notifications.
+     *
+     * @param homeId        home of all notifications, or {@code -1}
+     * @param eventType     event types of the dispatches that raised the notifications
+     * @param deviceEvent   names of the device events delivered
+     * @param observer      the observer that was called
+     * @param notifications number of notifications delivered
+     */
+    public void commitBatch(int homeId, String eventType, String deviceEvent, Object observer,
+                            int notifications) {
+        this.homeId = homeId;
+        this.eventType = eventType;
+        this.deviceEvent = deviceEvent;
+        this.observer = observer.getClass();
+        this.notifications = notifications;
+        commit();
+    }
+}
@@ -0,0 +1,191 @@
+package smarthome.profiling;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedClass;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import smarthome.load.LatencyHistogram;
+
+/**
+ * Per-stage latency breakdown of a JFR recording made with the smart-home events enabled.
+ * <p>
+ * Events of one thread are nested by time: observer deliveries inside device actions inside
+ * dispatches. Each event's self time is its duration minus that of the events directly nested
+ * in it, so a dispatch's self time is the controller's own decision work and a device action's
+ * self time is the device itself (for heating, the legacy call). Percentiles are printed per
+ * stage, then per event type, device action and observer class, followed by each stage's share
+ * of the total time. With thresholds (as in the always-on profile) only slow events are
+ * recorded, so self times of their parents are overstated.
+ * </p>
+ * <p>
+ * Arguments: {@code recording.jfr}.
+ * </p>
+ */
+public class ProfileAnalyzer {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: ProfileAnalyzer <recording.jfr>");
+            System.exit(2);
+        }
+        Map<Long, List<Span>> byThread = new HashMap<>();
+        try (RecordingFile recording = new RecordingFile(Path.of(args[0]))) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                Span span = Span.of(event);
+                if (span != null && event.getThread() != null) {
+                    byThread.computeIfAbsent(event.getThread().getId(), id -> new ArrayList<>()).add(span);
+                }
+            }
+        }
+
+        Map<Stage, Stats> stages = new EnumMap<>(Stage.class);
+        Map<Stage, Map<String, Stats>> details = new EnumMap<>(Stage.class);
+        for (List<Span> spans : byThread.values()) {
+            nest(spans);
+            for (Span span : spans) {
+                stages.computeIfAbsent(span.stage, stage -> new Stats(stage.label)).add(span);
+                details.computeIfAbsent(span.stage, stage -> new TreeMap<>())
+                        .computeIfAbsent(span.detail, detail -> new Stats(span.stage.label + " " + detail))
+                        .add(span);
+            }
+        }
+        if (stages.isEmpty()) {
+            System.out.println("no smart-home events in " + args[0]);
+            return;
+        }
+
+        System.out.printf("%-56s %10s %9s %9s %9s %9s %9s%n",
+                "stage (duration / self, us)", "count", "p50", "p90", "p99", "p99.9", "max");
+        for (Stats stats : stages.values()) {
+            stats.print();
+        }
+        System.out.println();
+        for (Map<String, Stats> stageDetails : details.values()) {
+            for (Stats stats : stageDetails.values()) {
+                stats.print();
+            }
+        }
+        System.out.println();
+        long total = 0;
+        for (Stats stats : stages.values()) {
+            total += stats.selfNanos;
+        }
+        for (Stats stats : stages.values()) {
+            System.out.printf("%-20s %6.1f%% of recorded time (%,d ms self)%n", stats.name,
+                    100.0 * stats.selfNanos / Math.max(1, total), stats.selfNanos / 1_000_000);
+        }
+    }
+
+    /** Subtract from each span the durations of the spans directly nested in it. */
+    private static void nest(List<Span> spans) {
+        spans.sort(Comparator.comparingLong((Span span) -> span.start).thenComparingLong(span -> -span.end));
+        Deque<Span> open = new ArrayDeque<>();
+        for (Span span : spans) {
+            while (!open.isEmpty() && open.peek().end <= span.start) {
+                open.pop();
+            }
+            if (!open.isEmpty() && span.end <= open.peek().end) {
+                open.peek().childNanos += span.end - span.start;
+            }
+            open.push(span);
+        }
+    }
+
+    private static long nanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private enum Stage {
+        DISPATCH("dispatch"),
+        DEVICE_ACTION("device action"),
+        OBSERVER_DELIVERY("observer delivery");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final class Span {
+        final Stage stage;
+        final String detail;
+        final long start;
+        final long end;
+        long childNanos;
+
+        private Span(Stage stage, String detail, RecordedEvent event) {
+            this.stage = stage;
+            this.detail = detail;
+            this.start = nanos(event.getStartTime());
+            this.end = nanos(event.getEndTime());
+        }
+
+        /** @return the span of a smart-home event, or {@code null} for any other event */
+        static Span of(RecordedEvent event) {
+            switch (event.getEventType().getName()) {
+                case DispatchEvent.NAME:
+                    return new Span(Stage.DISPATCH, event.getString("eventType"), event);
+                case DeviceActionEvent.NAME:
+                    return new Span(Stage.DEVICE_ACTION,
+                            event.getString("device") + " " + event.getString("action"), event);
+                case ObserverDeliveryEvent.NAME:
+                    RecordedClass observer = event.getClass("observer");
+                    return new Span(Stage.OBSERVER_DELIVERY,
+                            observer == null ? "?" : observer.getName(), event);
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class Stats {
+        final String name;
+        final LatencyHistogram durations = new LatencyHistogram();
+        final LatencyHistogram selfTimes = new LatencyHistogram();
+        long selfNanos;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void add(Span span) {
+            long self = span.end - span.start - span.childNanos;
+            durations.record(span.end - span.start);
+            selfTimes.record(self);
+            selfNanos += self;
+        }
+
+        void print() {
+            print(name, durations);
+            if (selfNanos != durationNanos()) {
+                print("  self", selfTimes);
+            }
+        }
+
+        private long durationNanos() {
+            return Math.round(durations.mean() * durations.count());
+        }
+
+        private static void print(String label, LatencyHistogram histogram) {
+            System.out.printf("%-56s %,10d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    label.length() > 56 ? label.substring(0, 56) : label, histogram.count(),
+                    histogram.percentile(50) / 1e3, histogram.percentile(90) / 1e3,
+                    histogram.percentile(99) / 1e3, histogram.percentile(99.9) / 1e3, histogram.max() / 1e3);
+        }
+    }
+}
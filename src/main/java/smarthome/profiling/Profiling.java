@@ -0,0 +1,69 @@
+package smarthome.profiling;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Whether a JFR recording is running, so the application's JFR events are only touched then.
+ * <p>
+ * Loading and initializing the first {@link jdk.jfr.Event} class starts much of the JFR
+ * machinery and takes hundreds of milliseconds, even with no recording. Callers therefore check
+ * {@link #isActive()} before creating a {@link DispatchEvent}, {@link DeviceActionEvent} or
+ * {@link ObserverDeliveryEvent}. The flag is kept up to date by a {@link FlightRecorderListener},
+ * registered from a background thread on first use, so recordings started later (for example
+ * with {@code jcmd JFR.start}) are picked up as well. Events raised in the few milliseconds
+ * before the listener is registered are not recorded.
+ * </p>
+ */
+public final class Profiling {
+    private static volatile boolean active;
+
+    static {
+        Thread registration = new Thread(RecordingListener::register, "jfr-listener");
+        registration.setDaemon(true);
+        registration.start();
+    }
+
+    private Profiling() {
+    }
+
+    /** @return {@code true} while at least one JFR recording is running */
+    public static boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Tracks the running recordings. A separate class so that {@code Profiling} itself can be
+     * loaded and verified without loading {@code jdk.jfr} classes.
+     */
+    private static final class RecordingListener implements FlightRecorderListener {
+
+        static void register() {
+            // calls recorderInitialized at once if the recorder is already up
+            FlightRecorder.addListener(new RecordingListener());
+        }
+
+        @Override
+        public void recorderInitialized(FlightRecorder recorder) {
+            update(recorder);
+        }
+
+        @Override
+        public void recordingStateChanged(Recording recording) {
+            update(FlightRecorder.getFlightRecorder());
+        }
+
+        private static void update(FlightRecorder recorder) {
+            boolean running = false;
+            for (Recording recording : recorder.getRecordings()) {
+                if (recording.getState() == RecordingState.RUNNING) {
+                    running = true;
+                    break;
+                }
+            }
+            active = running;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package smarthome.time;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import smarthome.anomaly.AnomalyDetector;
+import smarthome.anomaly.AnomalyPattern;
+import smarthome.cache.DeviceStateCache;
+import smarthome.commands.EventCommandFactory;
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeFleetBuilder;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.Subscription;
+import smarthome.energy.EnergyAccounting;
+import smarthome.energy.EnergyRates;
+import smarthome.energy.EnergyWindow;
+import smarthome.load.CountingObserver;
+import smarthome.load.HouseholdEvent;
+import smarthome.load.HouseholdLoadGenerator;
+
+/**
+ * Runs weeks of fleet activity in simulated time and prints a reproducible summary.
+ * <p>
+ * Household events are replayed through a {@link SimulationDriver}. The controllers, the state
+ * cache, energy accounting and anomaly detection all read the same {@link SimulationClock},
+ * which jumps from one due event to the next. Anomaly dwell timers are ticked every simulated
+ * minute. The same arguments always produce the same summary and digest.
+ * </p>
+ * <p>
+ * Arguments (optional): {@code homes days seed}, defaulting to {@code 1000 30 42}. Day 0
+ * starts on Monday 2024-01-01 00:00 UTC.
+ * </p>
+ */
+public class FleetSimulation {
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    public static void main(String[] args) {
+        int homes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        long wallStart = System.nanoTime();
+        List<HouseholdEvent> events = new HouseholdLoadGenerator(homes, days, seed).generate();
+
+        SimulationClock clock = new SimulationClock(START);
+        SimulationDriver driver = new SimulationDriver(clock);
+        DeviceStateCache cache = new DeviceStateCache(Duration.ofMinutes(5), homes * 4, clock);
+        EnergyAccounting energy = new EnergyAccounting(EnergyRates.defaults(), clock);
+        long[] digest = {seed};
+        AnomalyDetector anomalies = new AnomalyDetector(List.of(
+                AnomalyPattern.repeated("alarm triggered repeatedly", DeviceEvent.ALARM_TRIGGERED,
+                        3, Duration.ofMinutes(5)),
+                AnomalyPattern.heldFor("heating on for 12 hours", Duration.ofHours(12),
+                        AnomalyPattern.Condition.of(DeviceEvent.HEATING_TURN_ON, DeviceEvent.HEATING_TURN_OFF)),
+                AnomalyPattern.triggeredWhile("movement while away", EventCommandType.MOVEMENT,
+                        AnomalyPattern.Condition.of(EventCommandType.GOING_HOME, EventCommandType.ARRIVES_HOME))),
+                anomaly -> digest[0] = digest[0] * 31 + anomaly.homeId() * 17L + anomaly.timeMillis(),
+                clock);
+        CountingObserver observer = new CountingObserver();
+        HomeController[] controllers = new HomeFleetBuilder(observer)
+                .clock(clock)
+                .stateCache(cache)
+                .subscribePerHome(energy::observer, EnergyAccounting.subscription())
+                .subscribePerHome(anomalies::observer, Subscription.all())
+                .lazyDevices()
+                .build(0, homes);
+        EventCommandFactory[] factories = new EventCommandFactory[homes];
+        for (int homeId = 0; homeId < homes; homeId++) {
+            factories[homeId] = new EventCommandFactory(controllers[homeId]);
+        }
+
+        // feed the sorted stream one event at a time so the queue stays small
+        Runnable feeder = new Runnable() {
+            private int next;
+
+            @Override
+            public void run() {
+                HouseholdEvent event = events.get(next++);
+                anomalies.onCommand(event.homeId(), event.type());
+                factories[event.homeId()].createEventCommand(event.type(), event.eventId())
+                        .execute();
+                if (next < events.size()) {
+                    driver.schedule(START.toEpochMilli() + events.get(next).timeMillis(), this);
+                }
+            }
+        };
+        driver.schedule(START.toEpochMilli() + events.get(0).timeMillis(), feeder);
+        driver.scheduleEvery(Duration.ofMinutes(1), anomalies::tick);
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        driver.runUntil(START.plus(Duration.ofDays(days)));
+        System.setOut(stdout);
+        long wallMillis = (System.nanoTime() - wallStart) / 1_000_000;
+
+        for (int homeId = 0; homeId < homes; homeId++) {
+            digest[0] = digest[0] * 31 + Math.round(energy.homeWattHours(homeId, EnergyWindow.LAST_30_DAYS));
+        }
+        System.out.printf("simulated %d days of %,d homes (%s to %s) in %,d ms wall time (%,.0fx)%n",
+                days, homes, START, clock.instant(), wallMillis,
+                Duration.ofDays(days).toMillis() / (double) Math.max(1, wallMillis));
+        System.out.printf("events:       %,d household events, %,d device messages, %,d tasks run%n",
+                events.size(), observer.getCount(), driver.getExecuted());
+        System.out.printf("energy:       %,.1f kWh in the last 30 days, %,.1f kWh on the last day%n",
+                energy.fleetWattHours(EnergyWindow.LAST_30_DAYS) / 1000,
+                energy.fleetWattHours(EnergyWindow.PREVIOUS_DAY) / 1000);
+        System.out.printf("anomalies:    %,d matches%n", anomalies.getMatches());
+        System.out.printf("state cache:  hit ratio %.1f%%%n", cache.getHitRatio() * 100);
+        System.out.printf("last activity of home 0: %s%n", controllers[0].getLastActivity());
+        System.out.printf("digest:       %016x%n", digest[0]);
+    }
+}
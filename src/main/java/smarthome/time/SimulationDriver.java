@@ -0,0 +1,110 @@
+package smarthome.time;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.PriorityQueue;
+
+/**
+ * Discrete-event simulation loop over a {@link SimulationClock}.
+ * <p>
+ * Tasks are kept in a priority queue ordered by due time, then by scheduling order. Running
+ * pops the next task, jumps the clock straight to its due time and runs it on the calling
+ * thread, so idle stretches cost nothing and the same schedule always executes in the same
+ * order. Tasks may schedule further tasks; a task due in the past runs at the current time,
+ * which includes tasks overtaken by a task that advanced the clock itself (e.g. a
+ * {@link smarthome.execution.PlanExecutor} backing off through {@link SimulationClock#sleeper()}).
+ * Not thread-safe: schedule and run from one thread.
+ * </p>
+ */
+public class SimulationDriver {
+    private final SimulationClock clock;
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private long sequence;
+    private long executed;
+
+    /**
+     * @param clock the clock to advance
+     */
+    public SimulationDriver(SimulationClock clock) {
+        this.clock = clock;
+    }
+
+    /** @return the clock the driver advances */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    /** Run {@code task} at {@code epochMillis}. */
+    public void schedule(long epochMillis, Runnable task) {
+        queue.add(new Task(Math.max(epochMillis, clock.millis()), sequence++, task));
+    }
+
+    /** Run {@code task} at {@code time}. */
+    public void schedule(Instant time, Runnable task) {
+        schedule(time.toEpochMilli(), task);
+    }
+
+    /** Run {@code task} once {@code delay} has passed. */
+    public void scheduleAfter(Duration delay, Runnable task) {
+        schedule(clock.millis() + delay.toMillis(), task);
+    }
+
+    /** Run {@code task} every {@code period}, first after one period. */
+    public void scheduleEvery(Duration period, Runnable task) {
+        long periodMillis = period.toMillis();
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        schedule(clock.millis() + periodMillis, new Runnable() {
+            @Override
+            public void run() {
+                task.run();
+                schedule(clock.millis() + periodMillis, this);
+            }
+        });
+    }
+
+    /**
+     * Run every task due up to {@code epochMillis}, then move the clock there.
+     *
+     * @return number of tasks run
+     */
+    public long runUntil(long epochMillis) {
+        long before = executed;
+        while (!queue.isEmpty() && queue.peek().due <= epochMillis) {
+            Task task = queue.poll();
+            // a task may have moved the clock itself, e.g. through the clock's sleeper
+            clock.advanceTo(Math.max(task.due, clock.millis()));
+            executed++;
+            task.action.run();
+        }
+        if (epochMillis > clock.millis()) {
+            clock.advanceTo(epochMillis);
+        }
+        return executed - before;
+    }
+
+    /** Run every task due up to {@code time}, then move the clock there. */
+    public long runUntil(Instant time) {
+        return runUntil(time.toEpochMilli());
+    }
+
+    /** @return tasks run so far */
+    public long getExecuted() {
+        return executed;
+    }
+
+    /** @return tasks scheduled but not run yet */
+    public int getPending() {
+        return queue.size();
+    }
+
+    private record Task(long due, long sequence, Runnable action) implements Comparable<Task> {
+
+        @Override
+        public int compareTo(Task other) {
+            int byDue = Long.compare(due, other.due);
+            return byDue != 0 ? byDue : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package smarthome.time;
+
+import java.time.Duration;
+
+/**
+ * Waits for a duration: really, or by advancing a {@link SimulationClock}.
+ * <p>
+ * Code that pauses between attempts (retry backoff, polling) takes a {@code Sleeper} so that
+ * simulated runs skip the wait instead of spending it.
+ * </p>
+ */
+@FunctionalInterface
+public interface Sleeper {
+
+    /** Wait for {@code duration}. */
+    void sleep(Duration duration) throws InterruptedException;
+
+    /** @return a sleeper that blocks the calling thread with {@link Thread#sleep(long, int)} */
+    static Sleeper system() {
+        return duration -> {
+            long nanos = duration.toNanos();
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        };
+    }
+}
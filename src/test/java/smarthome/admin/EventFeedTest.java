@@ -0,0 +1,112 @@
+package smarthome.admin;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.domain.observer.DeviceEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventFeedTest {
+    private static final Clock CLOCK = Clock.fixed(Instant.ofEpochMilli(1234), ZoneOffset.UTC);
+
+    @Test
+    void framesAreServerSentEvents() throws InterruptedException {
+        EventFeed feed = new EventFeed(8, CLOCK);
+        feed.publish(3, DeviceEvent.DOOR_OPEN, "say \"hi\"");
+
+        EventFeed.Batch batch = feed.read(0, 0, TimeUnit.MILLISECONDS);
+        assertEquals(0, batch.from());
+        assertEquals("id: 0\nevent: DOOR_OPEN\ndata: {\"sequence\":0,\"homeId\":3,"
+                + "\"device\":\"FRONT_DOOR\",\"event\":\"DOOR_OPEN\",\"time\":1234,"
+                + "\"message\":\"say \\\"hi\\\"\"}\n\n", text(batch.frames().get(0)));
+    }
+
+    @Test
+    void slowWatcherSkipsAheadToOldestRetainedFrame() throws InterruptedException {
+        EventFeed feed = new EventFeed(4, CLOCK);
+        for (int i = 0; i < 10; i++) {
+            feed.publish(1, DeviceEvent.LIGHT_TURN_ON, "m" + i);
+        }
+        assertEquals(10, feed.getSequence());
+
+        EventFeed.Batch batch = feed.read(2, 0, TimeUnit.MILLISECONDS);
+        assertEquals(6, batch.from());
+        assertEquals(4, batch.frames().size());
+        assertTrue(text(batch.frames().get(0)).startsWith("id: 6\n"));
+        assertTrue(text(batch.frames().get(3)).startsWith("id: 9\n"));
+
+        EventFeed.Batch current = feed.read(8, 0, TimeUnit.MILLISECONDS);
+        assertEquals(8, current.from());
+        assertEquals(2, current.frames().size());
+    }
+
+    @Test
+    void negativeCursorStartsAtTheBeginning() throws InterruptedException {
+        EventFeed feed = new EventFeed(4, CLOCK);
+        feed.publish(1, DeviceEvent.LIGHT_TURN_ON, "on");
+        EventFeed.Batch batch = feed.read(-5, 0, TimeUnit.MILLISECONDS);
+        assertEquals(0, batch.from());
+        assertEquals(1, batch.frames().size());
+    }
+
+    @Test
+    void batchesGetConsecutiveSequences() throws InterruptedException {
+        EventFeed feed = new EventFeed(8, CLOCK);
+        feed.observer(2).updateBatch(
+                new DeviceEvent[] {DeviceEvent.ALARM_TURN_OFF, DeviceEvent.DOOR_OPEN, null},
+                new String[] {"off", "open", null}, 2);
+        feed.observer(2).update("untyped messages are not published");
+
+        List<byte[]> frames = feed.read(0, 0, TimeUnit.MILLISECONDS).frames();
+        assertEquals(2, frames.size());
+        assertTrue(text(frames.get(1)).startsWith("id: 1\nevent: DOOR_OPEN\n"));
+    }
+
+    @Test
+    void readWaitsForTheNextFrame() throws InterruptedException {
+        EventFeed feed = new EventFeed(4, CLOCK);
+        Thread publisher = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            feed.publish(1, DeviceEvent.LIGHT_TURN_OFF, "off");
+        });
+        publisher.start();
+        EventFeed.Batch batch = feed.read(0, 10, TimeUnit.SECONDS);
+        publisher.join();
+        assertEquals(1, batch.frames().size());
+
+        assertTrue(feed.read(1, 10, TimeUnit.MILLISECONDS).frames().isEmpty());
+    }
+
+    @Test
+    void closeEndsStreamsAndStopsPublishing() throws InterruptedException {
+        EventFeed feed = new EventFeed(4, CLOCK);
+        feed.publish(1, DeviceEvent.LIGHT_TURN_ON, "on");
+        assertFalse(feed.read(0, 0, TimeUnit.MILLISECONDS).closed());
+        feed.close();
+        feed.publish(1, DeviceEvent.LIGHT_TURN_OFF, "off");
+
+        EventFeed.Batch batch = feed.read(1, 10, TimeUnit.SECONDS);
+        assertTrue(batch.closed());
+        assertTrue(batch.frames().isEmpty());
+        assertEquals(1, feed.getSequence());
+        assertThrows(IllegalArgumentException.class, () -> new EventFeed(0));
+    }
+
+    private static String text(byte[] frame) {
+        return new String(frame, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,133 @@
+package smarthome.anomaly;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.anomaly.AnomalyPattern.Condition;
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.time.SimulationClock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AnomalyDetectorTest {
+    private static final long START = Instant.EPOCH.toEpochMilli();
+
+    private final SimulationClock clock = new SimulationClock(Instant.EPOCH);
+    private final List<Anomaly> anomalies = new ArrayList<>();
+
+    @Test
+    void repeatedMatchesOnlyWithinItsWindow() {
+        AnomalyDetector detector = detector(AnomalyPattern.repeated("alarm storm",
+                DeviceEvent.ALARM_TRIGGERED, 3, Duration.ofMinutes(5)));
+
+        detector.onEvent(1, DeviceEvent.ALARM_TRIGGERED);
+        clock.advanceBy(Duration.ofMinutes(4));
+        detector.onEvent(1, DeviceEvent.ALARM_TRIGGERED);
+        clock.advanceBy(Duration.ofMinutes(2));
+        // 6 minutes after the first one: counting starts again
+        detector.onEvent(1, DeviceEvent.ALARM_TRIGGERED);
+        assertEquals(List.of(), anomalies);
+
+        clock.advanceBy(Duration.ofMinutes(1));
+        detector.onEvent(1, DeviceEvent.ALARM_TRIGGERED);
+        detector.onEvent(1, DeviceEvent.ALARM_TRIGGERED);
+        assertEquals(List.of(new Anomaly(1, "alarm storm", START + 7 * 60_000)), anomalies);
+
+        // the machine starts over after a match
+        detector.onEvent(1, DeviceEvent.ALARM_TRIGGERED);
+        assertEquals(1, detector.getMatches());
+    }
+
+    @Test
+    void heldForMatchesOnceAfterTheDwellTime() {
+        AnomalyDetector detector = detector(AnomalyPattern.heldFor("door open while heating",
+                Duration.ofHours(2),
+                Condition.of(DeviceEvent.DOOR_OPEN, DeviceEvent.DOOR_CLOSE),
+                Condition.of(DeviceEvent.HEATING_TURN_ON, DeviceEvent.HEATING_TURN_OFF)));
+
+        detector.onEvent(1, DeviceEvent.HEATING_TURN_ON);
+        clock.advanceBy(Duration.ofMinutes(10));
+        detector.onEvent(1, DeviceEvent.DOOR_OPEN);
+        clock.advanceBy(Duration.ofMinutes(119));
+        detector.tick();
+        assertEquals(List.of(), anomalies);
+
+        clock.advanceBy(Duration.ofHours(3));
+        detector.tick();
+        detector.tick();
+        // reported at the deadline, not when the tick noticed it
+        assertEquals(List.of(new Anomaly(1, "door open while heating", START + 130 * 60_000)),
+                anomalies);
+    }
+
+    @Test
+    void leavingTheDwellStateCancelsItsDeadline() {
+        AnomalyDetector detector = detector(AnomalyPattern.heldFor("door open", Duration.ofHours(1),
+                Condition.of(DeviceEvent.DOOR_OPEN, DeviceEvent.DOOR_CLOSE)));
+
+        detector.onEvent(1, DeviceEvent.DOOR_OPEN);
+        clock.advanceBy(Duration.ofMinutes(50));
+        detector.onEvent(1, DeviceEvent.DOOR_CLOSE);
+        detector.onEvent(1, DeviceEvent.DOOR_OPEN);
+        clock.advanceBy(Duration.ofMinutes(50));
+        detector.tick();
+        assertEquals(List.of(), anomalies);
+
+        clock.advanceBy(Duration.ofMinutes(10));
+        // any event also fires the due deadlines
+        detector.onEvent(2, DeviceEvent.LIGHT_TURN_ON);
+        assertEquals(List.of(new Anomaly(1, "door open", START + 110 * 60_000)), anomalies);
+    }
+
+    @Test
+    void triggeredWhileMatchesEveryTriggerWhileTheConditionHolds() {
+        AnomalyDetector detector = detector(AnomalyPattern.triggeredWhile("movement while away",
+                EventCommandType.MOVEMENT,
+                Condition.of(EventCommandType.GOING_HOME, EventCommandType.ARRIVES_HOME)));
+
+        detector.onCommand(1, EventCommandType.MOVEMENT);
+        detector.onCommand(1, EventCommandType.GOING_HOME);
+        detector.onCommand(1, EventCommandType.MOVEMENT);
+        detector.onCommand(1, EventCommandType.MOVEMENT);
+        detector.onCommand(2, EventCommandType.MOVEMENT);
+        detector.onCommand(1, EventCommandType.ARRIVES_HOME);
+        detector.onCommand(1, EventCommandType.MOVEMENT);
+
+        assertEquals(2, anomalies.size());
+        assertEquals(2, detector.getHomes());
+    }
+
+    @Test
+    void homesAreMatchedIndependently() {
+        AnomalyDetector detector = detector(AnomalyPattern.repeated("double light",
+                DeviceEvent.LIGHT_TURN_ON, 2, Duration.ofMinutes(1)));
+        for (int homeId = 0; homeId < 200; homeId++) {
+            detector.observer(homeId).update(DeviceEvent.LIGHT_TURN_ON, "on");
+        }
+        assertEquals(0, detector.getMatches());
+        detector.onEvent(150, DeviceEvent.LIGHT_TURN_ON);
+        assertEquals(List.of(new Anomaly(150, "double light", START)), anomalies);
+        assertEquals(200, detector.getInstances());
+    }
+
+    @Test
+    void rejectsInvalidPatterns() {
+        assertThrows(IllegalArgumentException.class,
+                () -> AnomalyPattern.repeated("p", DeviceEvent.DOOR_OPEN, 0, Duration.ofMinutes(1)));
+        assertThrows(IllegalArgumentException.class, () -> AnomalyPattern.builder("p", 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> AnomalyPattern.builder("p", 2).on(0, DeviceEvent.DOOR_OPEN, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> Condition.of(Thread.State.NEW, DeviceEvent.DOOR_CLOSE));
+    }
+
+    private AnomalyDetector detector(AnomalyPattern pattern) {
+        return new AnomalyDetector(List.of(pattern), anomalies::add, clock);
+    }
+}
@@ -0,0 +1,163 @@
+package smarthome.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.controller.HomeState;
+import smarthome.domain.devices.Light;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.DeviceType;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.domain.observer.NotificationBatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceStateCacheTest {
+    private final ManualClock clock = new ManualClock();
+    private final DeviceStateCache cache = new DeviceStateCache(Duration.ofSeconds(10), 100, clock);
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @Test
+    void servesCachedStateUntilItExpires() {
+        assertTrue(read(1, DeviceType.LIGHT, true));
+        clock.advance(Duration.ofSeconds(10));
+        assertTrue(read(1, DeviceType.LIGHT, false));
+        assertEquals(1, reads.get());
+
+        clock.advance(Duration.ofMillis(1));
+        assertFalse(read(1, DeviceType.LIGHT, false));
+        assertEquals(2, reads.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getExpirations());
+    }
+
+    @Test
+    void keysAreHomeAndDevice() {
+        read(1, DeviceType.LIGHT, true);
+        read(2, DeviceType.LIGHT, false);
+        read(1, DeviceType.FRONT_DOOR, false);
+        assertEquals(3, reads.get());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void deviceNotificationInvalidatesItsEntryOnly() {
+        read(1, DeviceType.LIGHT, true);
+        read(1, DeviceType.FRONT_DOOR, true);
+        cache.invalidator(1).update(DeviceEvent.LIGHT_TURN_OFF, "off");
+        cache.invalidator(1).update("untyped messages are ignored");
+
+        assertFalse(read(1, DeviceType.LIGHT, false));
+        assertTrue(read(1, DeviceType.FRONT_DOOR, false));
+        assertEquals(1, cache.getInvalidations());
+        assertFalse(cache.invalidator(1).isDeferrable());
+    }
+
+    @Test
+    void invalidationVoidsReadInProgress() {
+        boolean value = cache.get(1, DeviceType.ALARM_SYSTEM, () -> {
+            // the device changes while its old state is being read
+            cache.invalidate(1, DeviceType.ALARM_SYSTEM);
+            return true;
+        });
+        assertTrue(value);
+        assertEquals(0, cache.size());
+        assertFalse(read(1, DeviceType.ALARM_SYSTEM, false));
+    }
+
+    @Test
+    void invalidationOfOtherDeviceKeepsReadInProgress() {
+        cache.get(1, DeviceType.ALARM_SYSTEM, () -> {
+            cache.invalidate(2, DeviceType.ALARM_SYSTEM);
+            cache.invalidate(1, DeviceType.LIGHT);
+            return true;
+        });
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedState() {
+        DeviceStateCache small = new DeviceStateCache(Duration.ofSeconds(10), 2, clock);
+        small.get(1, DeviceType.LIGHT, () -> true);
+        small.get(2, DeviceType.LIGHT, () -> true);
+        small.get(1, DeviceType.LIGHT, () -> false);
+        small.get(3, DeviceType.LIGHT, () -> true);
+
+        assertEquals(1, small.getEvictions());
+        assertTrue(small.get(1, DeviceType.LIGHT, () -> false));
+        assertFalse(small.get(2, DeviceType.LIGHT, () -> false));
+    }
+
+    @Test
+    void laterCommandInBatchSeesStateChangedByEarlierOne() {
+        MessageObserver observer = new MessageObserver();
+        CountingLight light = new CountingLight();
+        HomeController controller = new HomeControllerBuilder(observer)
+                .state(new HomeState(1, false, false, false, false, false))
+                .light(light)
+                .stateCache(cache)
+                .build();
+
+        try (NotificationBatch batch = NotificationBatch.open()) {
+            controller.movement();
+            controller.movement();
+            assertEquals(List.of(), observer.getMessages());
+        }
+
+        assertEquals(1, light.turnOns);
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(List.of(DeviceEvent.LIGHT_TURN_ON.getMessage()), observer.getMessages());
+    }
+
+    private boolean read(int homeId, DeviceType deviceType, boolean state) {
+        return cache.get(homeId, deviceType, () -> {
+            reads.incrementAndGet();
+            return state;
+        });
+    }
+
+    private static final class CountingLight extends Light {
+        int turnOns;
+
+        @Override
+        public void turnOn() {
+            turnOns++;
+            super.turnOn();
+        }
+    }
+
+    private static final class ManualClock extends Clock {
+        private Instant now = Instant.EPOCH;
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package smarthome.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.load.HouseholdEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterTest {
+    private static final EventCommandType[] TYPES = {
+            EventCommandType.MOVEMENT, EventCommandType.GOING_HOME, EventCommandType.ARRIVES_HOME
+    };
+
+    @Test
+    void membershipChangesKeepEveryEventInOrder() throws InterruptedException {
+        Cluster cluster = new Cluster(new SynchronizedObserver());
+        cluster.join("a");
+        long submitted = submit(cluster, 0);
+
+        RebalanceReport joined = cluster.join("b");
+        assertTrue(joined.homesMoved() > 0);
+        submitted += submit(cluster, 1);
+
+        RebalanceReport left = cluster.leave("a");
+        assertTrue(left.homesMoved() > 0);
+        submitted += submit(cluster, 2);
+
+        cluster.awaitIdle();
+        assertEquals(submitted, cluster.getProcessed());
+        assertEquals(0, cluster.getOutOfOrder());
+        assertEquals(1, cluster.snapshotNodes().size());
+        cluster.shutdown();
+    }
+
+    @Test
+    void rejectsInvalidMembershipChanges() throws InterruptedException {
+        Cluster cluster = new Cluster(new SynchronizedObserver());
+        assertThrows(IllegalStateException.class,
+                () -> cluster.submit(1, EventCommandType.MOVEMENT, HouseholdEvent.NO_ID));
+        cluster.join("a");
+        assertThrows(IllegalArgumentException.class, () -> cluster.join("a"));
+        assertThrows(IllegalArgumentException.class, () -> cluster.leave("b"));
+        assertThrows(IllegalStateException.class, () -> cluster.leave("a"));
+        cluster.shutdown();
+    }
+
+    private static long submit(Cluster cluster, int round) {
+        long submitted = 0;
+        for (int i = 0; i < 50; i++) {
+            for (int homeId = 0; homeId < 40; homeId++) {
+                cluster.submit(homeId, TYPES[(i + round) % TYPES.length], HouseholdEvent.NO_ID);
+                submitted++;
+            }
+        }
+        return submitted;
+    }
+
+    /** Nodes notify from their own threads. */
+    private static final class SynchronizedObserver extends MessageObserver {
+        @Override
+        public synchronized void update(String message) {
+            super.update(message);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package smarthome.cluster;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+    private static final int HOMES = 10_000;
+
+    @Test
+    void joiningNodeTakesOnlyItsShare() {
+        ConsistentHashRing ring = new ConsistentHashRing(128);
+        ring.addNode("a");
+        ring.addNode("b");
+        ring.addNode("c");
+        Map<Integer, String> before = owners(ring);
+
+        ring.addNode("d");
+        int moved = 0;
+        for (int homeId = 0; homeId < HOMES; homeId++) {
+            String owner = ring.nodeFor(homeId);
+            if (!owner.equals(before.get(homeId))) {
+                assertEquals("d", owner, "home " + homeId + " moved between old nodes");
+                moved++;
+            }
+        }
+        // about a quarter of the homes; generous bounds for the hash's spread
+        assertTrue(moved > HOMES / 8 && moved < HOMES / 2, "moved " + moved);
+    }
+
+    @Test
+    void removingNodeRestoresPreviousOwners() {
+        ConsistentHashRing ring = new ConsistentHashRing(128);
+        ring.addNode("a");
+        ring.addNode("b");
+        Map<Integer, String> before = owners(ring);
+        ring.addNode("c");
+        ring.removeNode("c");
+        assertEquals(before, owners(ring));
+    }
+
+    @Test
+    void emptyRingRejectsLookups() {
+        ConsistentHashRing ring = new ConsistentHashRing(16);
+        assertThrows(IllegalStateException.class, () -> ring.nodeFor(1));
+        ring.addNode("a");
+        ring.removeNode("a");
+        assertThrows(IllegalStateException.class, () -> ring.nodeFor(1));
+    }
+
+    private static Map<Integer, String> owners(ConsistentHashRing ring) {
+        Map<Integer, String> owners = new HashMap<>();
+        for (int homeId = 0; homeId < HOMES; homeId++) {
+            owners.put(homeId, ring.nodeFor(homeId));
+        }
+        return owners;
+    }
+}
@@ -0,0 +1,67 @@
+package smarthome.cluster;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.commands.EventCommandType;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.load.HouseholdEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HomeNodeTest {
+    private static final String COFFEE = DeviceEvent.COFFEE_CREATED.getMessage();
+
+    @Test
+    void retryAfterHandoffIsSkipped() throws InterruptedException {
+        MessageObserver observer = new MessageObserver();
+        HomeNode a = new HomeNode("a", observer);
+        HomeNode b = new HomeNode("b", observer);
+        try {
+            a.submit(1, EventCommandType.ARRIVES_HOME, 7);
+            a.awaitIdle();
+            List<HomeHandoff> handoffs = a.release(Set.of(1));
+            b.adopt(handoffs);
+
+            // the gateway retries event 7 against the new owner
+            ClusterEvent retry = b.submit(1, EventCommandType.ARRIVES_HOME, 7);
+            b.submit(1, EventCommandType.ARRIVES_HOME, 8);
+            b.awaitIdle();
+
+            assertEquals(2, retry.sequence());
+            assertEquals(2, observer.getMessages().stream()
+                    .filter(message -> message.startsWith(COFFEE))
+                    .count());
+            assertEquals(0, b.getOutOfOrder());
+        } finally {
+            a.stop();
+            b.stop();
+        }
+    }
+
+    @Test
+    void pendingEventsMoveWithTheirHome() throws InterruptedException {
+        MessageObserver observer = new MessageObserver();
+        HomeNode a = new HomeNode("a", observer);
+        HomeNode b = new HomeNode("b", observer);
+        try {
+            for (int i = 0; i < 100; i++) {
+                a.submit(i % 4, EventCommandType.CHANGE_TO_HOLIDAY, HouseholdEvent.NO_ID);
+            }
+            b.adopt(a.release(Set.of(0, 1)));
+            a.awaitIdle();
+            b.awaitIdle();
+
+            assertEquals(100, a.getProcessed() + b.getProcessed());
+            assertEquals(Set.of(0, 1), b.homeIds());
+            assertEquals(Set.of(2, 3), a.homeIds());
+            assertEquals(0, a.getOutOfOrder() + b.getOutOfOrder());
+        } finally {
+            a.stop();
+            b.stop();
+        }
+    }
+}
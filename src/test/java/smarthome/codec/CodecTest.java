@@ -0,0 +1,137 @@
+package smarthome.codec;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeState;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.load.HouseholdEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodecTest {
+
+    @Test
+    void deviceEventsRoundTripWithEveryMessageKind() {
+        DeviceEventCodec codec = new DeviceEventCodec();
+        DeviceEventRecord[] records = {
+                new DeviceEventRecord(0, 0, DeviceEvent.ALARM_TURN_ON, DeviceEvent.ALARM_TURN_ON.getMessage()),
+                new DeviceEventRecord(1_700_000_000_000L, 42, DeviceEvent.COFFEE_CREATED,
+                        "[CoffeeMaker] create coffee with 120mg caffeine"),
+                // leading zero: must travel as text to survive the round trip
+                new DeviceEventRecord(5, 7, DeviceEvent.COFFEE_CREATED,
+                        "[CoffeeMaker] create coffee with 080mg caffeine"),
+                new DeviceEventRecord(5, Integer.MAX_VALUE, DeviceEvent.DOOR_OPEN, "Tür öffnet ☀"),
+        };
+        for (DeviceEventRecord record : records) {
+            assertEquals(record, roundTrip(codec, record));
+        }
+        assertEquals(4, encode(codec, records[0]).remaining());
+    }
+
+    @Test
+    void deviceEventRejectsNegativeValuesAndUnknownCodes() {
+        DeviceEventCodec codec = new DeviceEventCodec();
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(
+                new DeviceEventRecord(-1, 0, DeviceEvent.DOOR_OPEN, DeviceEvent.DOOR_OPEN.getMessage()), buffer));
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(
+                new DeviceEventRecord(0, -1, DeviceEvent.DOOR_OPEN, DeviceEvent.DOOR_OPEN.getMessage()), buffer));
+        assertEquals(0, buffer.position());
+
+        ByteBuffer unknownCode = encode(codec,
+                new DeviceEventRecord(0, 0, DeviceEvent.ALARM_TURN_ON, DeviceEvent.ALARM_TURN_ON.getMessage()));
+        unknownCode.put(3, (byte) 0x1F);
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(unknownCode));
+    }
+
+    @Test
+    void commandEventsRoundTripWithAndWithoutId() {
+        CommandEventCodec codec = new CommandEventCodec();
+        HouseholdEvent[] events = {
+                new HouseholdEvent(0, 0, EventCommandType.GOING_HOME),
+                new HouseholdEvent(-30, 3, EventCommandType.ARRIVES_HOME, 17),
+                new HouseholdEvent(1_700_000_000_000L, Integer.MAX_VALUE, EventCommandType.CHANGE_TO_WORKING_DAY,
+                        Long.MAX_VALUE),
+        };
+        for (HouseholdEvent event : events) {
+            assertEquals(event, roundTrip(codec, event));
+        }
+    }
+
+    @Test
+    void commandEventDecodesVersionOneWithoutId() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.put((byte) (2 << 4 | 1));
+        Varint.writeSigned(buffer, 10);
+        Varint.writeUnsigned(buffer, 4);
+        buffer.put((byte) 2);
+        buffer.flip();
+        assertEquals(new HouseholdEvent(10, 4, EventCommandType.MOVEMENT, HouseholdEvent.NO_ID),
+                new CommandEventCodec().decode(buffer));
+    }
+
+    @Test
+    void commandEventRejectsNegativeHomeAndUnknownCode() {
+        CommandEventCodec codec = new CommandEventCodec();
+        assertThrows(IllegalArgumentException.class, () -> codec.encode(
+                new HouseholdEvent(0, -1, EventCommandType.MOVEMENT), ByteBuffer.allocate(32)));
+
+        ByteBuffer unknownCode = encode(codec, new HouseholdEvent(0, 0, EventCommandType.MOVEMENT));
+        unknownCode.put(3, (byte) 99);
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(unknownCode));
+    }
+
+    @Test
+    void homeStatesRoundTripEveryFlagCombination() {
+        HomeStateCodec codec = new HomeStateCodec();
+        for (int flags = 0; flags < 32; flags++) {
+            HomeState state = new HomeState(flags * 1000, (flags & 1) != 0, (flags & 2) != 0,
+                    (flags & 4) != 0, (flags & 8) != 0, (flags & 16) != 0);
+            assertEquals(state, roundTrip(codec, state));
+        }
+    }
+
+    @Test
+    void homeStateRejectsUnknownFlags() {
+        HomeStateCodec codec = new HomeStateCodec();
+        ByteBuffer buffer = encode(codec, new HomeState(1, false, false, false, false, false));
+        buffer.put(2, (byte) 0x20);
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(buffer));
+    }
+
+    @Test
+    void decodersRejectOtherSchemasNewerVersionsAndTruncatedRecords() {
+        HomeStateCodec codec = new HomeStateCodec();
+        HomeState state = new HomeState(1, true, false, false, false, false);
+        assertThrows(IllegalArgumentException.class, () -> new DeviceEventCodec().decode(encode(codec, state)));
+
+        ByteBuffer newer = encode(codec, state);
+        newer.put(0, (byte) (3 << 4 | (Schema.HOME_STATE.getVersion() + 1)));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(newer));
+
+        ByteBuffer truncated = encode(codec, state);
+        truncated.limit(truncated.limit() - 1);
+        assertThrows(BufferUnderflowException.class, () -> codec.decode(truncated));
+    }
+
+    private static <T> ByteBuffer encode(Codec<T> codec, T value) {
+        ByteBuffer buffer = ByteBuffer.allocate(codec.maxSize(value));
+        codec.encode(value, buffer);
+        assertTrue(buffer.position() <= codec.maxSize(value));
+        return buffer.flip();
+    }
+
+    private static <T> T roundTrip(Codec<T> codec, T value) {
+        ByteBuffer buffer = encode(codec, value);
+        T decoded = codec.decode(buffer);
+        assertFalse(buffer.hasRemaining());
+        return decoded;
+    }
+}
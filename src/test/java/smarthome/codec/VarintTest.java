@@ -0,0 +1,58 @@
+package smarthome.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VarintTest {
+
+    @Test
+    void unsignedValuesRoundTripInTheirSize() {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+        for (long value : values) {
+            ByteBuffer buffer = ByteBuffer.allocate(10);
+            Varint.writeUnsigned(buffer, value);
+            assertEquals(Varint.sizeOfUnsigned(value), buffer.position(), "size of " + value);
+            buffer.flip();
+            assertEquals(value, Varint.readUnsigned(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+        assertEquals(1, Varint.sizeOfUnsigned(127));
+        assertEquals(2, Varint.sizeOfUnsigned(128));
+        assertEquals(10, Varint.sizeOfUnsigned(-1));
+    }
+
+    @Test
+    void signedValuesRoundTripAndSmallNegativesStayShort() {
+        long[] values = {0, -1, 1, -64, 63, -65, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (long value : values) {
+            ByteBuffer buffer = ByteBuffer.allocate(10);
+            Varint.writeSigned(buffer, value);
+            buffer.flip();
+            assertEquals(value, Varint.readSigned(buffer));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        Varint.writeSigned(buffer, -64);
+        assertEquals(1, buffer.position());
+    }
+
+    @Test
+    void rejectsOverlongVarint() {
+        byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0x80);
+        assertThrows(IllegalArgumentException.class, () -> Varint.readUnsigned(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void rejectsIntOutOfRange() {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        Varint.writeUnsigned(buffer, Integer.MAX_VALUE + 1L);
+        buffer.flip();
+        assertThrows(IllegalArgumentException.class, () -> Varint.readUnsignedInt(buffer));
+    }
+}
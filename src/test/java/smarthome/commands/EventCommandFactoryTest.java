@@ -0,0 +1,147 @@
+package smarthome.commands;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.controller.HomeState;
+import smarthome.domain.devices.FrontDoor;
+import smarthome.domain.devices.Light;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.execution.PlanExecutor;
+import smarthome.execution.RetryPolicy;
+import smarthome.load.HouseholdEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EventCommandFactoryTest {
+    private static final String COFFEE = DeviceEvent.COFFEE_CREATED.getMessage();
+    private static final String ALARM = DeviceEvent.ALARM_TRIGGERED.getMessage();
+    private static final String LIGHT_ON = DeviceEvent.LIGHT_TURN_ON.getMessage();
+
+    private final MessageObserver observer = new MessageObserver();
+
+    @Test
+    void retriedEventRunsOnce() {
+        EventCommandFactory factory = new EventCommandFactory(home(false), 8);
+        factory.createEventCommand(EventCommandType.ARRIVES_HOME, 7).execute();
+        factory.createEventCommand(EventCommandType.ARRIVES_HOME, 7).execute();
+        factory.createEventCommand(EventCommandType.ARRIVES_HOME, 8).execute();
+
+        assertEquals(2, count(COFFEE));
+        assertEquals(1, factory.getDuplicates());
+    }
+
+    @Test
+    void eventsWithoutIdAreNeverDeduplicated() {
+        EventCommandFactory factory = new EventCommandFactory(home(false), 8);
+        factory.createEventCommand(EventCommandType.ARRIVES_HOME, HouseholdEvent.NO_ID).execute();
+        factory.createEventCommand(EventCommandType.ARRIVES_HOME, HouseholdEvent.NO_ID).execute();
+
+        assertEquals(2, count(COFFEE));
+        assertEquals(0, factory.getDuplicates());
+        assertEquals(0, factory.recentEventIds().length);
+    }
+
+    @Test
+    void failedEventCanBeRetried() {
+        HomeController controller = new HomeControllerBuilder(observer)
+                .state(new HomeState(1, true, false, false, false, true))
+                .frontDoor(new JammedDoor())
+                .build();
+        EventCommandFactory factory = new EventCommandFactory(controller, 8, false,
+                new PlanExecutor(RetryPolicy.none(), 16));
+        assertThrows(IllegalStateException.class,
+                () -> factory.createEventCommand(EventCommandType.ARRIVES_HOME, 3).execute());
+        assertThrows(IllegalStateException.class,
+                () -> factory.createEventCommand(EventCommandType.ARRIVES_HOME, 3).execute());
+        assertEquals(0, factory.getDuplicates());
+    }
+
+    @Test
+    void recentIdsMoveToAnotherFactory() {
+        EventCommandFactory first = new EventCommandFactory(home(false), 8);
+        first.createEventCommand(EventCommandType.ARRIVES_HOME, 7).execute();
+
+        EventCommandFactory second = new EventCommandFactory(home(false), 8);
+        second.restoreRecentEventIds(first.recentEventIds());
+        second.createEventCommand(EventCommandType.ARRIVES_HOME, 7).execute();
+
+        assertEquals(1, count(COFFEE));
+        assertEquals(1, second.getDuplicates());
+    }
+
+    @Test
+    void planJournalMovesToAnotherFactory() {
+        FlakyLight light = new FlakyLight();
+        HomeController controller = new HomeControllerBuilder(observer)
+                .state(new HomeState(4, true, false, false, false, true))
+                .light(light)
+                .build();
+        EventCommandFactory first = new EventCommandFactory(controller, 0, false,
+                new PlanExecutor(RetryPolicy.none(), 16));
+        // the alarm is raised, the light fails: the plan completes partially
+        first.createEventCommand(EventCommandType.MOVEMENT, 9).execute();
+        Map<Long, Long> journal = first.planJournal();
+        assertEquals(Map.of(9L, 0b01L), journal);
+
+        MessageObserver adopted = new MessageObserver();
+        HomeController moved = new HomeControllerBuilder(adopted)
+                .state(controller.snapshot())
+                .build();
+        EventCommandFactory second = new EventCommandFactory(moved, 0, false,
+                new PlanExecutor(RetryPolicy.none(), 16));
+        second.restorePlanJournal(journal);
+        second.createEventCommand(EventCommandType.MOVEMENT, 9).execute();
+
+        assertEquals(List.of(LIGHT_ON), adopted.getMessages());
+        assertEquals(Map.of(9L, 0b11L), second.planJournal());
+    }
+
+    @Test
+    void plainEventsAreNotJournaled() {
+        EventCommandFactory factory = new EventCommandFactory(home(true), 8, false,
+                new PlanExecutor(RetryPolicy.none(), 16));
+        factory.createEventCommand(EventCommandType.CHANGE_TO_HOLIDAY, 1).execute();
+        factory.createEventCommand(EventCommandType.MOVEMENT, 2).execute();
+
+        assertEquals(Map.of(2L, 0b11L), factory.planJournal());
+        assertEquals(1, count(ALARM));
+    }
+
+    private HomeController home(boolean armed) {
+        return new HomeControllerBuilder(observer)
+                .state(new HomeState(1, armed, false, false, false, true))
+                .build();
+    }
+
+    private long count(String message) {
+        return observer.getMessages().stream().filter(m -> m.startsWith(message)).count();
+    }
+
+    private static final class JammedDoor extends FrontDoor {
+        @Override
+        public void open() {
+            throw new IllegalStateException("door jammed");
+        }
+    }
+
+    /** Fails to turn on the first time. */
+    private static final class FlakyLight extends Light {
+        private boolean failed;
+
+        @Override
+        public void turnOn() {
+            if (!failed) {
+                failed = true;
+                throw new IllegalStateException("bulb");
+            }
+            super.turnOn();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package smarthome.commands;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentEventIdsTest {
+
+    @Test
+    void forgetsOldestIdOnceFull() {
+        RecentEventIds ids = new RecentEventIds(3);
+        assertTrue(ids.add(1));
+        assertTrue(ids.add(2));
+        assertFalse(ids.add(1));
+        assertTrue(ids.add(3));
+        assertTrue(ids.add(4));
+
+        assertFalse(ids.contains(1));
+        assertTrue(ids.contains(2));
+        assertEquals(3, ids.size());
+        assertArrayEquals(new long[] {2, 3, 4}, ids.toArray());
+    }
+
+    @Test
+    void matchesReferenceSetUnderChurn() {
+        int capacity = 50;
+        RecentEventIds ids = new RecentEventIds(capacity);
+        Deque<Long> window = new ArrayDeque<>();
+        Set<Long> reference = new HashSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            // a small id space forces collisions, duplicates and backward shifts
+            long id = random.nextInt(200) - 100;
+            assertEquals(reference.contains(id), ids.contains(id), "id " + id + " at " + i);
+            if (reference.add(id)) {
+                assertTrue(ids.add(id));
+                window.addLast(id);
+                if (window.size() > capacity) {
+                    reference.remove(window.removeFirst());
+                }
+            } else {
+                assertFalse(ids.add(id));
+            }
+        }
+        assertArrayEquals(window.stream().mapToLong(Long::longValue).toArray(), ids.toArray());
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new RecentEventIds(0));
+        RecentEventIds ids = new RecentEventIds(1);
+        assertThrows(IllegalArgumentException.class, () -> ids.add(Long.MIN_VALUE));
+    }
+}
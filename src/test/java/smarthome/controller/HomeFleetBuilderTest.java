@@ -0,0 +1,103 @@
+package smarthome.controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.DeviceType;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.domain.observer.Observer;
+import smarthome.domain.observer.Subscription;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HomeFleetBuilderTest {
+
+    @Test
+    void lazyHomesAreWiredOnTheirFirstEvent() {
+        MessageObserver messages = new MessageObserver();
+        HomeController[] homes = new HomeFleetBuilder(messages).lazyDevices().build(100, 10);
+
+        assertEquals(10, homes.length);
+        assertEquals(105, homes[5].getHomeId());
+        for (HomeController home : homes) {
+            assertNull(home.light);
+            assertFalse(home.isAlarmArmed());
+        }
+
+        homes[3].movement();
+        assertNotNull(homes[3].light);
+        assertNull(homes[3].pendingWiring);
+        assertNull(homes[4].light);
+        assertEquals(List.of(DeviceEvent.LIGHT_TURN_ON.getMessage()), messages.getMessages());
+    }
+
+    @Test
+    void eagerHomesHaveDistinctDevices() {
+        HomeController[] homes = new HomeFleetBuilder(new MessageObserver()).build(0, 2);
+        assertNull(homes[0].pendingWiring);
+        assertNotNull(homes[0].light);
+        assertTrue(homes[0].light != homes[1].light);
+    }
+
+    @Test
+    void perHomeObserversSeeOnlyTheirHomeAndSubscription() {
+        Map<Integer, Recorder> recorders = new HashMap<>();
+        HomeController[] homes = new HomeFleetBuilder(new MessageObserver())
+                .lazyDevices()
+                .subscribePerHome(homeId -> recorders.computeIfAbsent(homeId, id -> new Recorder()),
+                        Subscription.devices(DeviceType.LIGHT))
+                .build(0, 3);
+        assertTrue(recorders.isEmpty());
+
+        homes[0].arrivesHome();
+        homes[0].movement();
+        homes[1].movement();
+
+        assertEquals(2, recorders.size());
+        assertEquals(List.of(DeviceEvent.LIGHT_TURN_ON), recorders.get(0).events);
+        assertEquals(List.of(DeviceEvent.LIGHT_TURN_ON), recorders.get(1).events);
+        assertEquals(1, recorders.get(0).initialStates.size());
+        assertFalse(recorders.get(0).initialStates.get(0).lightOn());
+    }
+
+    @Test
+    void sharedSubscribersGetOnlySelectedEvents() {
+        Recorder doors = new Recorder();
+        HomeController home = new HomeControllerBuilder(new MessageObserver())
+                .subscribe(doors, Subscription.events(DeviceEvent.DOOR_OPEN))
+                .build();
+        home.arrivesHome();
+        home.movement();
+        assertEquals(List.of(DeviceEvent.DOOR_OPEN), doors.events);
+        assertEquals(1, doors.initialStates.size());
+    }
+
+    private static final class Recorder implements Observer, HomeStateAware {
+        final List<DeviceEvent> events = new ArrayList<>();
+        final List<HomeState> initialStates = new ArrayList<>();
+
+        @Override
+        public void update(String message) {
+            throw new AssertionError("untyped message " + message);
+        }
+
+        @Override
+        public void update(DeviceEvent event, String message) {
+            events.add(event);
+        }
+
+        @Override
+        public void initialState(HomeState state) {
+            initialStates.add(state);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package smarthome.dispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.controller.HomeState;
+import smarthome.domain.devices.FrontDoor;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.dispatch.PriorityEventDispatcher.Lane;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityEventDispatcherTest {
+    private static final String ALARM = DeviceEvent.ALARM_TRIGGERED.getMessage();
+
+    @Test
+    void movementOnArmedHomeTakesAlarmLane() {
+        try (PriorityEventDispatcher dispatcher = new PriorityEventDispatcher(2, true)) {
+            dispatcher.register(home(1, true, new MessageObserver()));
+            dispatcher.register(home(2, false, new MessageObserver()));
+            assertEquals(Lane.ALARM, dispatcher.submit(1, EventCommandType.MOVEMENT));
+            assertEquals(Lane.NORMAL, dispatcher.submit(2, EventCommandType.MOVEMENT));
+            assertEquals(Lane.NORMAL, dispatcher.submit(1, EventCommandType.GOING_HOME));
+        }
+        try (PriorityEventDispatcher baseline = new PriorityEventDispatcher(2, false)) {
+            baseline.register(home(1, true, new MessageObserver()));
+            assertEquals(Lane.NORMAL, baseline.submit(1, EventCommandType.MOVEMENT));
+        }
+    }
+
+    @Test
+    void alarmNeverOvertakesEarlierEventsOfItsHome() {
+        List<MessageObserver> observers = new ArrayList<>();
+        try (PriorityEventDispatcher dispatcher = new PriorityEventDispatcher(4, true, 8)) {
+            for (int homeId = 0; homeId < 50; homeId++) {
+                MessageObserver observer = new MessageObserver();
+                observers.add(observer);
+                dispatcher.register(home(homeId, true, observer));
+            }
+            for (int homeId = 0; homeId < 50; homeId++) {
+                for (int i = 0; i < 20; i++) {
+                    dispatcher.submit(homeId, EventCommandType.CHANGE_TO_HOLIDAY);
+                }
+                dispatcher.submit(homeId, EventCommandType.ARRIVES_HOME);
+                // still armed when submitted, so routed as an alarm
+                assertEquals(Lane.ALARM, dispatcher.submit(homeId, EventCommandType.MOVEMENT));
+            }
+        }
+        for (MessageObserver observer : observers) {
+            assertFalse(observer.getMessages().contains(ALARM), observer.getMessages().toString());
+            assertTrue(observer.getMessages().contains(DeviceEvent.ALARM_TURN_OFF.getMessage()));
+        }
+    }
+
+    @Test
+    void eventsOfOneHomeRunInSubmissionOrder() {
+        MessageObserver observer = new MessageObserver();
+        List<String> expected = new ArrayList<>();
+        try (PriorityEventDispatcher dispatcher = new PriorityEventDispatcher(4, true, 4)) {
+            dispatcher.register(home(7, false, observer));
+            for (int i = 0; i < 100; i++) {
+                dispatcher.submit(7, i % 2 == 0
+                        ? EventCommandType.CHANGE_TO_HOLIDAY : EventCommandType.CHANGE_TO_WORKING_DAY);
+                expected.add(DeviceEvent.COFFEE_TYPE_CHANGED.getMessage());
+            }
+            dispatcher.submit(7, EventCommandType.MOVEMENT);
+            expected.add(DeviceEvent.LIGHT_TURN_ON.getMessage());
+        }
+        assertEquals(expected, observer.getMessages());
+    }
+
+    @Test
+    void alarmsOnArmedHomesAreRaised() {
+        MessageObserver observer = new MessageObserver();
+        try (PriorityEventDispatcher dispatcher = new PriorityEventDispatcher(1, true, 4)) {
+            dispatcher.register(home(3, true, observer));
+            dispatcher.submit(3, EventCommandType.MOVEMENT);
+        }
+        assertTrue(observer.getMessages().contains(ALARM));
+    }
+
+    @Test
+    void failedCommandIsRolledBackAndWorkersGoOn() {
+        MessageObserver observer = new MessageObserver();
+        HomeController controller = new HomeControllerBuilder(observer)
+                .state(new HomeState(5, true, false, false, false, true))
+                .frontDoor(new JammedDoor())
+                .build();
+        try (PriorityEventDispatcher dispatcher = new PriorityEventDispatcher(1, true, 4)) {
+            dispatcher.register(controller);
+            dispatcher.submit(5, EventCommandType.ARRIVES_HOME);
+            assertEquals(Lane.ALARM, dispatcher.submit(5, EventCommandType.MOVEMENT));
+            dispatcher.submit(5, EventCommandType.CHANGE_TO_HOLIDAY);
+            dispatcher.close();
+            assertEquals(1, dispatcher.getFailed());
+        }
+        // the alarm disarmed by the failed arrival was re-armed, so the movement raised it
+        assertTrue(controller.isAlarmArmed());
+        assertEquals(List.of(DeviceEvent.ALARM_TURN_OFF.getMessage(),
+                DeviceEvent.ALARM_TURN_ON.getMessage(), ALARM,
+                DeviceEvent.LIGHT_TURN_ON.getMessage(),
+                DeviceEvent.COFFEE_TYPE_CHANGED.getMessage()), observer.getMessages());
+    }
+
+    static HomeController home(int homeId, boolean armed, MessageObserver observer) {
+        return new HomeControllerBuilder(observer)
+                .state(new HomeState(homeId, armed, false, false, false, true))
+                .build();
+    }
+
+    private static final class JammedDoor extends FrontDoor {
+        @Override
+        public void open() {
+            throw new IllegalStateException("door jammed");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package smarthome.domain.devices.heatingsystem;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.Observer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchedHeatingSystemAdapterTest {
+
+    @Test
+    void observersAreNotifiedOnTheCallingThread() {
+        Recorder recorder = new Recorder();
+        try (SimulatedHeatingGateway gateway = new SimulatedHeatingGateway(1, TimeUnit.MILLISECONDS);
+             BatchingHeatingGatewayClient client =
+                     new BatchingHeatingGatewayClient(gateway, 1, TimeUnit.MILLISECONDS, 100)) {
+            BatchedHeatingSystemAdapter adapter = new BatchedHeatingSystemAdapter(client, 1);
+            adapter.addObserver(recorder);
+
+            CompletableFuture<Void> done = adapter.turnOnAsync();
+            assertTrue(adapter.isTurnedOn());
+            assertEquals(List.of(DeviceEvent.HEATING_TURN_ON.getMessage()), recorder.messages);
+            done.join();
+            adapter.turnOn();
+            client.flush().join();
+
+            assertTrue(gateway.device(1).isTurnedOn());
+            assertEquals(1, recorder.messages.size());
+            assertEquals(List.of(Thread.currentThread()), recorder.threads);
+        }
+    }
+
+    @Test
+    void failedCommandRevertsToTheGatewayState() {
+        FailingGateway gateway = new FailingGateway();
+        Recorder recorder = new Recorder();
+        try (BatchingHeatingGatewayClient client =
+                     new BatchingHeatingGatewayClient(gateway, 1, TimeUnit.HOURS, 1)) {
+            BatchedHeatingSystemAdapter adapter = new BatchedHeatingSystemAdapter(client, 1);
+            adapter.addObserver(recorder);
+
+            CompletableFuture<Void> done = adapter.turnOnAsync();
+            assertThrows(CompletionException.class, done::join);
+
+            assertFalse(adapter.isTurnedOn());
+            assertEquals(List.of(DeviceEvent.HEATING_TURN_ON.getMessage(),
+                    DeviceEvent.HEATING_TURN_OFF.getMessage()), recorder.messages);
+            assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), recorder.threads);
+        }
+    }
+
+    /** Gateway whose every round trip fails, leaving its devices unchanged. */
+    private static final class FailingGateway implements HeatingGateway {
+        private final LegacyHeatingSystem device = new LegacyHeatingSystem();
+
+        @Override
+        public CompletableFuture<Void> send(List<HeatingCommand> batch) {
+            return CompletableFuture.failedFuture(new IllegalStateException("gateway offline"));
+        }
+
+        @Override
+        public LegacyHeatingSystem device(int deviceId) {
+            return device;
+        }
+    }
+
+    private static final class Recorder implements Observer {
+        final List<String> messages = new CopyOnWriteArrayList<>();
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void update(String message) {
+            messages.add(message);
+            threads.add(Thread.currentThread());
+        }
+    }
+}
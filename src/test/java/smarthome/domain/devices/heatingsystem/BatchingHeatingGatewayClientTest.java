@@ -0,0 +1,61 @@
+package smarthome.domain.devices.heatingsystem;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchingHeatingGatewayClientTest {
+
+    @Test
+    void flappingDeviceSendsOnlyItsFinalState() {
+        try (SimulatedHeatingGateway gateway = new SimulatedHeatingGateway(1, TimeUnit.MILLISECONDS);
+             BatchingHeatingGatewayClient client =
+                     new BatchingHeatingGatewayClient(gateway, 1, TimeUnit.HOURS, 100)) {
+            CompletableFuture<Void> first = client.submit(1, true);
+            client.submit(1, false);
+            CompletableFuture<Void> last = client.submit(1, true);
+            client.submit(2, true);
+            client.flush().join();
+
+            assertTrue(first.isDone());
+            assertTrue(last.isDone());
+            assertEquals(1, gateway.getRoundTrips());
+            assertEquals(2, gateway.getCommands());
+            assertEquals(4, client.getSubmitted());
+            assertEquals(2, client.getCollapsed());
+            assertTrue(gateway.device(1).isTurnedOn());
+            assertTrue(gateway.device(2).isTurnedOn());
+        }
+    }
+
+    @Test
+    void fullWindowIsSentEarly() {
+        try (SimulatedHeatingGateway gateway = new SimulatedHeatingGateway(1, TimeUnit.MILLISECONDS);
+             BatchingHeatingGatewayClient client =
+                     new BatchingHeatingGatewayClient(gateway, 1, TimeUnit.HOURS, 3)) {
+            CompletableFuture<Void> done = null;
+            for (int deviceId = 0; deviceId < 3; deviceId++) {
+                done = client.submit(deviceId, true);
+            }
+            done.join();
+            assertEquals(1, gateway.getRoundTrips());
+            assertEquals(3, gateway.getCommands());
+        }
+    }
+
+    @Test
+    void windowTimerSendsPendingCommands() {
+        try (SimulatedHeatingGateway gateway = new SimulatedHeatingGateway(1, TimeUnit.MILLISECONDS);
+             BatchingHeatingGatewayClient client =
+                     new BatchingHeatingGatewayClient(gateway, 5, TimeUnit.MILLISECONDS, 100)) {
+            client.submit(4, true).orTimeout(5, TimeUnit.SECONDS).join();
+            assertTrue(gateway.device(4).isTurnedOn());
+            assertFalse(gateway.device(5).isTurnedOn());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package smarthome.domain.observer;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncObserverTest {
+
+    @Test
+    void deliversInArrivalOrder() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        try (AsyncObserver observer = new AsyncObserver(received::add, 16, OverflowPolicy.BLOCK)) {
+            for (int i = 0; i < 100; i++) {
+                observer.update("m" + i);
+            }
+            assertTrue(observer.awaitDrained(5, TimeUnit.SECONDS));
+            assertEquals(100, observer.getDelivered());
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("m" + i, received.get(i));
+        }
+    }
+
+    @Test
+    void forwardsTypedEvents() {
+        List<DeviceEvent> received = new CopyOnWriteArrayList<>();
+        Observer delegate = new Observer() {
+            @Override
+            public void update(String message) {
+                throw new AssertionError("untyped delivery of " + message);
+            }
+
+            @Override
+            public void update(DeviceEvent event, String message) {
+                received.add(event);
+            }
+        };
+        try (AsyncObserver observer = new AsyncObserver(delegate, 4, OverflowPolicy.BLOCK)) {
+            observer.update(DeviceEvent.DOOR_OPEN, DeviceEvent.DOOR_OPEN.getMessage());
+        }
+        assertEquals(List.of(DeviceEvent.DOOR_OPEN), received);
+    }
+
+    @Test
+    void failingDelegateDoesNotStopDelivery() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        Observer delegate = message -> {
+            if (message.equals("bad")) {
+                throw new IllegalStateException(message);
+            }
+            received.add(message);
+        };
+        try (AsyncObserver observer = new AsyncObserver(delegate, 4, OverflowPolicy.BLOCK)) {
+            observer.update("a");
+            observer.update("bad");
+            observer.update("b");
+            observer.close();
+            assertEquals(1, observer.getFailures());
+            assertEquals(3, observer.getDelivered());
+        }
+        assertEquals(List.of("a", "b"), received);
+    }
+
+    @Test
+    void dropNewestDiscardsWhenFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        AsyncObserver observer = new AsyncObserver(message -> {
+            started.countDown();
+            awaitQuietly(release);
+        }, 2, OverflowPolicy.DROP_NEWEST);
+        observer.update("held");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            observer.update("m" + i);
+        }
+        release.countDown();
+        observer.close();
+        assertEquals(3, observer.getDelivered());
+        assertEquals(3, observer.getDropped());
+    }
+
+    @Test
+    void closeDeliversQueuedMessagesAndDropsLaterOnes() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        AsyncObserver observer = new AsyncObserver(received::add, 16, OverflowPolicy.BLOCK);
+        observer.update("a");
+        observer.update("b");
+        observer.close();
+        observer.update("late");
+        observer.close();
+        assertEquals(List.of("a", "b"), received);
+        assertEquals(1, observer.getDropped());
+    }
+
+    @Test
+    void interruptedDrainThreadSettlesAcceptedMessages() {
+        List<String> received = new CopyOnWriteArrayList<>();
+        CountDownLatch queued = new CountDownLatch(1);
+        Observer delegate = message -> {
+            received.add(message);
+            if (message.equals("a")) {
+                awaitQuietly(queued);
+            } else if (message.equals("stop")) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AsyncObserver observer = new AsyncObserver(delegate, 16, OverflowPolicy.BLOCK);
+        observer.update("a");
+        observer.update("stop");
+        observer.update("b");
+        observer.update("c");
+        queued.countDown();
+        observer.close();
+        observer.update("late");
+        assertEquals(List.of("a", "stop", "b", "c"), received);
+        assertEquals(1, observer.getDropped());
+        assertTrue(observer.awaitDrained(1, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package smarthome.domain.observer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NotificationBatchTest {
+
+    @Test
+    void deliversOneBatchPerObserverWhenOutermostScopeCloses() {
+        Device light = new Device();
+        Device door = new Device();
+        Recorder both = new Recorder(true);
+        Recorder doorOnly = new Recorder(true);
+        light.addObserver(both);
+        door.addObserver(both);
+        door.addObserver(doorOnly);
+
+        try (NotificationBatch batch = NotificationBatch.open()) {
+            light.notifyObservers(DeviceEvent.LIGHT_TURN_ON);
+            try (NotificationBatch inner = NotificationBatch.open()) {
+                door.notifyObservers(DeviceEvent.DOOR_OPEN);
+            }
+            light.notifyObservers(DeviceEvent.LIGHT_TURN_OFF);
+            assertEquals(3, batch.size());
+            assertEquals(List.of(), both.events);
+        }
+
+        assertEquals(List.of(DeviceEvent.LIGHT_TURN_ON, DeviceEvent.DOOR_OPEN, DeviceEvent.LIGHT_TURN_OFF),
+                both.events);
+        assertEquals(List.of(3), both.batches);
+        assertEquals(List.of(DeviceEvent.DOOR_OPEN), doorOnly.events);
+        assertEquals(List.of(1), doorOnly.batches);
+    }
+
+    @Test
+    void nonDeferrableObserversAreNotifiedAtOnceAndOnlyOnce() {
+        Device door = new Device();
+        Recorder deferred = new Recorder(true);
+        Recorder immediate = new Recorder(false);
+        door.addObserver(deferred);
+        door.addObserver(immediate);
+
+        try (NotificationBatch batch = NotificationBatch.open()) {
+            door.notifyObservers(DeviceEvent.DOOR_OPEN);
+            assertEquals(List.of(DeviceEvent.DOOR_OPEN), immediate.events);
+            assertEquals(List.of(), deferred.events);
+        }
+
+        assertEquals(List.of(DeviceEvent.DOOR_OPEN), immediate.events);
+        assertEquals(List.of(), immediate.batches);
+        assertEquals(List.of(DeviceEvent.DOOR_OPEN), deferred.events);
+    }
+
+    @Test
+    void notificationsRaisedDuringDeliveryAreDeliveredImmediately() {
+        Device light = new Device();
+        Device door = new Device();
+        Recorder doors = new Recorder(true);
+        door.addObserver(doors);
+        light.addObserver(new Recorder(true) {
+            @Override
+            public void update(DeviceEvent event, String message) {
+                super.update(event, message);
+                door.notifyObservers(DeviceEvent.DOOR_CLOSE);
+            }
+        });
+
+        try (NotificationBatch batch = NotificationBatch.open()) {
+            light.notifyObservers(DeviceEvent.LIGHT_TURN_OFF);
+        }
+
+        assertEquals(List.of(DeviceEvent.DOOR_CLOSE), doors.events);
+        assertEquals(List.of(), doors.batches);
+    }
+
+    @Test
+    void closingWithoutOpenScopeFails() {
+        NotificationBatch batch = NotificationBatch.open();
+        batch.close();
+        assertThrows(IllegalStateException.class, batch::close);
+    }
+
+    private static final class Device extends Observable {
+    }
+
+    private static class Recorder implements Observer {
+        final List<DeviceEvent> events = new ArrayList<>();
+        final List<Integer> batches = new ArrayList<>();
+        private final boolean deferrable;
+
+        Recorder(boolean deferrable) {
+            this.deferrable = deferrable;
+        }
+
+        @Override
+        public void update(String message) {
+        }
+
+        @Override
+        public void update(DeviceEvent event, String message) {
+            events.add(event);
+        }
+
+        @Override
+        public void updateBatch(DeviceEvent[] events, String[] messages, int count) {
+            batches.add(count);
+            Observer.super.updateBatch(events, messages, count);
+        }
+
+        @Override
+        public boolean isDeferrable() {
+            return deferrable;
+        }
+    }
+}
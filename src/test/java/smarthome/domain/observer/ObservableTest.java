@@ -0,0 +1,98 @@
+package smarthome.domain.observer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObservableTest {
+
+    @Test
+    void subscriptionsSelectEvents() {
+        Subscription alarms = Subscription.devices(DeviceType.ALARM_SYSTEM);
+        assertTrue(alarms.includes(DeviceEvent.ALARM_TRIGGERED));
+        assertFalse(alarms.includes(DeviceEvent.DOOR_OPEN));
+        assertTrue(alarms.includes(DeviceType.ALARM_SYSTEM));
+        assertFalse(alarms.includes(DeviceType.LIGHT));
+        assertFalse(alarms.includesAll());
+        assertTrue(Subscription.all().includesAll());
+
+        Subscription triggers = Subscription.events(DeviceEvent.ALARM_TRIGGERED);
+        assertTrue(triggers.includes(DeviceEvent.ALARM_TRIGGERED));
+        assertFalse(triggers.includes(DeviceEvent.ALARM_TURN_ON));
+    }
+
+    @Test
+    void typedNotificationsReachOnlySubscribers() {
+        Device device = new Device();
+        Recorder doors = new Recorder();
+        Recorder everything = new Recorder();
+        device.addObserver(doors, Subscription.devices(DeviceType.FRONT_DOOR));
+        device.addObserver(everything);
+
+        device.notifyObservers(DeviceEvent.DOOR_OPEN);
+        device.notifyObservers(DeviceEvent.LIGHT_TURN_ON);
+
+        assertEquals(List.of(DeviceEvent.DOOR_OPEN), doors.events);
+        assertEquals(List.of(DeviceEvent.DOOR_OPEN, DeviceEvent.LIGHT_TURN_ON), everything.events);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void untypedMessagesReachOnlyObserversOfEveryEvent() {
+        Device device = new Device();
+        Recorder doors = new Recorder();
+        Recorder everything = new Recorder();
+        device.addObserver(doors, Subscription.devices(DeviceType.FRONT_DOOR));
+        device.addObserver(everything);
+
+        device.notifyObservers("legacy");
+
+        assertEquals(List.of(), doors.messages);
+        assertEquals(List.of("legacy"), everything.messages);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void sharedTablesFilterLikeSingleRegistrations() {
+        Recorder doors = new Recorder();
+        Recorder everything = new Recorder();
+        ObserverTable table = ObserverTable.builder()
+                .add(doors, Subscription.events(DeviceEvent.DOOR_CLOSE))
+                .add(everything, Subscription.all())
+                .build();
+        Device device = new Device();
+        device.addObservers(table);
+
+        device.notifyObservers(DeviceEvent.DOOR_OPEN);
+        device.notifyObservers(DeviceEvent.DOOR_CLOSE);
+        device.notifyObservers("legacy");
+
+        assertEquals(List.of(DeviceEvent.DOOR_CLOSE), doors.events);
+        assertEquals(List.of("[FrontDoor] close"), doors.messages);
+        assertEquals(3, everything.messages.size());
+    }
+
+    private static final class Device extends Observable {
+    }
+
+    private static final class Recorder implements Observer {
+        final List<DeviceEvent> events = new ArrayList<>();
+        final List<String> messages = new ArrayList<>();
+
+        @Override
+        public void update(String message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void update(DeviceEvent event, String message) {
+            events.add(event);
+            messages.add(message);
+        }
+    }
+}
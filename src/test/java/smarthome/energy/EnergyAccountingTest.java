@@ -0,0 +1,101 @@
+package smarthome.energy;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.controller.HomeState;
+import smarthome.domain.observer.DeviceEvent;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.time.SimulationClock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EnergyAccountingTest {
+    private static final double DELTA = 1e-6;
+
+    private final SimulationClock clock = new SimulationClock(Instant.EPOCH);
+    private final EnergyAccounting accounting = new EnergyAccounting(EnergyRates.defaults(), clock);
+
+    @Test
+    void lightDrawsItsRatedPowerWhileOn() {
+        accounting.record(1, DeviceEvent.LIGHT_TURN_ON);
+        assertEquals(60, accounting.homePowerWatts(1));
+        clock.advanceBy(Duration.ofMinutes(30));
+        accounting.record(1, DeviceEvent.LIGHT_TURN_OFF);
+        clock.advanceBy(Duration.ofMinutes(10));
+
+        assertEquals(0, accounting.homePowerWatts(1));
+        assertEquals(30, accounting.homeWattHours(1, EnergyWindow.HOUR), DELTA);
+        assertEquals(30, accounting.homeWattHours(1, EnergyWindow.LAST_60_MINUTES), DELTA);
+        assertEquals(0, accounting.homeWattHours(1, EnergyWindow.MINUTE), DELTA);
+    }
+
+    @Test
+    void tumblingAndSlidingWindowsAreCurrentWhileDrawing() {
+        accounting.record(1, DeviceEvent.HEATING_TURN_ON);
+        clock.advanceBy(Duration.ofMinutes(90));
+
+        assertEquals(2000, accounting.homeWattHours(1, EnergyWindow.PREVIOUS_HOUR), DELTA);
+        assertEquals(1000, accounting.homeWattHours(1, EnergyWindow.HOUR), DELTA);
+        assertEquals(3000, accounting.homeWattHours(1, EnergyWindow.LAST_24_HOURS), DELTA);
+        assertEquals(3000, accounting.homeWattHours(1, EnergyWindow.DAY), DELTA);
+        // sliding windows end with the current, still empty minute
+        assertEquals(2000 * 59 / 60.0, accounting.homeWattHours(1, EnergyWindow.LAST_60_MINUTES),
+                DELTA);
+
+        clock.advanceBy(Duration.ofDays(1));
+        // hours 2 to 24 and half of hour 25
+        assertEquals(47_000, accounting.homeWattHours(1, EnergyWindow.LAST_24_HOURS), DELTA);
+    }
+
+    @Test
+    void repeatedNotificationsDoNotChangeTheDraw() {
+        accounting.record(1, DeviceEvent.LIGHT_TURN_ON);
+        accounting.record(1, DeviceEvent.LIGHT_TURN_ON);
+        assertEquals(60, accounting.homePowerWatts(1));
+        accounting.record(1, DeviceEvent.LIGHT_TURN_OFF);
+        accounting.record(1, DeviceEvent.LIGHT_TURN_OFF);
+        assertEquals(0, accounting.homePowerWatts(1));
+    }
+
+    @Test
+    void fleetTotalsSumTheHomes() {
+        accounting.record(1, DeviceEvent.COFFEE_CREATED);
+        accounting.record(2, DeviceEvent.COFFEE_CREATED);
+        accounting.record(2, DeviceEvent.LIGHT_TURN_ON);
+        accounting.record(3, DeviceEvent.DOOR_OPEN);
+
+        assertEquals(20, accounting.homeWattHours(1, EnergyWindow.MINUTE), DELTA);
+        assertEquals(40, accounting.fleetWattHours(EnergyWindow.MINUTE), DELTA);
+        assertEquals(60, accounting.fleetPowerWatts());
+        assertEquals(2, accounting.getHomes());
+        assertEquals(3, accounting.getEvents());
+        assertEquals(0, accounting.homeWattHours(3, EnergyWindow.DAY), DELTA);
+    }
+
+    @Test
+    void observerBooksDevicesAlreadyOnWhenWired() {
+        HomeController home = new HomeControllerBuilder(new MessageObserver())
+                .state(new HomeState(7, false, true, false, false, true))
+                .subscribe(accounting.observer(7), EnergyAccounting.subscription())
+                .build();
+        assertEquals(2000, accounting.homePowerWatts(7));
+
+        home.movement();
+        home.arrivesHome();
+        clock.advanceBy(Duration.ofMinutes(1));
+        assertEquals(2060, accounting.homePowerWatts(7));
+        assertEquals(2060 / 60.0 + 20, accounting.homeWattHours(7, EnergyWindow.PREVIOUS_MINUTE),
+                DELTA);
+    }
+
+    @Test
+    void rejectsNegativeRates() {
+        assertThrows(IllegalArgumentException.class, () -> new EnergyRates(-1, 0, 0));
+    }
+}
@@ -0,0 +1,142 @@
+package smarthome.execution;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PlanExecutorTest {
+    private final List<String> log = new ArrayList<>();
+    private final List<Duration> sleeps = new ArrayList<>();
+
+    @Test
+    void failingRequiredStepRollsBackInReverseOrder() {
+        IllegalStateException jammed = new IllegalStateException("jammed");
+        StepPlan plan = new StepPlan("arrive", List.of(
+                step("a").compensatedBy(() -> log.add("undo a")),
+                step("b"),
+                step("c").compensatedBy(() -> log.add("undo c")),
+                Step.of("d", () -> {
+                    throw jammed;
+                })));
+
+        PlanResult result = executor(RetryPolicy.none()).execute(plan, null);
+
+        assertEquals(PlanResult.Status.ROLLED_BACK, result.status());
+        assertEquals(3, result.executed());
+        assertEquals(2, result.compensated());
+        assertEquals(List.of("d"), result.failedSteps());
+        assertSame(jammed, result.failure());
+        assertEquals(List.of("a", "b", "c", "undo c", "undo a"), log);
+    }
+
+    @Test
+    void retryWithSameKeyRunsOnlyMissingSteps() {
+        PlanExecutor executor = executor(RetryPolicy.none());
+        Flaky flaky = new Flaky(1);
+        StepPlan plan = new StepPlan("arrive", List.of(
+                step("a"),
+                Step.of("b", flaky).optional(),
+                step("c")));
+
+        PlanResult first = executor.execute(plan, "home/1");
+        assertEquals(PlanResult.Status.PARTIAL, first.status());
+        assertEquals(0b101, executor.completedSteps("home/1"));
+
+        PlanResult retry = executor.execute(plan, "home/1");
+        assertEquals(PlanResult.Status.COMPLETED, retry.status());
+        assertEquals(1, retry.executed());
+        assertEquals(2, retry.skipped());
+        assertEquals(List.of("a", "c"), log);
+        assertEquals(2, flaky.calls);
+    }
+
+    @Test
+    void compensatedStepsRunAgainOnRetry() {
+        PlanExecutor executor = executor(RetryPolicy.none());
+        Flaky door = new Flaky(1);
+        StepPlan plan = new StepPlan("arrive", List.of(
+                step("disarm").compensatedBy(() -> log.add("re-arm")),
+                step("notify"),
+                Step.of("open", door)));
+
+        assertEquals(PlanResult.Status.ROLLED_BACK, executor.execute(plan, "k").status());
+        // the step without compensation stays done
+        assertEquals(0b010, executor.completedSteps("k"));
+
+        assertEquals(PlanResult.Status.COMPLETED, executor.execute(plan, "k").status());
+        assertEquals(List.of("disarm", "notify", "re-arm", "disarm"), log);
+    }
+
+    @Test
+    void retriesWithBackoffBeforeGivingUp() {
+        Flaky flaky = new Flaky(2);
+        PlanExecutor executor = executor(new RetryPolicy(3, Duration.ofMillis(10), 2));
+        PlanResult result = executor.execute(new StepPlan("p", List.of(Step.of("s", flaky))), null);
+
+        assertEquals(PlanResult.Status.COMPLETED, result.status());
+        assertNull(result.failure());
+        assertEquals(3, flaky.calls);
+        assertEquals(List.of(Duration.ofMillis(10), Duration.ofMillis(20)), sleeps);
+    }
+
+    @Test
+    void executionsWithoutKeyAreNotJournaled() {
+        PlanExecutor executor = executor(RetryPolicy.none());
+        StepPlan plan = new StepPlan("p", List.of(step("a")));
+        executor.execute(plan, null);
+        executor.execute(plan, null);
+        assertEquals(List.of("a", "a"), log);
+        assertEquals(0, executor.completedSteps(null));
+    }
+
+    @Test
+    void restoredJournalIsResumed() {
+        PlanExecutor executor = executor(RetryPolicy.none());
+        executor.restore("k", 0b01);
+        PlanResult result = executor.execute(new StepPlan("p", List.of(step("a"), step("b"))), "k");
+        assertEquals(1, result.skipped());
+        assertEquals(List.of("b"), log);
+    }
+
+    @Test
+    void journalForgetsOldestKeys() {
+        PlanExecutor executor = new PlanExecutor(RetryPolicy.none(), 2, sleeps::add);
+        StepPlan plan = new StepPlan("p", List.of(step("a")));
+        executor.execute(plan, "1");
+        executor.execute(plan, "2");
+        executor.execute(plan, "3");
+        assertEquals(0, executor.completedSteps("1"));
+        assertEquals(1, executor.completedSteps("3"));
+    }
+
+    private PlanExecutor executor(RetryPolicy retryPolicy) {
+        return new PlanExecutor(retryPolicy, 16, sleeps::add);
+    }
+
+    private Step step(String name) {
+        return Step.of(name, () -> log.add(name));
+    }
+
+    /** Fails its first {@code failures} calls. */
+    private static final class Flaky implements Runnable {
+        private final int failures;
+        int calls;
+
+        Flaky(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void run() {
+            if (++calls <= failures) {
+                throw new IllegalStateException("attempt " + calls);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package smarthome.load;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HouseholdLoadGeneratorTest {
+
+    @Test
+    void sameSeedGivesSameEvents() {
+        assertEquals(new HouseholdLoadGenerator(5, 14, 42).generate(),
+                new HouseholdLoadGenerator(5, 14, 42).generate());
+        assertNotEquals(new HouseholdLoadGenerator(5, 14, 42).generate(),
+                new HouseholdLoadGenerator(5, 14, 43).generate());
+    }
+
+    @Test
+    void homesDoNotDependOnTheNumberOfHomes() {
+        List<HouseholdEvent> few = new HouseholdLoadGenerator(2, 7, 7).generate();
+        List<HouseholdEvent> many = new HouseholdLoadGenerator(20, 7, 7).generate();
+        for (int homeId = 0; homeId < 2; homeId++) {
+            assertEquals(withoutIds(few, homeId), withoutIds(many, homeId));
+        }
+    }
+
+    @Test
+    void eventsAreOrderedAndNumbered() {
+        List<HouseholdEvent> events = new HouseholdLoadGenerator(10, 7, 1).generate();
+        assertFalse(events.isEmpty());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i, events.get(i).eventId());
+            assertTrue(events.get(i).hasId());
+            if (i > 0) {
+                assertTrue(events.get(i - 1).timeMillis() <= events.get(i).timeMillis());
+            }
+        }
+    }
+
+    @Test
+    void rejectsEmptyRuns() {
+        assertThrows(IllegalArgumentException.class, () -> new HouseholdLoadGenerator(0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new HouseholdLoadGenerator(1, 0, 1));
+    }
+
+    private static List<HouseholdEvent> withoutIds(List<HouseholdEvent> events, int homeId) {
+        return events.stream()
+                .filter(event -> event.homeId() == homeId)
+                .map(event -> new HouseholdEvent(event.timeMillis(), homeId, event.type()))
+                .toList();
+    }
+}
@@ -0,0 +1,56 @@
+package smarthome.load;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int v = 1; v <= 100; v++) {
+            histogram.record(v);
+        }
+        assertEquals(100, histogram.count());
+        assertEquals(50, histogram.percentile(50));
+        assertEquals(99, histogram.percentile(99));
+        assertEquals(100, histogram.percentile(100));
+        assertEquals(50.5, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    void largeValuesStayWithinRelativeError() {
+        long[] values = {1_000, 123_457, 9_999_999, 5_000_000_000L};
+        for (long value : values) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            histogram.record(Long.MAX_VALUE / 4);
+            long p50 = histogram.percentile(50);
+            assertTrue(p50 >= value, value + " -> " + p50);
+            assertTrue(p50 - value <= value / 64, value + " -> " + p50);
+        }
+    }
+
+    @Test
+    void addMergesSamples() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(30);
+        b.record(-5);
+        a.add(b);
+        assertEquals(3, a.count());
+        assertEquals(30, a.max());
+        assertEquals(0, a.percentile(0));
+        assertEquals(40.0 / 3, a.mean(), 1e-9);
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0, histogram.mean());
+    }
+}
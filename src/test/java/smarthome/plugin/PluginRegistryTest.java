@@ -0,0 +1,98 @@
+package smarthome.plugin;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import smarthome.commands.EventCommandFactory;
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeController;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.domain.observer.MessageObserver;
+import smarthome.domain.observer.Observer;
+import smarthome.plugin.thermostat.ThermostatPlugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PluginRegistryTest {
+
+    @Test
+    void loadsPluginsFromTheClassPath() {
+        PluginRegistry registry = PluginRegistry.load();
+        assertEquals(List.of("thermostat"),
+                registry.getPlugins().stream().map(DevicePlugin::name).toList());
+    }
+
+    @Test
+    void pluginEventsAreNumberedAfterBuiltInOnes() {
+        PluginRegistry registry = PluginRegistry.of(new ThermostatPlugin());
+        int builtIn = EventCommandType.values().length;
+        assertEquals(EventCommandType.GOING_HOME.ordinal(), registry.eventId("GOING_HOME"));
+        assertEquals(builtIn, registry.eventId("THERMOSTAT_BOOST"));
+        assertEquals(-1, registry.eventId("UNKNOWN"));
+        assertEquals(builtIn + 1, registry.getEvents().size());
+    }
+
+    @Test
+    void dispatchesBuiltInAndPluginEventsToLazilyCreatedDevices() {
+        MessageObserver messages = new MessageObserver();
+        PluginDevices devices = PluginRegistry.of(new ThermostatPlugin()).devicesFor(1, messages);
+
+        assertFalse(devices.dispatch(EventCommandType.MOVEMENT.ordinal()));
+        devices.dispatch(EventCommandType.GOING_HOME);
+        assertTrue(devices.dispatch(devices.getRegistry().eventId("THERMOSTAT_BOOST")));
+        devices.dispatch(EventCommandType.CHANGE_TO_HOLIDAY);
+
+        assertEquals(List.of("[Thermostat] set to 21C", "[Thermostat] set to 24C",
+                "[Thermostat] set to 16C"), messages.getMessages());
+        assertEquals(16, devices.state("thermostat", "targetCelsius"));
+        assertEquals(true, devices.state("thermostat", "holiday"));
+        assertThrows(IllegalArgumentException.class, () -> devices.state("thermostat", "humidity"));
+        assertThrows(IllegalArgumentException.class, () -> devices.state("oven", "targetCelsius"));
+    }
+
+    @Test
+    void commandsReachPluginDevices() {
+        MessageObserver messages = new MessageObserver();
+        HomeController controller = new HomeControllerBuilder(messages)
+                .plugins(PluginRegistry.of(new ThermostatPlugin()))
+                .build();
+        EventCommandFactory factory = new EventCommandFactory(controller);
+
+        factory.createEventCommand(EventCommandType.GOING_HOME).execute();
+        factory.createEventCommand("THERMOSTAT_BOOST").execute();
+
+        assertTrue(messages.getMessages().contains("[Thermostat] set to 21C"));
+        assertEquals(24, controller.getPlugins().state("thermostat", "targetCelsius"));
+        assertThrows(IllegalArgumentException.class, () -> factory.createEventCommand("OVEN_ON"));
+    }
+
+    @Test
+    void rejectsInvalidPlugins() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PluginRegistry.of(new ThermostatPlugin(), new ThermostatPlugin()));
+        assertThrows(IllegalArgumentException.class,
+                () -> PluginRegistry.of(new TestPlugin(ActionWithParameter.class)));
+    }
+
+    public static class ActionWithParameter {
+        @OnEvent("GOING_HOME")
+        public void heat(int celsius) {
+        }
+    }
+
+    private record TestPlugin(Class<?> deviceClass) implements DevicePlugin {
+        @Override
+        public String name() {
+            return "test";
+        }
+
+        @Override
+        public Object createDevice(int homeId, Observer observer) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
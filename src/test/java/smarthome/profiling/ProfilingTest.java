@@ -0,0 +1,72 @@
+package smarthome.profiling;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import smarthome.commands.EventCommandFactory;
+import smarthome.commands.EventCommandType;
+import smarthome.controller.HomeControllerBuilder;
+import smarthome.domain.observer.MessageObserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfilingTest {
+
+    @Test
+    void activeWhileRecordingRuns() throws InterruptedException {
+        assertTrue(eventually(() -> !Profiling.isActive()));
+        try (Recording recording = new Recording()) {
+            recording.start();
+            assertTrue(eventually(Profiling::isActive));
+            recording.stop();
+            assertTrue(eventually(() -> !Profiling.isActive()));
+        }
+    }
+
+    @Test
+    void commandsAreRecordedAsDispatches(@TempDir Path dir)
+            throws IOException, InterruptedException {
+        EventCommandFactory factory = new EventCommandFactory(
+                new HomeControllerBuilder(new MessageObserver()).homeId(7).build());
+        Path file = dir.resolve("dispatch.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(DispatchEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            assertTrue(eventually(Profiling::isActive));
+            factory.createEventCommand(EventCommandType.MOVEMENT).execute();
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> dispatches = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(DispatchEvent.NAME))
+                .toList();
+        assertEquals(1, dispatches.size());
+        assertEquals(7, dispatches.get(0).getInt("homeId"));
+        assertEquals("MOVEMENT", dispatches.get(0).getString("eventType"));
+        assertTrue(eventually(() -> !Profiling.isActive()));
+    }
+
+    /** The flag follows recordings through a listener, so poll for a few seconds. */
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,77 @@
+package smarthome.time;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SimulationDriverTest {
+    private final SimulationClock clock = new SimulationClock(Instant.EPOCH);
+    private final SimulationDriver driver = new SimulationDriver(clock);
+    private final List<String> log = new ArrayList<>();
+
+    @Test
+    void clockOnlyMovesForward() {
+        clock.advanceBy(Duration.ofSeconds(5));
+        clock.advanceTo(5_000);
+        assertEquals(5_000, clock.millis());
+        assertThrows(IllegalArgumentException.class, () -> clock.advanceTo(4_999));
+        assertThrows(IllegalArgumentException.class, () -> clock.advanceBy(Duration.ofMillis(-1)));
+        assertEquals(clock.millis(), clock.withZone(ZoneId.of("Europe/Paris")).millis());
+    }
+
+    @Test
+    void runsTasksInTimeThenSubmissionOrder() {
+        driver.schedule(300, () -> log.add("c@" + clock.millis()));
+        driver.schedule(100, () -> log.add("a@" + clock.millis()));
+        driver.schedule(100, () -> log.add("b@" + clock.millis()));
+        driver.schedule(1_000, () -> log.add("late"));
+
+        assertEquals(3, driver.runUntil(500));
+        assertEquals(List.of("a@100", "b@100", "c@300"), log);
+        assertEquals(500, clock.millis());
+        assertEquals(1, driver.getPending());
+    }
+
+    @Test
+    void pastTasksRunNowAndTasksCanScheduleMore() {
+        clock.advanceTo(1_000);
+        driver.schedule(10, () -> {
+            log.add("past@" + clock.millis());
+            driver.scheduleAfter(Duration.ofMillis(50), () -> log.add("next@" + clock.millis()));
+        });
+        driver.runUntil(Instant.ofEpochMilli(2_000));
+        assertEquals(List.of("past@1000", "next@1050"), log);
+        assertEquals(2, driver.getExecuted());
+    }
+
+    @Test
+    void periodicTasksRepeat() {
+        driver.scheduleEvery(Duration.ofMinutes(1), () -> log.add("tick@" + clock.millis()));
+        assertEquals(3, driver.runUntil(Duration.ofMinutes(3).toMillis() + 30_000));
+        assertEquals(List.of("tick@60000", "tick@120000", "tick@180000"), log);
+        assertThrows(IllegalArgumentException.class,
+                () -> driver.scheduleEvery(Duration.ZERO, () -> { }));
+    }
+
+    @Test
+    void taskOvertakenBySleeperRunsLate() {
+        driver.schedule(100, () -> {
+            try {
+                clock.sleeper().sleep(Duration.ofMillis(500));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        driver.schedule(200, () -> log.add("b@" + clock.millis()));
+        driver.runUntil(1_000);
+        assertEquals(List.of("b@600"), log);
+        assertEquals(1_000, clock.millis());
+    }
+}